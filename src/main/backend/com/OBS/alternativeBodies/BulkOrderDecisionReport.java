@@ -0,0 +1,19 @@
+package com.OBS.alternativeBodies;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class BulkOrderDecisionReport {
+    private Integer requested;
+    private Integer succeeded;
+    private Integer failed;
+    private List<OrderDecisionResult> results;
+}
@@ -0,0 +1,18 @@
+package com.OBS.alternativeBodies;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class CashFlowForecast {
+    private Long clientId;
+    private Float currentBalance;
+    private List<CashFlowMonth> months;
+}
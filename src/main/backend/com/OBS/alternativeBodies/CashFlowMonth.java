@@ -0,0 +1,21 @@
+package com.OBS.alternativeBodies;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Map;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class CashFlowMonth {
+    private String month;
+    private Float outgoing;
+    private Map<String, Float> outgoingByCategory;
+    private Float incoming;
+    private Map<String, Float> incomingByCategory;
+    private Float projectedBalance;
+}
@@ -0,0 +1,26 @@
+package com.OBS.alternativeBodies;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Cyclical transfer row of list screens, the client is referenced by id only
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class CyclicalTransferListItem {
+    private Long transferId;
+    private Float amount;
+    @JsonFormat(pattern="yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+    private LocalDateTime reTransferDate;
+    private String category;
+    private String receiver;
+    private String accountNumber;
+    private String title;
+    private Long clientId;
+}
@@ -0,0 +1,37 @@
+package com.OBS.alternativeBodies;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@NoArgsConstructor
+@Getter
+@Setter
+public class DelinquencyReport {
+    @JsonFormat(pattern="yyyy-MM-dd")
+    private LocalDate runDate;
+    private boolean dryRun;
+    private int affectedLoans;
+    private float totalNewPenalty;
+    private float totalNewInterest;
+    // Filled only on dry runs, a real run over the whole loan book reports totals only
+    private List<DelinquentLoan> loans = new ArrayList<>();
+
+    public DelinquencyReport(LocalDate runDate, boolean dryRun) {
+        this.runDate = runDate;
+        this.dryRun = dryRun;
+    }
+
+    public void add(DelinquentLoan loan) {
+        affectedLoans++;
+        totalNewPenalty += loan.getNewPenaltyAmount();
+        totalNewInterest += loan.getNewInterestAmount();
+        if (dryRun)
+            loans.add(loan);
+    }
+}
@@ -0,0 +1,20 @@
+package com.OBS.alternativeBodies;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class DelinquentLoan {
+    private Long loanId;
+    private Long clientId;
+    private Integer overdueMonths;
+    private Float newPenaltyAmount;
+    private Float newInterestAmount;
+    private Float toRepaidOff;
+    private Integer ratesLeftToPay;
+}
@@ -0,0 +1,38 @@
+package com.OBS.alternativeBodies;
+
+import com.OBS.entity.Loan;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+// Fields of a loan that contribute to the portfolio aggregates
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class LoanExposure {
+    private Long loanId;
+    private Boolean isActive;
+    private Float basicLoanAmount;
+    private Float toRepaidOff;
+    private Float penaltyAmount;
+    private LocalDate nextRatePayDay;
+    private Float rateAmount;
+    private Integer ratesLeftToPay;
+
+    public static LoanExposure of(Loan loan) {
+        return new LoanExposure(
+                loan.getLoanId(),
+                loan.getIsActive(),
+                loan.getBasicLoanAmount(),
+                loan.getToRepaidOff(),
+                loan.getPenaltyAmount(),
+                loan.getNextRatePayDay(),
+                loan.getRateAmount(),
+                loan.getRatesLeftToPay()
+        );
+    }
+}
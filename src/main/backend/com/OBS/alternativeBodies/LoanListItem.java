@@ -0,0 +1,32 @@
+package com.OBS.alternativeBodies;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+// Loan row of list screens with the client's name instead of the whole client
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class LoanListItem {
+    private Long loanId;
+    private Boolean isActive;
+    @JsonFormat(pattern="yyyy-MM-dd")
+    private LocalDate concludedDate;
+    @JsonFormat(pattern="yyyy-MM-dd")
+    private LocalDate estimatedEndDate;
+    @JsonFormat(pattern="yyyy-MM-dd")
+    private LocalDate nextRatePayDay;
+    private Float basicLoanAmount;
+    private Float rateAmount;
+    private Float toRepaidOff;
+    private Float penaltyAmount;
+    private Integer ratesPaid;
+    private Long clientId;
+    private String clientFullName;
+}
@@ -0,0 +1,28 @@
+package com.OBS.alternativeBodies;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class LoanPortfolioSnapshot {
+    @JsonFormat(pattern="yyyy-MM-dd'T'HH:mm:ss.SSS")
+    private LocalDateTime asOf;
+    private Integer activeLoans;
+    private Double totalExposure;
+    private Double outstanding;
+    private Double penalties;
+    // Number of active loans and their outstanding amount by days past nextRatePayDay
+    private List<KeyValueObject<String, Integer>> delinquentLoans;
+    private List<KeyValueObject<String, Double>> delinquentOutstanding;
+    // Rates expected by month (yyyy-MM), overdue rates count towards the current month
+    private List<KeyValueObject<String, Double>> expectedInflows;
+}
@@ -0,0 +1,17 @@
+package com.OBS.alternativeBodies;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class LoanSimulationBody {
+    private List<Float> amounts;
+    private List<Integer> ratesNumbers;
+}
@@ -0,0 +1,21 @@
+package com.OBS.alternativeBodies;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// Columnar result, scenario of amounts[a] and ratesNumbers[r] is at index a * ratesNumbers.size() + r
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class LoanSimulationResult {
+    private List<Float> amounts;
+    private List<Integer> ratesNumbers;
+    private float[] rateAmount;
+    private float[] toRepaidOff;
+    private float[] interestAmount;
+}
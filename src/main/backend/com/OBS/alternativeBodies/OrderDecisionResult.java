@@ -0,0 +1,21 @@
+package com.OBS.alternativeBodies;
+
+import com.OBS.enums.OrderExecutionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class OrderDecisionResult {
+    private Long orderId;
+    private String orderType;
+    private String decision;
+    private Boolean succeeded;
+    // Status of the queued execution, empty for rejected and failed decisions
+    private OrderExecutionStatus executionStatus;
+    private String message;
+}
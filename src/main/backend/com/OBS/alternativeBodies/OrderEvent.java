@@ -0,0 +1,27 @@
+package com.OBS.alternativeBodies;
+
+import com.OBS.enums.OrderEventType;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class OrderEvent {
+    private Long eventId;
+    private OrderEventType type;
+    private Long orderId;
+    private String orderType;
+    private Long employeeId;
+    private String decision;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS")
+    private LocalDateTime createDate;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS")
+    private LocalDateTime occurredAt;
+}
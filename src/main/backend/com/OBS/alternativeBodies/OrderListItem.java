@@ -0,0 +1,32 @@
+package com.OBS.alternativeBodies;
+
+import com.OBS.entity.Order;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+// Order row of the consoles, the request body and the people involved are left out apart from their ids
+public interface OrderListItem {
+    Long getOrder_Id();
+
+    String getOrderType();
+
+    String getDecision();
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS")
+    LocalDateTime getCreateDate();
+
+    Boolean getIsActive();
+
+    Long getClientId();
+
+    String getClientFullName();
+
+    Long getOrderingEmployeeId();
+
+    Long getEmployeeId();
+
+    default String getWaitingTime() {
+        return Order.waitingTime(getCreateDate());
+    }
+}
@@ -0,0 +1,25 @@
+package com.OBS.alternativeBodies;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import static com.OBS.enums.TransferType.OUTGOING;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class TransferCategorySum {
+    private String type;
+    private String category;
+    private Double total;
+
+    // Used by cyclical transfers which are always outgoing
+    public TransferCategorySum(String category, Double total) {
+        this.type = OUTGOING.name();
+        this.category = category;
+        this.total = total;
+    }
+}
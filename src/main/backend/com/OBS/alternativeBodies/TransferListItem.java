@@ -0,0 +1,27 @@
+package com.OBS.alternativeBodies;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Transfer row of list screens, the client is referenced by id only
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class TransferListItem {
+    private Long transferId;
+    private Float amount;
+    @JsonFormat(pattern="yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+    private LocalDateTime transferDate;
+    private String category;
+    private String type;
+    private String receiver_sender;
+    private String title;
+    private String toAccountNumber;
+    private Long clientId;
+}
@@ -0,0 +1,20 @@
+package com.OBS.alternativeBodies;
+
+import com.OBS.entity.Transfer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class TransferPage {
+    private List<Transfer> transfers;
+    // Opaque cursor to pass back for the next page, null when there is nothing more
+    private String nextCursor;
+    private Boolean hasMore;
+}
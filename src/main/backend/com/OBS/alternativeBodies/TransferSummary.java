@@ -0,0 +1,42 @@
+package com.OBS.alternativeBodies;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+public class TransferSummary {
+    private final Map<String, Float> sumsByType = new HashMap<>();
+    private final Map<String, Float> sumsByTypeAndCategory = new HashMap<>();
+
+    public TransferSummary() {
+    }
+
+    public TransferSummary(List<TransferCategorySum> sums) {
+        addAll(sums);
+    }
+
+    public TransferSummary addAll(List<TransferCategorySum> sums) {
+        for (TransferCategorySum sum : sums)
+            add(sum.getType(), sum.getCategory(), sum.getTotal() == null ? 0f : sum.getTotal().floatValue());
+        return this;
+    }
+
+    public TransferSummary add(String type, String category, float amount) {
+        sumsByType.merge(type, amount, Float::sum);
+        sumsByTypeAndCategory.merge(key(type, category), amount, Float::sum);
+        return this;
+    }
+
+    public float getSum(String type) {
+        return sumsByType.getOrDefault(type, 0f);
+    }
+
+    public float getSum(String type, String category) {
+        return sumsByTypeAndCategory.getOrDefault(key(type, category), 0f);
+    }
+
+    private String key(String type, String category) {
+        return type + "|" + Objects.toString(category, "");
+    }
+}
@@ -0,0 +1,18 @@
+package com.OBS.alternativeBodies;
+
+// Visit row of list screens with the employee's name instead of the whole employee
+public interface VisitListItem {
+    Long getVisit_id();
+
+    String getVisitDate();
+
+    String getVisitTime();
+
+    String getEstablishment();
+
+    Boolean getIsActive();
+
+    Long getEmployeeId();
+
+    String getEmployeeFullName();
+}
@@ -4,8 +4,8 @@ import com.OBS.alternativeBodies.ClientCreditWorthiness;
 import com.OBS.entity.Client;
 import com.OBS.alternativeBodies.ClientUserBody;
 import com.OBS.enums.SearchOperation;
-import com.OBS.searchers.SearchCriteria;
-import com.OBS.searchers.specificators.Specifications;
+import com.OBS.searchers.specificators.CriteriaCompiler;
+import com.OBS.searchers.specificators.ImmutableSpecification;
 import com.OBS.service.ClientService;
 import com.OBS.service.ClientTransferService;
 import lombok.AllArgsConstructor;
@@ -27,6 +27,7 @@ import java.util.List;
 public class ClientController {
     private final ClientService clientService;
     private final ClientTransferService clientTransferService;
+    private final CriteriaCompiler criteriaCompiler;
 
     @GetMapping(path = "/filtered")
     public List<Client> getClientsSorted(
@@ -46,15 +47,15 @@ public class ClientController {
 
     @GetMapping(path = "/active")
     public List<Client> getActiveClients(){
-        Specifications<Client> findActiveClients = new Specifications<Client>()
-                .add(new SearchCriteria("enabled",true, SearchOperation.EQUAL_JOIN_USER));
+        ImmutableSpecification<Client> findActiveClients = ImmutableSpecification.of(criteriaCompiler, Client.class)
+                .and("enabled", true, SearchOperation.EQUAL_JOIN_USER);
         return clientService.getClients(findActiveClients);
     }
 
     @GetMapping(path = "/inactive")
     public List<Client> getInactiveClients(){
-        Specifications<Client> findInactiveClients = new Specifications<Client>()
-                .add(new SearchCriteria("enabled",false, SearchOperation.EQUAL_JOIN_USER));
+        ImmutableSpecification<Client> findInactiveClients = ImmutableSpecification.of(criteriaCompiler, Client.class)
+                .and("enabled", false, SearchOperation.EQUAL_JOIN_USER);
         return clientService.getClients(findInactiveClients);
     }
 
@@ -1,5 +1,6 @@
 package com.OBS.controller;
 
+import com.OBS.alternativeBodies.CashFlowForecast;
 import com.OBS.alternativeBodies.KeyValueObject;
 import com.OBS.alternativeBodies.ValueAndPercent;
 import com.OBS.entity.CyclicalTransfer;
@@ -49,6 +50,12 @@ public class CyclicalTransferController {
         return cyclicalTransferService.getClientEstimated(client_Id);
     }
 
+    @GetMapping(path = "/client/{client_Id}/forecast")
+    public CashFlowForecast getClientForecast(@PathVariable Long client_Id,
+                                              @RequestParam(defaultValue = "12") int months){
+        return cyclicalTransferService.getClientForecast(client_Id, months);
+    }
+
     @PostMapping()
     public void addTransfer(@RequestBody CyclicalTransfer cyclicalTransfer){
         cyclicalTransferService.addTransfer(cyclicalTransfer);
@@ -1,12 +1,20 @@
 package com.OBS.controller;
 
+import com.OBS.alternativeBodies.CyclicalTransferListItem;
+import com.OBS.alternativeBodies.LoanListItem;
+import com.OBS.alternativeBodies.OrderListItem;
+import com.OBS.alternativeBodies.TransferListItem;
+import com.OBS.alternativeBodies.VisitListItem;
 import com.OBS.auth.entity.AppUser;
 import com.OBS.entity.*;
 import com.OBS.service.*;
 import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import static com.OBS.auth.AppUserRole.*;
 import java.util.List;
 
@@ -21,6 +29,7 @@ public class DictionaryController {
     private final AnnouncementService announcementService;
     private final VisitService visitService;
     private final OrderService orderService;
+    private final OrderEventService orderEventService;
     private final TransferService transferService;
     private final CyclicalTransferService cyclicalTransferService;
     private final LoanService loanService;
@@ -61,6 +70,17 @@ public class DictionaryController {
         return visitService.getVisitsUnassigned();
     }
 
+    // Slim variants read only the columns of the list screens, associations are reduced to ids and names
+    @GetMapping(path = "/visits/slim")
+    public List<VisitListItem> getVisitItems() {
+        return visitService.getVisitItems();
+    }
+
+    @GetMapping(path = "/visits/unassigned/slim")
+    public List<VisitListItem> getVisitItemsUnassigned() {
+        return visitService.getVisitItemsUnassigned();
+    }
+
     @GetMapping(path = "/orders")
     public List<Order> getOrders() {
         return orderService.getOrders(ADMIN.name());
@@ -75,15 +95,58 @@ public class DictionaryController {
     @GetMapping(path = "/orders/for-employees/priority")
     public List<Order> getPriorOrdersForEmployees(){ return orderService.getPriorityOrders(EMPLOYEE.name());}
 
+    @GetMapping(path = "/orders/slim")
+    public List<OrderListItem> getOrderItems() {
+        return orderService.getOrderItems(ADMIN.name());
+    }
+
+    @GetMapping(path = "/orders/priority/slim")
+    public List<OrderListItem> getPriorOrderItems() {return orderService.getPriorityOrderItems(ADMIN.name());}
+
+    @GetMapping(path = "/orders/for-employees/slim")
+    public List<OrderListItem> getOrderItemsForEmployees(){ return orderService.getOrderItems(EMPLOYEE.name());}
+
+    @GetMapping(path = "/orders/for-employees/priority/slim")
+    public List<OrderListItem> getPriorOrderItemsForEmployees(){ return orderService.getPriorityOrderItems(EMPLOYEE.name());}
+
+    @GetMapping(path = "/orders/count")
+    public long countOrders() {
+        return orderService.countUnassignedOrders(ADMIN.name());
+    }
+
+    @GetMapping(path = "/orders/for-employees/count")
+    public long countOrdersForEmployees() {
+        return orderService.countUnassignedOrders(EMPLOYEE.name());
+    }
+
+    @GetMapping(path = "/orders/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getOrderEvents(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return orderEventService.subscribe(ADMIN.name(), lastEventId);
+    }
+
+    @GetMapping(path = "/orders/for-employees/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getOrderEventsForEmployees(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return orderEventService.subscribe(EMPLOYEE.name(), lastEventId);
+    }
+
     @GetMapping(path = "/transfers")
     public List<Transfer> getTransfers(){ return transferService.getTransfers();}
 
+    @GetMapping(path = "/transfers/slim")
+    public List<TransferListItem> getTransferItems(){ return transferService.getTransferItems();}
+
     @GetMapping(path = "/cyclical-transfers")
     public List<CyclicalTransfer> getCyclicalTransfers(){return cyclicalTransferService.getTransfers();}
 
+    @GetMapping(path = "/cyclical-transfers/slim")
+    public List<CyclicalTransferListItem> getCyclicalTransferItems(){return cyclicalTransferService.getTransferItems();}
+
     @GetMapping(path = "/loans")
     public List<Loan> getLoans(){return loanService.getLoans();}
 
+    @GetMapping(path = "/loans/slim")
+    public List<LoanListItem> getLoanItems(){return loanService.getLoanItems();}
+
     @GetMapping(path = "/loans-rates")
     public List<LoanRate> getRates(){return loanRateService.getRates();}
 
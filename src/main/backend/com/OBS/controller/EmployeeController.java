@@ -4,8 +4,8 @@ import com.OBS.alternativeBodies.EmployeeUserBody;
 import com.OBS.entity.Client;
 import com.OBS.entity.Employee;
 import com.OBS.enums.SearchOperation;
-import com.OBS.searchers.SearchCriteria;
-import com.OBS.searchers.specificators.Specifications;
+import com.OBS.searchers.specificators.CriteriaCompiler;
+import com.OBS.searchers.specificators.ImmutableSpecification;
 import com.OBS.service.EmployeeService;
 import lombok.AllArgsConstructor;
 import net.kaczmarzyk.spring.data.jpa.domain.Equal;
@@ -23,6 +23,7 @@ import java.util.List;
 @RequestMapping(path = "/employees")
 public class EmployeeController {
     private final EmployeeService employeeService;
+    private final CriteriaCompiler criteriaCompiler;
 
     @GetMapping("/filtered")
     public List<Employee> getEmployeesSorted(
@@ -37,15 +38,15 @@ public class EmployeeController {
 
     @GetMapping(path = "/active")
     public List<Employee> getActiveEmployees(){
-        Specifications<Employee> findActiveEmployees = new Specifications<Employee>()
-                .add(new SearchCriteria("enabled",true, SearchOperation.EQUAL_JOIN_USER));
+        ImmutableSpecification<Employee> findActiveEmployees = ImmutableSpecification.of(criteriaCompiler, Employee.class)
+                .and("enabled", true, SearchOperation.EQUAL_JOIN_USER);
         return employeeService.getEmployees(findActiveEmployees);
     }
 
     @GetMapping(path = "/inactive")
     public List<Employee> getInactiveEmployees(){
-        Specifications<Employee> findInactiveEmployees = new Specifications<Employee>()
-                .add(new SearchCriteria("enabled",false, SearchOperation.EQUAL_JOIN_USER));
+        ImmutableSpecification<Employee> findInactiveEmployees = ImmutableSpecification.of(criteriaCompiler, Employee.class)
+                .and("enabled", false, SearchOperation.EQUAL_JOIN_USER);
         return employeeService.getEmployees(findInactiveEmployees);
     }
 
@@ -1,11 +1,18 @@
 package com.OBS.controller;
 
+import com.OBS.alternativeBodies.DelinquencyReport;
 import com.OBS.entity.Loan;
+import com.OBS.entity.LoanInstallment;
 import com.OBS.alternativeBodies.LoanBody;
+import com.OBS.alternativeBodies.LoanPortfolioSnapshot;
+import com.OBS.alternativeBodies.LoanSimulationBody;
+import com.OBS.alternativeBodies.LoanSimulationResult;
+import com.OBS.service.IdempotencyService;
 import com.OBS.service.LoanService;
 import lombok.AllArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Optional;
 
 @AllArgsConstructor
@@ -13,13 +20,25 @@ import java.util.Optional;
 @RequestMapping(path = "/loans")
 public class LoanController {
     private final LoanService loanService;
+    private final IdempotencyService idempotencyService;
 
     @PostMapping(path = "/calculate")
     public Loan getFutureLoan(@RequestBody LoanBody body){return loanService.calculateLoan(body);}
 
+    @PostMapping(path = "/simulate")
+    public LoanSimulationResult simulateLoans(@RequestBody LoanSimulationBody body){return loanService.simulateLoans(body);}
+
+    @GetMapping(path = "/portfolio")
+    public LoanPortfolioSnapshot getPortfolio(@RequestParam(defaultValue = "12") int months){
+        return loanService.getPortfolio(months);
+    }
+
     @GetMapping(path = "/{loanId}")
     public Loan getLoan(@PathVariable Long loanId){return loanService.getLoan(loanId);}
 
+    @GetMapping(path = "/{loanId}/schedule")
+    public List<LoanInstallment> getSchedule(@PathVariable Long loanId){return loanService.getSchedule(loanId);}
+
     @GetMapping(path = "/client/{clientId}")
     public Optional<Loan> getClientLoan(@PathVariable Long clientId) {
         return loanService.getClientLoan(clientId);
@@ -34,7 +53,20 @@ public class LoanController {
     @DeleteMapping(path = "/{loanId}")
     public void deleteLoan(@PathVariable Long loanId){loanService.deleteLoan(loanId);}
 
+    @PostMapping(path = "/delinquency")
+    public DelinquencyReport applyPenalties(@RequestParam(defaultValue = "true") boolean dryRun){
+        return loanService.applyPenalties(dryRun);
+    }
+
     @PatchMapping(path = "/pay-rate/{clientId}")
-    public void payLoanRate(@PathVariable Long clientId){loanService.realizePayment(clientId);}
+    public void payLoanRate(@PathVariable Long clientId,
+                            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey){
+        if (idempotencyKey == null || idempotencyKey.isEmpty())
+            loanService.realizePayment(clientId);
+        else idempotencyService.execute(
+                "loan-rate:" + clientId + ":" + idempotencyKey,
+                () -> loanService.realizePayment(clientId)
+        );
+    }
 
 }
@@ -1,7 +1,12 @@
 package com.OBS.controller;
 
 import com.OBS.entity.Order;
+import com.OBS.entity.OrderExecution;
+import com.OBS.alternativeBodies.BulkOrderDecisionReport;
+import com.OBS.alternativeBodies.OrderDecision;
 import com.OBS.alternativeBodies.OrderJsonBody;
+import com.OBS.service.BulkOrderDecisionService;
+import com.OBS.service.OrderQueueService;
 import com.OBS.service.OrderService;
 import lombok.AllArgsConstructor;
 import org.springframework.web.bind.annotation.*;
@@ -13,6 +18,8 @@ import java.util.List;
 @AllArgsConstructor
 public class OrderController {
     private final OrderService orderService;
+    private final OrderQueueService orderQueueService;
+    private final BulkOrderDecisionService bulkOrderDecisionService;
 
     @GetMapping(path = "{orderId}")
     public Order getOrder(@PathVariable Long orderId){return orderService.getOrder(orderId);}
@@ -32,15 +39,39 @@ public class OrderController {
     }
 
     @PutMapping(path = "{orderId}")
-    public void finishOrder(@PathVariable Long orderId,@RequestParam("decision") String decision){
-        orderService.finishOrder(orderId,decision);
+    public OrderExecution finishOrder(@PathVariable Long orderId,@RequestParam("decision") String decision){
+        return orderService.finishOrder(orderId,decision);
     }
 
+    @PostMapping(path = "decisions")
+    public BulkOrderDecisionReport finishOrders(@RequestBody List<OrderDecision> decisions){
+        return bulkOrderDecisionService.finishOrders(decisions);
+    }
+
+    @GetMapping(path = "{orderId}/execution")
+    public OrderExecution getOrderExecution(@PathVariable Long orderId){return orderService.getOrderExecution(orderId);}
+
     @PutMapping(path = "{orderId}/assign-employee/{employeeId}")
     public void assignEmployee(@PathVariable("orderId") Long orderId,@PathVariable("employeeId") Long employeeId){
         orderService.assignEmployee(orderId,employeeId);
     }
 
+    @PostMapping(path = "queue/claim")
+    public List<Order> claimOrders(@RequestParam("employeeId") Long employeeId,
+                                   @RequestParam(value = "limit", defaultValue = "10") int limit){
+        return orderQueueService.claimNext(employeeId,limit);
+    }
+
+    @PostMapping(path = "queue/{orderId}/renew")
+    public Order renewClaim(@PathVariable Long orderId,@RequestParam("employeeId") Long employeeId){
+        return orderQueueService.renew(orderId,employeeId);
+    }
+
+    @PostMapping(path = "queue/{orderId}/release")
+    public void releaseClaim(@PathVariable Long orderId,@RequestParam("employeeId") Long employeeId){
+        orderQueueService.release(orderId,employeeId);
+    }
+
     @DeleteMapping(path = "{orderId}")
     public void deleteOrder(@PathVariable Long orderId){
         orderService.deleteOrder(orderId);
@@ -0,0 +1,17 @@
+package com.OBS.controller;
+
+import com.OBS.service.ClientMonthlyRollupService;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping(path = "/rollups")
+@AllArgsConstructor
+public class RollupController {
+    private final ClientMonthlyRollupService rollupService;
+
+    @PostMapping(path = "/rebuild")
+    public int rebuildRollup(){return rollupService.rebuild();}
+}
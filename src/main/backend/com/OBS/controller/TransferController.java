@@ -1,8 +1,10 @@
 package com.OBS.controller;
 
 import com.OBS.alternativeBodies.KeyValueObject;
+import com.OBS.alternativeBodies.TransferPage;
 import com.OBS.alternativeBodies.ValueAndPercent;
 import com.OBS.entity.Transfer;
+import com.OBS.service.IdempotencyService;
 import com.OBS.service.TransferService;
 import lombok.AllArgsConstructor;
 import net.kaczmarzyk.spring.data.jpa.domain.Between;
@@ -21,6 +23,7 @@ import java.util.List;
 @AllArgsConstructor
 public class TransferController {
     private final TransferService transferService;
+    private final IdempotencyService idempotencyService;
 
     @GetMapping(path = "recent/client/{client_Id}")
     public List<Transfer> getRecentTransfers(@PathVariable Long client_Id) {
@@ -39,6 +42,20 @@ public class TransferController {
         return transferService.getTransfers(filterTransferSpec);
     }
 
+    @GetMapping(path = "/client/{client_Id}/page")
+    public TransferPage getTransfersPage(
+            @And({
+                    @Spec(path = "transferDate", params = "dateFrom", config = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", spec = GreaterThanOrEqual.class),
+                    @Spec(path = "transferDate", params = "dateTo", config = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", spec = LessThanOrEqual.class),
+                    @Spec(path = "client.clientId", pathVars = "client_Id", spec = Equal.class),
+                    @Spec(path = "type", params = "transferType", spec = Equal.class),
+                    @Spec(path = "category", params = "transferCategory", spec = Equal.class)
+            }) Specification<Transfer> filterTransferSpec,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return transferService.getTransfersPage(filterTransferSpec, cursor, size);
+    }
+
     @GetMapping(path = "/client/{client_Id}/1-month-history")
     public List<KeyValueObject<String, ValueAndPercent>> getClientHistoryOf1Month(@PathVariable Long client_Id) {
         return transferService.getClientHistory(client_Id, 1);
@@ -46,8 +63,14 @@ public class TransferController {
 
 
     @PostMapping()
-    public void addTransfer(@RequestBody Transfer transfer) {
-        transferService.performTransfer(transfer);
+    public void addTransfer(@RequestBody Transfer transfer,
+                            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isEmpty())
+            transferService.performTransfer(transfer);
+        else idempotencyService.execute(
+                transfer.getClient().getClientId() + ":" + idempotencyKey,
+                () -> transferService.performTransfer(transfer)
+        );
     }
 
     @DeleteMapping(path = "{transferId}")
@@ -3,18 +3,27 @@ package com.OBS.entity;
 import com.OBS.auth.entity.AppUser;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.Getter;
 import lombok.Setter;
 
 import javax.persistence.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.regex.Pattern;
 
 @Entity
-@Table(name = "client")
+// Lazy references are Hibernate proxies, their handler fields aren't part of the JSON
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@Table(
+        name = "client",
+        uniqueConstraints = @UniqueConstraint(name = "uk_client_account_number_digits", columnNames = "account_number_digits")
+)
 @Getter
 @Setter
 public class Client {
+    private static final Pattern NON_DIGITS = Pattern.compile("\\D");
+
     @Id
     @GeneratedValue(
             strategy = GenerationType.IDENTITY
@@ -25,6 +34,10 @@ public class Client {
     )
     private Long clientId;
     private String accountNumber;
+    // Digits only form of accountNumber, backup data has numbers stored both with and without spaces
+    @JsonIgnore
+    @Column(name = "account_number_digits")
+    private String accountNumberDigits;
     private Float balance;
     private String city;
     @JsonFormat(pattern="yyyy-MM-dd")
@@ -112,4 +125,16 @@ public class Client {
     public Client() {
 
     }
+
+    @PrePersist
+    @PreUpdate
+    private void updateAccountNumberDigits() {
+        this.accountNumberDigits = normalizeAccountNumber(accountNumber);
+    }
+
+    public static String normalizeAccountNumber(String accountNumber) {
+        if (accountNumber == null)
+            return null;
+        return NON_DIGITS.matcher(accountNumber).replaceAll("");
+    }
 }
@@ -0,0 +1,44 @@
+package com.OBS.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+@Entity
+@Getter
+@Setter
+@Table(
+        name = "client_monthly_rollup",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_client_monthly_rollup",
+                columnNames = {"client_id", "year_month", "type", "category"}
+        )
+)
+public class ClientMonthlyRollup {
+    @Id
+    @GeneratedValue(
+            strategy = GenerationType.IDENTITY
+    )
+    @Column(
+            nullable = false,
+            updatable = false
+    )
+    private Long rollupId;
+    @Column(name = "client_id", nullable = false)
+    private Long clientId;
+    // yyyy-MM, compares lexicographically in the same order as dates
+    @Column(name = "year_month", nullable = false, length = 7)
+    private String yearMonth;
+    @Column(name = "type", nullable = false)
+    private String type;
+    @Column(name = "category", nullable = false)
+    private String category;
+    @Column(name = "total", nullable = false)
+    private Double total;
+    @Column(name = "transfers_count", nullable = false)
+    private Long transfersCount;
+
+    public ClientMonthlyRollup() {
+    }
+}
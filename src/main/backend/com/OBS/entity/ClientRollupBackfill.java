@@ -0,0 +1,29 @@
+package com.OBS.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// Marks a client whose monthly rollup was rebuilt from the transfers table,
+// from then on the live upserts keep it in step
+@Entity
+@Getter
+@Setter
+@Table(name = "client_rollup_backfills")
+public class ClientRollupBackfill {
+    @Id
+    @Column(name = "client_id", nullable = false, updatable = false)
+    private Long clientId;
+    @Column(name = "rebuilt_at", nullable = false)
+    private LocalDateTime rebuiltAt;
+
+    public ClientRollupBackfill() {
+    }
+
+    public ClientRollupBackfill(Long clientId) {
+        this.clientId = clientId;
+        this.rebuiltAt = LocalDateTime.now();
+    }
+}
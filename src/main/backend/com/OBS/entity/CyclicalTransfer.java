@@ -1,17 +1,35 @@
 package com.OBS.entity;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
 
 import javax.persistence.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.Objects;
 
 @Entity
 @Getter
 @Setter
-@Table(name = "cyclical_transfers")
+@NamedEntityGraph(name = "CyclicalTransfer.client", attributeNodes = @NamedAttributeNode("client"))
+@Table(
+        name = "cyclical_transfers",
+        indexes = {
+                @Index(name = "idx_cyclical_transfers_re_transfer_date", columnList = "re_transfer_date"),
+                @Index(name = "idx_cyclical_transfers_account_number_digits", columnList = "account_number_digits")
+        },
+        uniqueConstraints = @UniqueConstraint(
+                name = CyclicalTransfer.FINGERPRINT_CONSTRAINT,
+                columnNames = {"client_id", "fingerprint"}
+        )
+)
 public class CyclicalTransfer {
+    public static final String FINGERPRINT_CONSTRAINT = "uk_cyclical_transfers_client_fingerprint";
+
     @Id
     @GeneratedValue(
             strategy = GenerationType.IDENTITY
@@ -27,13 +45,66 @@ public class CyclicalTransfer {
     private String category;
     private String receiver;
     private String accountNumber;
+    // Digits only form of accountNumber, finds the standing orders a client receives
+    @JsonIgnore
+    @Column(name = "account_number_digits")
+    private String accountNumberDigits;
     private String title;
+    // Day of month the client declared the order for, set when the client creates or edits it. Realising the order
+    // moves reTransferDate by a month and clamps it to shorter months, this one stays put
+    @JsonIgnore
+    @Column(name = "declared_day")
+    private Integer declaredDay;
+    // Hash of the fields compared when looking for duplicated orders, set when the client creates or edits the order
+    @JsonIgnore
+    @Column(name = "fingerprint", length = 64)
+    private String fingerprint;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
 
     @JoinColumn(name = "client_id")
     private Client client;
 
     public CyclicalTransfer(){}
 
+    @PrePersist
+    @PreUpdate
+    private void updateAccountNumberDigits() {
+        this.accountNumberDigits = Client.normalizeAccountNumber(accountNumber);
+    }
+
+    public static String fingerprintOf(CyclicalTransfer transfer) {
+        return sha256(String.join("\0",
+                Objects.toString(transfer.getAmount(), ""),
+                Objects.toString(transfer.getReceiver(), ""),
+                Objects.toString(transfer.getCategory(), ""),
+                Objects.toString(transfer.getAccountNumber(), ""),
+                Objects.toString(transfer.getTitle(), ""),
+                Objects.toString(declaredDayOf(transfer), "")
+        ));
+    }
+
+    public static Integer declaredDayOf(CyclicalTransfer transfer) {
+        if (transfer.getDeclaredDay() != null)
+            return transfer.getDeclaredDay();
+        return transfer.getReTransferDate() == null ? null : transfer.getReTransferDate().getDayOfMonth();
+    }
+
+    // Kept by duplicates declared before fingerprints existed, unique per order so they don't break the constraint
+    public static String duplicateFingerprintOf(CyclicalTransfer transfer) {
+        return sha256(fingerprintOf(transfer) + "\0duplicate\0" + transfer.getTransferId());
+    }
+
+    private static String sha256(String content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash)
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
 }
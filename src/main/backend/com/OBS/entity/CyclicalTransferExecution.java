@@ -0,0 +1,48 @@
+package com.OBS.entity;
+
+import com.OBS.enums.ExecutionOutcome;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@Table(
+        name = "cyclical_transfer_executions",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_cyclical_transfer_executions",
+                columnNames = {"run_date", "cyclical_transfer_id"}
+        )
+)
+public class CyclicalTransferExecution {
+    @Id
+    @GeneratedValue(
+            strategy = GenerationType.IDENTITY
+    )
+    @Column(
+            nullable = false,
+            updatable = false
+    )
+    private Long executionId;
+    @Column(name = "run_date", nullable = false)
+    private LocalDate runDate;
+    @Column(name = "cyclical_transfer_id", nullable = false)
+    private Long cyclicalTransferId;
+    @Enumerated(EnumType.STRING)
+    private ExecutionOutcome outcome;
+    private LocalDateTime executedAt;
+
+    public CyclicalTransferExecution() {
+    }
+
+    public CyclicalTransferExecution(LocalDate runDate, Long cyclicalTransferId, ExecutionOutcome outcome) {
+        this.runDate = runDate;
+        this.cyclicalTransferId = cyclicalTransferId;
+        this.outcome = outcome;
+        this.executedAt = LocalDateTime.now();
+    }
+}
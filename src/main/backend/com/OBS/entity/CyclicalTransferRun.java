@@ -0,0 +1,56 @@
+package com.OBS.entity;
+
+import com.OBS.enums.BatchRunStatus;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@Table(
+        name = "cyclical_transfer_runs",
+        uniqueConstraints = @UniqueConstraint(name = "uk_cyclical_transfer_runs_date", columnNames = "run_date")
+)
+public class CyclicalTransferRun {
+    @Id
+    @GeneratedValue(
+            strategy = GenerationType.IDENTITY
+    )
+    @Column(
+            nullable = false,
+            updatable = false
+    )
+    private Long runId;
+    @JsonFormat(pattern="yyyy-MM-dd")
+    @Column(name = "run_date", nullable = false)
+    private LocalDate runDate;
+    @Enumerated(EnumType.STRING)
+    private BatchRunStatus status;
+    @JsonFormat(pattern="yyyy-MM-dd'T'HH:mm:ss.SSS")
+    private LocalDateTime startedAt;
+    @JsonFormat(pattern="yyyy-MM-dd'T'HH:mm:ss.SSS")
+    private LocalDateTime finishedAt;
+    private Integer dueTransfers;
+    private Integer realised;
+    private Integer insufficientBalance;
+    private Integer senderMissing;
+    private Integer failed;
+    // Summed over every tick of the run, the throughput is computed from both
+    private Integer processedTransfers;
+    private Long processingMillis;
+    private Float transfersPerSecond;
+
+    public CyclicalTransferRun() {
+    }
+
+    public CyclicalTransferRun(LocalDate runDate) {
+        this.runDate = runDate;
+        this.status = BatchRunStatus.RUNNING;
+        this.startedAt = LocalDateTime.now();
+    }
+}
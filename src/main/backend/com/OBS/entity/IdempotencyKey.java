@@ -0,0 +1,38 @@
+package com.OBS.entity;
+
+import com.OBS.enums.IdempotencyStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@Table(
+        name = "idempotency_keys",
+        indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at")
+)
+public class IdempotencyKey {
+    @Id
+    @Column(
+            name = "idempotency_key",
+            nullable = false,
+            updatable = false
+    )
+    private String idempotencyKey;
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private IdempotencyStatus status;
+    // Error message of a failed request, replayed to retries
+    @Column(name = "outcome", length = 1024)
+    private String outcome;
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public IdempotencyKey() {
+    }
+}
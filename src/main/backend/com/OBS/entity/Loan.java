@@ -1,15 +1,24 @@
 package com.OBS.entity;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.Getter;
 import lombok.Setter;
 
 import javax.persistence.*;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
 @Getter
 @Setter
+@NamedEntityGraph(name = "Loan.client", attributeNodes = @NamedAttributeNode("client"))
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 @Table(name = "loans")
 public class Loan {
     @Id
@@ -40,9 +49,14 @@ public class Loan {
     private Float totalPaidOff;
     private Float toRepaidOff;
     private int ratesLeftToPay;
+    // Number of rows in loan_rates for this loan, kept so completion doesn't need a count
+    private Integer ratesPaid;
+    // Pay day of the last overdue period already charged a penalty, null when none was
+    @JsonFormat(pattern="yyyy-MM-dd")
+    private LocalDate penalisedThrough;
 
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
 
     @JoinColumn(name = "client_id")
     private Client client;
@@ -51,11 +65,15 @@ public class Loan {
     public static final Float basicCommission = 0.1f;
     @Transient
     public static final Float yearlyRRSO = 0.175f;
+    @Transient
+    private static final MathContext MATH = MathContext.DECIMAL64;
 
     public Loan(LocalDate concludedDate,
                 int initialRatesNumber,
                 Float basicLoanAmount,
                 Client client) {
+        if (initialRatesNumber < 1)
+            throw new IllegalStateException("Number of rates has to be positive");
         isActive = true;
         this.concludedDate = concludedDate;
         this.initialRatesNumber = initialRatesNumber;
@@ -68,24 +86,15 @@ public class Loan {
         this.penaltyAmount = 0f;
         this.totalPaidOff = 0f;
         this.ratesLeftToPay = initialRatesNumber;
-        this.toRepaidOff = basicLoanAmount;
-
-        if(initialRatesNumber > 12)
-            for(int i = 0; i < initialRatesNumber / 12 ; i++){
-                toRepaidOff += toRepaidOff * yearlyRRSO;
-            }
-
-        float monthlyPercent = yearlyRRSO / 12;
+        this.ratesPaid = 0;
 
-        for(int i = 0; i < initialRatesNumber % 12 ; i++){
-            toRepaidOff += toRepaidOff * monthlyPercent;
-        }
-
-        toRepaidOff += commission;
+        BigDecimal financedAmount = financedAmount(basicLoanAmount, commission);
+        BigDecimal installmentAmount = installmentAmount(financedAmount, annuityFactor(initialRatesNumber));
+        this.toRepaidOff = scheduleTotal(financedAmount, installmentAmount, initialRatesNumber).floatValue();
 
         interestAmount = toRepaidOff - basicLoanAmount;
 
-        this.rateAmount = toRepaidOff / initialRatesNumber;
+        this.rateAmount = installmentAmount.floatValue();
         this.basicRateAmount = this.rateAmount;
 
         this.client = client;
@@ -94,4 +103,115 @@ public class Loan {
     public Loan() {
 
     }
+
+    // Annuity schedule over basic amount and commission, every installment equal except the last one
+    // which absorbs rounding, due dates start from nextRatePayDay
+    public List<LoanInstallment> buildSchedule() {
+        BigDecimal monthlyRate = monthlyRate();
+        BigDecimal balance = financedAmount(basicLoanAmount, commission);
+        BigDecimal installmentAmount = installmentAmount(balance, annuityFactor(initialRatesNumber));
+
+        List<LoanInstallment> schedule = new ArrayList<>(initialRatesNumber);
+        for (int number = 1; number <= initialRatesNumber; number++) {
+            BigDecimal interest = balance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_EVEN);
+            BigDecimal principal = number == initialRatesNumber ? balance : installmentAmount.subtract(interest);
+            balance = balance.subtract(principal);
+            schedule.add(new LoanInstallment(this, number, nextRatePayDay.plusMonths(number - 1), principal, interest, balance));
+        }
+        return schedule;
+    }
+
+    // Same as summing buildSchedule amounts, without creating the installments
+    public static BigDecimal scheduleTotal(BigDecimal financedAmount, BigDecimal installmentAmount, int ratesNumber) {
+        BigDecimal monthlyRate = monthlyRate();
+        BigDecimal balance = financedAmount;
+        for (int number = 1; number < ratesNumber; number++)
+            balance = balance.subtract(installmentAmount.subtract(balance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_EVEN)));
+        BigDecimal lastInterest = balance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_EVEN);
+        return installmentAmount.multiply(BigDecimal.valueOf(ratesNumber - 1)).add(balance).add(lastInterest);
+    }
+
+    public static BigDecimal monthlyRate() {
+        return decimal(yearlyRRSO).divide(BigDecimal.valueOf(12), MATH);
+    }
+
+    // Depends on the number of rates only, installment = financed amount * factor
+    public static BigDecimal annuityFactor(int ratesNumber) {
+        BigDecimal monthlyRate = monthlyRate();
+        BigDecimal growth = BigDecimal.ONE.add(monthlyRate).pow(ratesNumber, MATH);
+        return monthlyRate.multiply(growth).divide(growth.subtract(BigDecimal.ONE), MATH);
+    }
+
+    public static BigDecimal financedAmount(Float basicLoanAmount, Float commission) {
+        return decimal(basicLoanAmount).add(decimal(commission)).setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+    public static BigDecimal installmentAmount(BigDecimal financedAmount, BigDecimal annuityFactor) {
+        return financedAmount.multiply(annuityFactor).setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+    private static BigDecimal decimal(Float value) {
+        return new BigDecimal(Float.toString(value));
+    }
+
+    // Months the current rate is overdue, counting the month of the missed pay day
+    public int overdueMonths(LocalDate today) {
+        if (today.isBefore(nextRatePayDay))
+            return 0;
+        return (int) ChronoUnit.MONTHS.between(nextRatePayDay, today) + 1;
+    }
+
+    // Overdue months not charged yet, periods up to penalisedThrough were charged on an earlier run
+    public int unpenalisedMonths(LocalDate today) {
+        int overdueMonths = overdueMonths(today);
+        if (penalisedThrough == null || penalisedThrough.isBefore(nextRatePayDay))
+            return overdueMonths;
+        int penalisedMonths = (int) ChronoUnit.MONTHS.between(nextRatePayDay, penalisedThrough) + 1;
+        return Math.max(0, overdueMonths - penalisedMonths);
+    }
+
+    // Charges the overdue months not charged yet and returns how many there were
+    public int penalise(LocalDate today) {
+        int penaltyMonths = unpenalisedMonths(today);
+        if (penaltyMonths == 0)
+            return 0;
+        applyPenalty(penaltyMonths);
+        penalisedThrough = nextRatePayDay.plusMonths(overdueMonths(today) - 1);
+        return penaltyMonths;
+    }
+
+    public void applyPenalty(int penaltyMonths) {
+        float newPenaltyAmount = penaltyMonths * rateAmount;
+        penaltyAmount += newPenaltyAmount;
+
+        float newInterestAmount = (penaltyMonths * (yearlyRRSO / 12)) * (interestAmount + basicLoanAmount + penaltyAmount);
+        interestAmount += newInterestAmount;
+
+        toRepaidOff += newPenaltyAmount + newInterestAmount;
+        updateRatesInfo();
+    }
+
+    public void updateRatesInfo() {
+        if (ratesLeftToPay == 1 && toRepaidOff > rateAmount) {
+            if (toRepaidOff < basicRateAmount)
+                rateAmount = toRepaidOff;
+            else {
+                rateAmount = basicRateAmount;
+            }
+        }
+
+        if (ratesLeftToPay == 1 && toRepaidOff < rateAmount)
+            rateAmount = toRepaidOff;
+
+        if (toRepaidOff > rateAmount * ratesLeftToPay) {
+            float difference = toRepaidOff - (rateAmount * ratesLeftToPay);
+            int additionalRates = (int) (difference % rateAmount);
+            if (difference - (additionalRates * rateAmount) > 0)
+                additionalRates += 1;
+
+            estimatedEndDate = estimatedEndDate.plusMonths(additionalRates);
+            ratesLeftToPay += additionalRates;
+            numOfRates += additionalRates;
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package com.OBS.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Entity
+@Getter
+@Setter
+@Table(
+        name = "loan_schedule",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_loan_schedule_loan_installment",
+                columnNames = {"loan_id", "installment_number"}
+        )
+)
+public class LoanInstallment {
+    @Id
+    @GeneratedValue(
+            strategy = GenerationType.IDENTITY
+    )
+    @Column(
+            nullable = false,
+            updatable = false
+    )
+    private Long installmentId;
+    @Column(name = "installment_number", nullable = false)
+    private Integer installmentNumber;
+    @JsonFormat(pattern="yyyy-MM-dd")
+    private LocalDate dueDate;
+    @Column(precision = 19, scale = 2)
+    private BigDecimal amount;
+    @Column(precision = 19, scale = 2)
+    private BigDecimal principal;
+    @Column(precision = 19, scale = 2)
+    private BigDecimal interest;
+    // Principal still owed once this installment is paid
+    @Column(precision = 19, scale = 2)
+    private BigDecimal remainingPrincipal;
+    @JsonFormat(pattern="yyyy-MM-dd")
+    private LocalDate paidDate;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "loan_id", nullable = false)
+    private Loan loan;
+
+    public LoanInstallment(Loan loan,
+                           Integer installmentNumber,
+                           LocalDate dueDate,
+                           BigDecimal principal,
+                           BigDecimal interest,
+                           BigDecimal remainingPrincipal) {
+        this.loan = loan;
+        this.installmentNumber = installmentNumber;
+        this.dueDate = dueDate;
+        this.principal = principal;
+        this.interest = interest;
+        this.amount = principal.add(interest);
+        this.remainingPrincipal = remainingPrincipal;
+    }
+
+    public LoanInstallment() {
+    }
+}
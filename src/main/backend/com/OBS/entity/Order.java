@@ -1,6 +1,8 @@
 package com.OBS.entity;
 
+import com.OBS.enums.OrderType;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.vladmihalcea.hibernate.type.json.JsonBinaryType;
 import lombok.Getter;
 import lombok.Setter;
@@ -12,7 +14,15 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "orders")
+@NamedEntityGraph(name = "Order.people", attributeNodes = {
+        @NamedAttributeNode("client"),
+        @NamedAttributeNode("orderingEmployee"),
+        @NamedAttributeNode("employee")
+})
+@Table(
+        name = "orders",
+        indexes = @Index(name = "idx_orders_queue", columnList = "is_active, employee_id, create_date")
+)
 @Getter
 @Setter
 @TypeDef(name = "jsonb", typeClass = JsonBinaryType.class)
@@ -28,10 +38,18 @@ public class Order {
     private Long order_Id;
 
     private String orderType;
+    // Compact code of orderType, display names are kept for the consoles and filters
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32)
+    @JsonIgnore
+    private OrderType typeCode;
     private String decision;
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS")
     private LocalDateTime createDate;
     private Boolean isActive;
+    // Claims taken from the work queue expire, manual assignments have no expiry
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS")
+    private LocalDateTime claimExpiresAt;
 
     @Transient
     private String waitingTime;
@@ -40,15 +58,15 @@ public class Order {
     @Column(columnDefinition = "jsonb")
     private String requestBody;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "client_id")
     private Client client;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "ordering_employee_id")
     private Employee orderingEmployee;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "employee_id")
     private Employee employee;
 
@@ -57,9 +75,13 @@ public class Order {
     }
 
     public String getWaitingTime() {
+        return waitingTime(this.createDate);
+    }
+
+    public static String waitingTime(LocalDateTime createDate) {
         LocalDateTime now = LocalDateTime.now();
 
-        Duration duration = Duration.between( this.createDate,now);
+        Duration duration = Duration.between( createDate,now);
 
         return String.format("%dD.%dH.%dM.%dS",
                 (int) duration.toDays() % 31,
@@ -0,0 +1,65 @@
+package com.OBS.entity;
+
+import com.OBS.enums.OrderExecutionStatus;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@Table(
+        name = "order_executions",
+        uniqueConstraints = @UniqueConstraint(name = "uk_order_executions_order", columnNames = "order_id"),
+        indexes = @Index(name = "idx_order_executions_due", columnList = "status, next_attempt_at")
+)
+public class OrderExecution {
+    public static final int MAX_ERROR_LENGTH = 1000;
+
+    @Id
+    @GeneratedValue(
+            strategy = GenerationType.IDENTITY
+    )
+    @Column(
+            nullable = false,
+            updatable = false
+    )
+    private Long executionId;
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+    @Enumerated(EnumType.STRING)
+    private OrderExecutionStatus status;
+    private Integer attempts;
+    @Column(length = MAX_ERROR_LENGTH)
+    private String lastError;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS")
+    private LocalDateTime queuedAt;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS")
+    private LocalDateTime nextAttemptAt;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS")
+    private LocalDateTime finishedAt;
+    // Renewed by the instance running the execution, once it passes the instance is considered gone
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS")
+    private LocalDateTime leaseExpiresAt;
+
+    public OrderExecution() {
+    }
+
+    public OrderExecution(Long orderId) {
+        this.orderId = orderId;
+        requeue();
+    }
+
+    public void requeue() {
+        this.status = OrderExecutionStatus.QUEUED;
+        this.attempts = 0;
+        this.lastError = null;
+        this.queuedAt = LocalDateTime.now();
+        this.nextAttemptAt = this.queuedAt;
+        this.finishedAt = null;
+        this.leaseExpiresAt = null;
+    }
+}
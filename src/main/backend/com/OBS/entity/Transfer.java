@@ -13,7 +13,11 @@ import java.time.LocalDateTime;
 @Entity
 @Getter
 @Setter
-@Table(name = "transfers")
+@NamedEntityGraph(name = "Transfer.client", attributeNodes = @NamedAttributeNode("client"))
+@Table(
+        name = "transfers",
+        indexes = @Index(name = "idx_transfers_client_date_id", columnList = "client_id, transfer_date desc, transfer_id desc")
+)
 public class Transfer {
     @Id
     @GeneratedValue(
@@ -33,7 +37,7 @@ public class Transfer {
     private String title;
     private String toAccountNumber;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
 
     @JoinColumn(name = "client_id")
     private Client client;
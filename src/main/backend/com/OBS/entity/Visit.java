@@ -7,6 +7,7 @@ import javax.persistence.*;
 import java.time.LocalDate;
 
 @Entity
+@NamedEntityGraph(name = "Visit.employee", attributeNodes = @NamedAttributeNode("employee"))
 @Table(name = "visits")
 @Getter
 @Setter
@@ -25,7 +26,7 @@ public class Visit {
     private String establishment;
     private Boolean isActive;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "employee_id")
     private Employee employee;
 
@@ -0,0 +1,6 @@
+package com.OBS.enums;
+
+public enum BatchRunStatus {
+    RUNNING,
+    FINISHED
+}
@@ -0,0 +1,9 @@
+package com.OBS.enums;
+
+public enum ExecutionOutcome {
+    REALISED,
+    INSUFFICIENT_BALANCE,
+    SENDER_MISSING,
+    // Rolled back, not a checkpoint, the order is retried by the next pass of the run
+    FAILED
+}
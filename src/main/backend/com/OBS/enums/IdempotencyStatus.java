@@ -0,0 +1,7 @@
+package com.OBS.enums;
+
+public enum IdempotencyStatus {
+    IN_PROGRESS,
+    COMPLETED,
+    FAILED
+}
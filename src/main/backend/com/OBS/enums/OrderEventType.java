@@ -0,0 +1,12 @@
+package com.OBS.enums;
+
+public enum OrderEventType {
+    CREATED,
+    ASSIGNED,
+    RELEASED,
+    // Accepted and waiting for the execution queue, FINISHED follows once the execution is done or failed
+    QUEUED,
+    FINISHED,
+    // Sent when the requested events are no longer buffered, the console has to reload its lists
+    RESET
+}
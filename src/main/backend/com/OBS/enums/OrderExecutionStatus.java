@@ -0,0 +1,8 @@
+package com.OBS.enums;
+
+public enum OrderExecutionStatus {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED
+}
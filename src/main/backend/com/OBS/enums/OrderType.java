@@ -8,16 +8,19 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.springframework.stereotype.Service;
 import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbException;
+import java.util.HashMap;
+import java.util.Map;
 
 @Service
 @Getter
 @AllArgsConstructor
 public enum OrderType {
 
-    changeClient("Edycja danych klienta"){
+    changeClient("Edycja danych klienta", UserCredentials.class){
         @Override
-        public void finishOrder(SystemFacade systemService, Jsonb jsonb, Order order) {
-            systemService.createNewUser(jsonb.fromJson(order.getRequestBody(), UserCredentials.class));
+        public void execute(SystemFacade systemService, Object payload, Order order) {
+            systemService.createNewUser((UserCredentials) payload);
         }
 
         @Override
@@ -26,10 +29,10 @@ public enum OrderType {
         }
     },
 
-    createUser("Utworzenie użytkownika"){
+    createUser("Utworzenie użytkownika", Client.class){
         @Override
-        public void finishOrder(SystemFacade systemService, Jsonb jsonb, Order order) {
-            systemService.updateClient(jsonb.fromJson(order.getRequestBody(), Client.class));
+        public void execute(SystemFacade systemService, Object payload, Order order) {
+            systemService.updateClient((Client) payload);
         }
 
         @Override
@@ -38,10 +41,10 @@ public enum OrderType {
         }
     },
 
-    changeUser("Modyfikacja użytkownika"){
+    changeUser("Modyfikacja użytkownika", UserCredentials.class){
         @Override
-        public void finishOrder(SystemFacade systemService, Jsonb jsonb, Order order) {
-            systemService.updateAppUser(jsonb.fromJson(order.getRequestBody(),UserCredentials.class));
+        public void execute(SystemFacade systemService, Object payload, Order order) {
+            systemService.updateAppUser((UserCredentials) payload);
         }
 
         @Override
@@ -50,10 +53,10 @@ public enum OrderType {
         }
     },
 
-    changeEmployee("Modyfikacja danych pracownika"){
+    changeEmployee("Modyfikacja danych pracownika", Employee.class){
         @Override
-        public void finishOrder(SystemFacade systemService, Jsonb jsonb, Order order) {
-            systemService.updateEmployee(jsonb.fromJson(order.getRequestBody(), Employee.class));
+        public void execute(SystemFacade systemService, Object payload, Order order) {
+            systemService.updateEmployee((Employee) payload);
         }
 
         @Override
@@ -62,10 +65,10 @@ public enum OrderType {
         }
     },
 
-    blockCreditCard("Zablokowanie karty kredytowej"){
+    blockCreditCard("Zablokowanie karty kredytowej", CreditCard.class){
         @Override
-        public void finishOrder(SystemFacade systemService, Jsonb jsonb, Order order) {
-            systemService.blockCreditCard(jsonb.fromJson(order.getRequestBody(), CreditCard.class));
+        public void execute(SystemFacade systemService, Object payload, Order order) {
+            systemService.blockCreditCard((CreditCard) payload);
         }
 
         @Override
@@ -74,10 +77,10 @@ public enum OrderType {
         }
     },
 
-    unblockCreditCard("Odblokowanie karty kredytowej"){
+    unblockCreditCard("Odblokowanie karty kredytowej", CreditCard.class){
         @Override
-        public void finishOrder(SystemFacade systemService, Jsonb jsonb, Order order) {
-            systemService.discardCreditCard(jsonb.fromJson(order.getRequestBody(),CreditCard.class));
+        public void execute(SystemFacade systemService, Object payload, Order order) {
+            systemService.discardCreditCard((CreditCard) payload);
         }
 
         @Override
@@ -86,10 +89,10 @@ public enum OrderType {
         }
     },
 
-    createCreditCard("Wyrób nowej karty kredytowej"){
+    createCreditCard("Wyrób nowej karty kredytowej", CreateCreditCardModel.class){
         @Override
-        public void finishOrder(SystemFacade systemService, Jsonb jsonb, Order order) {
-            CreateCreditCardModel creditCardModel = jsonb.fromJson(order.getRequestBody(), CreateCreditCardModel.class);
+        public void execute(SystemFacade systemService, Object payload, Order order) {
+            CreateCreditCardModel creditCardModel = (CreateCreditCardModel) payload;
             creditCardModel.setClient(order.getClient());
             systemService.createCreditCard(creditCardModel);
         }
@@ -100,10 +103,10 @@ public enum OrderType {
         }
     },
 
-    destroyCreditCard("Wycofanie karty kredytowej"){
+    destroyCreditCard("Wycofanie karty kredytowej", CreditCard.class){
         @Override
-        public void finishOrder(SystemFacade systemService, Jsonb jsonb, Order order) {
-            systemService.unblockCreditCard(jsonb.fromJson(order.getRequestBody(),CreditCard.class));
+        public void execute(SystemFacade systemService, Object payload, Order order) {
+            systemService.unblockCreditCard((CreditCard) payload);
         }
 
         @Override
@@ -112,10 +115,10 @@ public enum OrderType {
         }
     },
 
-    loanRequest("Podanie o kredyt"){
+    loanRequest("Podanie o kredyt", Loan.class){
         @Override
-        public void finishOrder(SystemFacade systemService, Jsonb jsonb, Order order) {
-            systemService.createLoan(jsonb.fromJson(order.getRequestBody(), Loan.class),order.getClient());
+        public void execute(SystemFacade systemService, Object payload, Order order) {
+            systemService.createLoan((Loan) payload,order.getClient());
         }
 
         @Override
@@ -125,6 +128,39 @@ public enum OrderType {
     };
 
     private final String type;
+    private final Class<?> payloadType;
 
-    abstract public void finishOrder(SystemFacade systemService, Jsonb jsonb, Order order);
+    private static final Map<String, OrderType> byType = new HashMap<>();
+
+    static {
+        for (OrderType orderType : values())
+            byType.put(orderType.getType(), orderType);
+    }
+
+    public static OrderType fromType(String type) {
+        return byType.get(type);
+    }
+
+    public static OrderType of(Order order) {
+        OrderType orderType = order.getTypeCode() != null ? order.getTypeCode() : fromType(order.getOrderType());
+        if (orderType == null)
+            throw new IllegalStateException("Unknown order type: " + order.getOrderType());
+        return orderType;
+    }
+
+    public Object parse(Jsonb jsonb, String requestBody) {
+        if (requestBody == null || requestBody.isEmpty())
+            throw new IllegalStateException("Request body is required for order type: " + type);
+        try {
+            return jsonb.fromJson(requestBody, payloadType);
+        } catch (JsonbException e) {
+            throw new IllegalStateException("Invalid request body for order type: " + type);
+        }
+    }
+
+    public void finishOrder(SystemFacade systemService, Jsonb jsonb, Order order) {
+        execute(systemService, parse(jsonb, order.getRequestBody()), order);
+    }
+
+    abstract public void execute(SystemFacade systemService, Object payload, Order order);
 }
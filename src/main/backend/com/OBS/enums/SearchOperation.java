@@ -1,204 +1,206 @@
 package com.OBS.enums;
 
-import com.OBS.auth.entity.AppUser;
 import com.OBS.searchers.SearchCriteria;
 
 import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.Join;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import java.time.LocalDateTime;
+import java.util.Collection;
 
+// Every operation builds its predicate from an already resolved path and a value of the attribute's type,
+// getPredicate keeps the untyped SearchCriteria entry point for specifications that aren't compiled
+@SuppressWarnings({"unchecked", "rawtypes"})
 public enum SearchOperation {
 
-    GREATER_THAN {
+    GREATER_THAN(ValueKind.COMPARABLE) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.greaterThan(
-                    root.get(criteria.getKey()),
-                    criteria.getValue().toString()
-            );
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.greaterThan(path, (Comparable) value);
         }
     },
 
-    LESS_THAN {
+    LESS_THAN(ValueKind.COMPARABLE) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.lessThan(
-                    root.get(criteria.getKey()),
-                    criteria.getValue().toString()
-            );
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.lessThan(path, (Comparable) value);
         }
     },
 
-    GREATER_THAN_EQUAL {
+    GREATER_THAN_EQUAL(ValueKind.COMPARABLE) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.greaterThanOrEqualTo(
-                    root.get(criteria.getKey()),
-                    criteria.getValue().toString()
-            );
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.greaterThanOrEqualTo(path, (Comparable) value);
         }
     },
 
-    LESS_THAN_EQUAL {
+    LESS_THAN_EQUAL(ValueKind.COMPARABLE) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.lessThanOrEqualTo(
-                    root.get(criteria.getKey()),
-                    criteria.getValue().toString()
-            );
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.lessThanOrEqualTo(path, (Comparable) value);
         }
     },
 
-    NOT_EQUAL {
+    NOT_EQUAL(ValueKind.SINGLE) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.notEqual(root.get(
-                    criteria.getKey()), criteria.getValue()
-            );
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.notEqual(path, value);
         }
     },
 
-    EQUAL {
+    EQUAL(ValueKind.SINGLE) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.equal(root.get(
-                    criteria.getKey()), criteria.getValue()
-            );
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.equal(path, value);
         }
     },
 
-    EQUAL_JOIN_USER {
+    EQUAL_JOIN_USER(ValueKind.SINGLE) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            Join<T, AppUser> userJoin = root.join("user");
-            return builder.equal(
-                    userJoin.get(
-                            criteria.getKey()
-                    ),
-                    criteria.getValue()
-            );
+        public String[] keyPath(String key) {
+            return new String[]{"user", key};
+        }
+
+        @Override
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.equal(path, value);
         }
     },
 
-    MATCH {
+    MATCH(ValueKind.TEXT) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.like(
-                    builder.lower(root.get(criteria.getKey()))
-                    , "%" + criteria.getValue().toString().toLowerCase() + "%"
-            );
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.like(builder.lower(path), "%" + value.toString().toLowerCase() + "%");
         }
     },
 
-    MATCH_START {
+    MATCH_START(ValueKind.TEXT) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.like(
-                    builder.lower(root.get(criteria.getKey())),
-                    "%" + criteria.getValue().toString().toLowerCase()
-            );
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.like(builder.lower(path), "%" + value.toString().toLowerCase());
         }
     },
 
-    MATCH_END {
+    MATCH_END(ValueKind.TEXT) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.like(
-                    builder.lower(root.get(criteria.getKey())),
-                    criteria.getValue().toString().toLowerCase() + "%"
-            );
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.like(builder.lower(path), value.toString().toLowerCase() + "%");
         }
     },
 
-    IN {
+    IN(ValueKind.COLLECTION) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.in(
-                    root.get(criteria.getKey())
-            ).value(criteria.getValue());
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            Collection<?> values = (Collection<?>) value;
+            // An empty list matches nothing, most databases reject "in ()"
+            return values.isEmpty() ? builder.disjunction() : path.in(values);
         }
     },
 
-    NOT_IN {
+    NOT_IN(ValueKind.COLLECTION) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.not(
-                    root.get(criteria.getKey())
-            ).in(criteria.getValue());
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            Collection<?> values = (Collection<?>) value;
+            return values.isEmpty() ? builder.conjunction() : builder.not(path.in(values));
         }
     },
 
-    EQUAL_NULL {
+    EQUAL_NULL(ValueKind.NONE) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.isNull(root.get(criteria.getKey()));
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.isNull(path);
         }
     },
 
-    NOT_EQUAL_NULL {
+    NOT_EQUAL_NULL(ValueKind.NONE) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.isNotNull(root.get(criteria.getKey()));
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.isNotNull(path);
         }
     },
 
-    GREATER_THAN_EQUAL_DATE {
+    GREATER_THAN_EQUAL_DATE(ValueKind.TEMPORAL) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.greaterThanOrEqualTo(
-                    root.get(criteria.getKey()),
-                    LocalDateTime.parse(criteria.getValue().toString())
-            );
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.greaterThanOrEqualTo(path, (Comparable) value);
         }
     },
 
-    GREATER_THAN_DATE {
+    GREATER_THAN_DATE(ValueKind.TEMPORAL) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.greaterThan(
-                    root.get(criteria.getKey()),
-                    LocalDateTime.parse(criteria.getValue().toString()));
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.greaterThan(path, (Comparable) value);
         }
     },
 
-    LESS_THAN_EQUAL_DATE {
+    LESS_THAN_EQUAL_DATE(ValueKind.TEMPORAL) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.lessThanOrEqualTo(
-                    root.get(criteria.getKey()),
-                    LocalDateTime.parse(criteria.getValue().toString())
-            );
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.lessThanOrEqualTo(path, (Comparable) value);
         }
     },
 
-    LESS_THAN_DATE {
+    LESS_THAN_DATE(ValueKind.TEMPORAL) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.lessThan(
-                    root.get(criteria.getKey()),
-                    LocalDateTime.parse(criteria.getValue().toString()));
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.lessThan(path, (Comparable) value);
         }
     },
 
-    EQUAL_DATE {
+    EQUAL_DATE(ValueKind.TEMPORAL) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.equal(root.get(
-                    criteria.getKey()), LocalDateTime.parse(criteria.getValue().toString())
-            );
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.equal(path, value);
         }
     },
 
-    NOT_EQUAL_DATE {
+    NOT_EQUAL_DATE(ValueKind.TEMPORAL) {
         @Override
-        public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
-            return builder.notEqual(root.get(
-                    criteria.getKey()), LocalDateTime.parse(criteria.getValue().toString())
-            );
+        public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder) {
+            return builder.notEqual(path, value);
         }
     };
 
-    abstract public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder);
+    // What kind of value the operation takes, checked once when a specification is compiled
+    public enum ValueKind {
+        NONE,
+        SINGLE,
+        COMPARABLE,
+        TEMPORAL,
+        TEXT,
+        COLLECTION
+    }
+
+    private final ValueKind valueKind;
+
+    SearchOperation(ValueKind valueKind) {
+        this.valueKind = valueKind;
+    }
+
+    public ValueKind getValueKind() {
+        return valueKind;
+    }
+
+    // Attributes walked from the root, every segment but the last one is joined
+    public String[] keyPath(String key) {
+        return new String[]{key};
+    }
+
+    abstract public Predicate toPredicate(Path path, Object value, CriteriaBuilder builder);
+
+    public <T> Predicate getPredicate(Root<T> root, SearchCriteria criteria, CriteriaBuilder builder) {
+        String[] keyPath = keyPath(criteria.getKey());
+        From<?, ?> from = root;
+        for (int i = 0; i < keyPath.length - 1; i++)
+            from = from.join(keyPath[i]);
+        Object value = criteria.getValue();
+        // Typed date values are used as they are, only text is parsed
+        if (valueKind == ValueKind.TEMPORAL && value != null && (value instanceof String || !(value instanceof Comparable)))
+            value = LocalDateTime.parse(value.toString());
+        if (valueKind == ValueKind.COLLECTION && !(value instanceof Collection))
+            throw new IllegalStateException("Operation " + name() + " requires a collection of values");
+        return toPredicate(from.get(keyPath[keyPath.length - 1]), value, builder);
+    }
 }
@@ -4,6 +4,7 @@ import com.OBS.searchers.SearchCriteria;
 import java.util.ArrayList;
 import java.util.List;
 
+// Mutable, kept for existing callers, new queries are built with ImmutableSpecification
 public class BuilderSpecification<T> extends ImplementedSpecification<T> implements Cloneable {
     public BuilderSpecification(){super();}
     protected BuilderSpecification(ArrayList<SearchCriteria> list) {
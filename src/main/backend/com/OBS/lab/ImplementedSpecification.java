@@ -2,6 +2,8 @@ package com.OBS.lab;
 
 
 import com.OBS.searchers.SearchCriteria;
+import com.OBS.searchers.specificators.CompiledSpecification;
+import com.OBS.searchers.specificators.CriteriaCompiler;
 import org.springframework.data.jpa.domain.Specification;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
@@ -28,6 +30,10 @@ public abstract class ImplementedSpecification<T> implements Specification<T> {
         this.searchCriteriaList.add(criteria);
     }
 
+    public CompiledSpecification<T> compile(CriteriaCompiler compiler, Class<T> entityType) {
+        return compiler.compile(entityType, searchCriteriaList);
+    }
+
     @Override
     public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
         List<Predicate> predicates = new ArrayList<>();
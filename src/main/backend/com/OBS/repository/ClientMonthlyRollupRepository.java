@@ -0,0 +1,53 @@
+package com.OBS.repository;
+
+import com.OBS.alternativeBodies.TransferCategorySum;
+import com.OBS.entity.ClientMonthlyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ClientMonthlyRollupRepository extends JpaRepository<ClientMonthlyRollup, Long> {
+
+    @Modifying
+    @Query(value = "insert into client_monthly_rollup (client_id, year_month, type, category, total, transfers_count) " +
+            "values (:clientId, :yearMonth, :type, :category, :amount, :countDelta) " +
+            "on conflict (client_id, year_month, type, category) do update set " +
+            "total = client_monthly_rollup.total + excluded.total, " +
+            "transfers_count = client_monthly_rollup.transfers_count + excluded.transfers_count",
+            nativeQuery = true)
+    int upsert(@Param("clientId") Long clientId,
+               @Param("yearMonth") String yearMonth,
+               @Param("type") String type,
+               @Param("category") String category,
+               @Param("amount") Double amount,
+               @Param("countDelta") Long countDelta);
+
+    @Query("select new com.OBS.alternativeBodies.TransferCategorySum(r.type, r.category, sum(r.total)) " +
+            "from ClientMonthlyRollup r where r.clientId = :clientId and r.yearMonth >= :fromMonth " +
+            "group by r.type, r.category")
+    List<TransferCategorySum> sumByTypeAndCategory(@Param("clientId") Long clientId,
+                                                   @Param("fromMonth") String fromMonth);
+
+    @Modifying
+    @Query("delete from ClientMonthlyRollup r where r.clientId = :clientId")
+    int deleteAllByClientId(@Param("clientId") Long clientId);
+
+    @Query("select distinct t.client.clientId from Transfer t where t.client is not null " +
+            "and not exists (select b from ClientRollupBackfill b where b.clientId = t.client.clientId) order by t.client.clientId")
+    List<Long> findClientIdsWithoutBackfill();
+
+    // Runs right after deleteAllByClientId under the client's account lock, no live upsert can add rows in between
+    @Modifying
+    @Query(value = "insert into client_monthly_rollup (client_id, year_month, type, category, total, transfers_count) " +
+            "select t.client_id, to_char(t.transfer_date, 'YYYY-MM'), coalesce(t.type, ''), coalesce(t.category, ''), " +
+            "sum(t.amount), count(*) from transfers t " +
+            "where t.client_id = :clientId and t.transfer_date is not null and t.amount is not null " +
+            "group by t.client_id, to_char(t.transfer_date, 'YYYY-MM'), coalesce(t.type, ''), coalesce(t.category, '')",
+            nativeQuery = true)
+    int rebuildForClient(@Param("clientId") Long clientId);
+}
@@ -5,6 +5,7 @@ import com.OBS.entity.Client;
 import com.OBS.entity.Transfer;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -12,23 +13,50 @@ import org.springframework.stereotype.Repository;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ClientRepository extends JpaRepository<Client, Long>, JpaSpecificationExecutor<Client> {
+public interface ClientRepository extends JpaRepository<Client, Long>, JpaSpecificationExecutor<Client>, ClientRepositoryCustom {
 
     boolean existsByPersonalNumber(String personalNumber);
 
     boolean existsByIdentificationNumber(String IdentificationNumber);
 
-    boolean existsByAccountNumber(String accountNumber);
+    boolean existsByAccountNumberDigits(String accountNumberDigits);
 
     boolean existsByEmail(String email);
 
-    Client findByAccountNumber(String accountNumber);
+    @Query("select c.clientId from Client c where c.accountNumberDigits = :accountNumberDigits")
+    Optional<Long> findClientIdByAccountNumberDigits(@Param("accountNumberDigits") String accountNumberDigits);
+
+    // Accounts stored in two spellings by different clients are skipped, they would break the unique constraint
+    @Modifying
+    @Query(value = "update client c set account_number_digits = regexp_replace(c.account_number, '\\D', '', 'g') " +
+            "where c.account_number_digits is null and c.account_number is not null and not exists (" +
+            "select 1 from client o where o.client_id <> c.client_id and o.account_number is not null " +
+            "and regexp_replace(o.account_number, '\\D', '', 'g') = regexp_replace(c.account_number, '\\D', '', 'g'))",
+            nativeQuery = true)
+    int backfillAccountNumberDigits();
+
+    @Query(value = "select regexp_replace(account_number, '\\D', '', 'g') from client where account_number is not null " +
+            "group by regexp_replace(account_number, '\\D', '', 'g') having count(*) > 1", nativeQuery = true)
+    List<String> findDuplicatedAccountNumberDigits();
+
+    @Query("select c.clientId from Client c " +
+            "where function('regexp_replace', c.accountNumber, '\\D', '', 'g') = :accountNumberDigits order by c.clientId")
+    List<Long> findClientIdsByNormalizedAccountNumber(@Param("accountNumberDigits") String accountNumberDigits);
 
     Client getByUser(AppUser user);
 
     List<Client> findAllByDateOfCreationBetweenOrderByDateOfCreationDesc(LocalDateTime dateOfCreation, LocalDateTime dateOfCreation2);
 
     Client getByEmail(String email);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update Client c set c.balance = c.balance - :amount where c.clientId = :clientId and c.balance >= :amount")
+    int debitBalance(@Param("clientId") Long clientId, @Param("amount") Float amount);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update Client c set c.balance = c.balance + :amount where c.clientId = :clientId")
+    int creditBalance(@Param("clientId") Long clientId, @Param("amount") Float amount);
 }
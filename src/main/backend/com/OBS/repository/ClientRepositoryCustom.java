@@ -0,0 +1,5 @@
+package com.OBS.repository;
+
+public interface ClientRepositoryCustom {
+    void refreshIfLoaded(Long clientId);
+}
@@ -0,0 +1,21 @@
+package com.OBS.repository;
+
+import com.OBS.entity.Client;
+import org.hibernate.Hibernate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+public class ClientRepositoryImpl implements ClientRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Bulk updates bypass the persistence context, a client loaded before one would keep its old balance
+    // and write it back on the next flush. A client not loaded yet only gets an empty proxy, no query is sent
+    @Override
+    public void refreshIfLoaded(Long clientId) {
+        Client client = entityManager.getReference(Client.class, clientId);
+        if (Hibernate.isInitialized(client))
+            entityManager.refresh(client);
+    }
+}
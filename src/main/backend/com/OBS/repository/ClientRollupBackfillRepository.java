@@ -0,0 +1,9 @@
+package com.OBS.repository;
+
+import com.OBS.entity.ClientRollupBackfill;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ClientRollupBackfillRepository extends JpaRepository<ClientRollupBackfill, Long> {
+}
@@ -0,0 +1,25 @@
+package com.OBS.repository;
+
+import com.OBS.entity.CyclicalTransferExecution;
+import com.OBS.enums.ExecutionOutcome;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface CyclicalTransferExecutionRepository extends JpaRepository<CyclicalTransferExecution, Long> {
+    int countByRunDateAndOutcome(LocalDate runDate, ExecutionOutcome outcome);
+
+    Optional<CyclicalTransferExecution> findByRunDateAndCyclicalTransferId(LocalDate runDate, Long cyclicalTransferId);
+
+    // Failures of orders deleted or moved past the run since then are no longer due in it
+    @Query("select count(e) from CyclicalTransferExecution e, CyclicalTransfer c " +
+            "where e.cyclicalTransferId = c.transferId and e.runDate = :runDate " +
+            "and e.outcome = com.OBS.enums.ExecutionOutcome.FAILED and c.reTransferDate <= :dueBy")
+    int countFailedStillDue(@Param("runDate") LocalDate runDate, @Param("dueBy") LocalDateTime dueBy);
+}
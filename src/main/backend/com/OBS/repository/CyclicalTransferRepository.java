@@ -1,17 +1,86 @@
 package com.OBS.repository;
 
+import com.OBS.alternativeBodies.KeyValueObject;
+import com.OBS.alternativeBodies.TransferCategorySum;
 import com.OBS.entity.CyclicalTransfer;
-import com.OBS.entity.Transfer;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CyclicalTransferRepository extends JpaRepository<CyclicalTransfer,Long>, JpaSpecificationExecutor<CyclicalTransfer> {
+    @Override
+    @EntityGraph("CyclicalTransfer.client")
+    List<CyclicalTransfer> findAll();
+
+    @Override
+    @EntityGraph("CyclicalTransfer.client")
+    List<CyclicalTransfer> findAll(Specification<CyclicalTransfer> specification);
+
+    @Override
+    @EntityGraph("CyclicalTransfer.client")
+    Optional<CyclicalTransfer> findById(Long transferId);
+
+    @EntityGraph("CyclicalTransfer.client")
     List<CyclicalTransfer> findAllByClient_clientId(Long clientId);
 
+    @EntityGraph("CyclicalTransfer.client")
     List<CyclicalTransfer> findComingByClient_clientIdOrderByReTransferDateAsc(Long clientId, Pageable pageable);
-}
\ No newline at end of file
+
+    List<CyclicalTransfer> findAllByAccountNumberDigits(String accountNumberDigits);
+
+    @Modifying
+    @Query(value = "update cyclical_transfers set account_number_digits = regexp_replace(account_number, '\\D', '', 'g') " +
+            "where account_number_digits is null and account_number is not null", nativeQuery = true)
+    int backfillAccountNumberDigits();
+
+    boolean existsByClient_clientIdAndFingerprint(Long clientId, String fingerprint);
+
+    boolean existsByClient_clientIdAndFingerprintAndTransferIdNot(Long clientId, String fingerprint, Long transferId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from CyclicalTransfer c where c.transferId = :transferId")
+    Optional<CyclicalTransfer> findForUpdate(@Param("transferId") Long transferId);
+
+    // Due orders that have no checkpoint in given run yet, failed ones are retried
+    @Query("select c.transferId from CyclicalTransfer c where c.reTransferDate <= :dueBy and not exists (" +
+            "select e from CyclicalTransferExecution e where e.runDate = :runDate and e.cyclicalTransferId = c.transferId " +
+            "and e.outcome <> com.OBS.enums.ExecutionOutcome.FAILED) " +
+            "order by c.transferId")
+    List<Long> findPendingIds(@Param("dueBy") LocalDateTime dueBy, @Param("runDate") LocalDate runDate);
+
+    // Given orders that are due and have no checkpoint in given run yet
+    @Query("select c.transferId from CyclicalTransfer c where c.transferId in :ids and c.reTransferDate <= :dueBy " +
+            "and not exists (select e from CyclicalTransferExecution e " +
+            "where e.runDate = :runDate and e.cyclicalTransferId = c.transferId " +
+            "and e.outcome <> com.OBS.enums.ExecutionOutcome.FAILED) " +
+            "order by c.transferId")
+    List<Long> findPendingIds(@Param("ids") List<Long> ids, @Param("dueBy") LocalDateTime dueBy, @Param("runDate") LocalDate runDate);
+
+    @Query("select new com.OBS.alternativeBodies.KeyValueObject(c.transferId, c.reTransferDate) " +
+            "from CyclicalTransfer c order by c.reTransferDate")
+    List<KeyValueObject<Long, LocalDateTime>> findSchedule();
+
+    @Query("select new com.OBS.alternativeBodies.KeyValueObject(c.transferId, c.reTransferDate) " +
+            "from CyclicalTransfer c where c.transferId in :ids")
+    List<KeyValueObject<Long, LocalDateTime>> findSchedule(@Param("ids") List<Long> ids);
+
+    @Query("select new com.OBS.alternativeBodies.TransferCategorySum(c.category, sum(c.amount)) " +
+            "from CyclicalTransfer c where c.client.clientId = :clientId and c.reTransferDate <= :dateTo " +
+            "group by c.category")
+    List<TransferCategorySum> sumByCategory(@Param("clientId") Long clientId,
+                                            @Param("dateTo") LocalDateTime dateTo);
+}
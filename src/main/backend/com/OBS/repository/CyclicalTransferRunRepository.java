@@ -0,0 +1,17 @@
+package com.OBS.repository;
+
+import com.OBS.entity.CyclicalTransferRun;
+import com.OBS.enums.BatchRunStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CyclicalTransferRunRepository extends JpaRepository<CyclicalTransferRun, Long> {
+    Optional<CyclicalTransferRun> findByRunDate(LocalDate runDate);
+
+    List<CyclicalTransferRun> findAllByStatus(BatchRunStatus status);
+}
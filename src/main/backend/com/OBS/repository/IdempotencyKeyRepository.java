@@ -0,0 +1,35 @@
+package com.OBS.repository;
+
+import com.OBS.entity.IdempotencyKey;
+import com.OBS.enums.IdempotencyStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    @Modifying
+    @Query(value = "insert into idempotency_keys (idempotency_key, status, created_at, expires_at) " +
+            "values (:key, 'IN_PROGRESS', :createdAt, :expiresAt) on conflict (idempotency_key) do nothing",
+            nativeQuery = true)
+    int claim(@Param("key") String key,
+              @Param("createdAt") LocalDateTime createdAt,
+              @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("update IdempotencyKey k set k.status = :status, k.outcome = :outcome where k.idempotencyKey = :key")
+    int finish(@Param("key") String key,
+               @Param("status") IdempotencyStatus status,
+               @Param("outcome") String outcome);
+
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.expiresAt < :now " +
+            "or (k.status = com.OBS.enums.IdempotencyStatus.IN_PROGRESS and k.createdAt < :abandonedBefore)")
+    int deleteExpired(@Param("now") LocalDateTime now,
+                      @Param("abandonedBefore") LocalDateTime abandonedBefore);
+}
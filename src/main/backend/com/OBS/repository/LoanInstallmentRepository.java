@@ -0,0 +1,22 @@
+package com.OBS.repository;
+
+import com.OBS.entity.LoanInstallment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LoanInstallmentRepository extends JpaRepository<LoanInstallment, Long> {
+    Optional<LoanInstallment> findByLoan_loanIdAndInstallmentNumber(Long loanId, Integer installmentNumber);
+
+    List<LoanInstallment> findAllByLoan_loanIdOrderByInstallmentNumberAsc(Long loanId);
+
+    @Modifying
+    @Query("delete from LoanInstallment i where i.loan.loanId = :loanId")
+    void deleteAllByLoanId(@Param("loanId") Long loanId);
+}
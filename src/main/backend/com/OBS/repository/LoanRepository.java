@@ -1,16 +1,54 @@
 package com.OBS.repository;
 
+import com.OBS.alternativeBodies.LoanExposure;
 import com.OBS.entity.Loan;
 import com.OBS.searchers.specificators.Specifications;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface LoanRepository extends JpaRepository<Loan,Long>, JpaSpecificationExecutor<Loan> {
+    @Override
+    @EntityGraph("Loan.client")
+    List<Loan> findAll();
+
+    @Override
+    @EntityGraph("Loan.client")
+    Optional<Loan> findOne(Specification<Loan> specification);
+
+    @Override
+    @EntityGraph("Loan.client")
+    Optional<Loan> findById(Long loanId);
+
+    @EntityGraph("Loan.client")
     Optional<Loan> findByClient_clientIdAndIsActive(Long clientId, boolean isActive);
+
+    @EntityGraph("Loan.client")
     List<Loan> findAllByClient_clientId(Long clientId);
+
+    // SELECT ... FOR UPDATE, a second payment for the same loan waits until the first one commits
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from Loan l where l.client.clientId = :clientId and l.isActive = true")
+    Optional<Loan> findActiveForUpdate(@Param("clientId") Long clientId);
+
+    @Modifying
+    @Query(value = "update loans set rates_paid = (select count(*) from loan_rates r where r.loan_id = loans.loan_id) " +
+            "where rates_paid is null", nativeQuery = true)
+    int backfillRatesPaid();
+
+    @Query("select new com.OBS.alternativeBodies.LoanExposure(l.loanId, l.isActive, l.basicLoanAmount, l.toRepaidOff, " +
+            "l.penaltyAmount, l.nextRatePayDay, l.rateAmount, l.ratesLeftToPay) from Loan l")
+    List<LoanExposure> findAllExposures();
 }
@@ -0,0 +1,43 @@
+package com.OBS.repository;
+
+import com.OBS.entity.OrderExecution;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OrderExecutionRepository extends JpaRepository<OrderExecution, Long> {
+    Optional<OrderExecution> findByOrderId(Long orderId);
+
+    List<OrderExecution> findAllByOrderIdIn(Collection<Long> orderIds);
+
+    // Every worker takes the oldest due execution nobody else is holding
+    @Query(value = "select e.* from order_executions e " +
+            "where e.status = 'QUEUED' and e.next_attempt_at <= :now " +
+            "order by e.next_attempt_at asc limit 1 for update skip locked", nativeQuery = true)
+    Optional<OrderExecution> lockNextDue(@Param("now") LocalDateTime now);
+
+    // Executions whose instance stopped renewing the lease were rolled back together with their side effects.
+    // Rows from before leases existed have none and count as expired
+    @Modifying
+    @Query("update OrderExecution e set e.status = com.OBS.enums.OrderExecutionStatus.QUEUED, e.leaseExpiresAt = null " +
+            "where e.status = com.OBS.enums.OrderExecutionStatus.RUNNING " +
+            "and (e.leaseExpiresAt is null or e.leaseExpiresAt < :now)")
+    int requeueExpired(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update OrderExecution e set e.leaseExpiresAt = :expiresAt " +
+            "where e.executionId in :executionIds and e.status = com.OBS.enums.OrderExecutionStatus.RUNNING")
+    int renewLeases(@Param("executionIds") Collection<Long> executionIds, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("delete from OrderExecution e where e.orderId = :orderId")
+    void deleteByOrderId(@Param("orderId") Long orderId);
+}
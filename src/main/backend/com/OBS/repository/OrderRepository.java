@@ -1,20 +1,72 @@
 package com.OBS.repository;
 
 import com.OBS.entity.Order;
+import com.OBS.enums.OrderType;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
+    // Order lists are cached between requests, so everything they are serialized with is fetched up front
+    @Override
+    @EntityGraph("Order.people")
+    List<Order> findAll(Specification<Order> specification);
+
+    @Override
+    @EntityGraph("Order.people")
+    List<Order> findAll(Specification<Order> specification, Sort sort);
+
+    @Override
+    @EntityGraph("Order.people")
+    Optional<Order> findById(Long orderId);
+
     @Query("select o from Order o where o.isActive = true and o.createDate < :date order by o.createDate asc")
     List<Order> findAllPriorityOrders(@Param("date") LocalDateTime today);
 
     List<Order> findAllByClient_clientId(Long clientId);
+
+    // Rows locked by another claim are skipped instead of waited for, so employees never get the same order
+    @Query(value = "select o.* from orders o " +
+            "where o.is_active = true and (o.employee_id is null or o.claim_expires_at < :now) " +
+            "and o.order_type not in (:excludedTypes) " +
+            "and not exists (select 1 from order_executions e where e.order_id = o.order_id and e.status in ('QUEUED', 'RUNNING')) " +
+            "order by o.create_date asc limit :limit for update skip locked", nativeQuery = true)
+    List<Order> lockClaimable(@Param("now") LocalDateTime now,
+                              @Param("excludedTypes") List<String> excludedTypes,
+                              @Param("limit") int limit);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from Order o where o.order_Id = :orderId")
+    Optional<Order> findForUpdate(@Param("orderId") Long orderId);
+
+    @Modifying
+    @Query("update Order o set o.typeCode = :typeCode where o.typeCode is null and o.orderType = :orderType")
+    int backfillTypeCode(@Param("orderType") String orderType, @Param("typeCode") OrderType typeCode);
+
+    // Accepted orders of given type whose execution hasn't finished yet
+    @Query("select o.requestBody from Order o where o.client.clientId = :clientId and o.typeCode = :typeCode " +
+            "and exists (select e from OrderExecution e where e.orderId = o.order_Id and e.status in " +
+            "(com.OBS.enums.OrderExecutionStatus.QUEUED, com.OBS.enums.OrderExecutionStatus.RUNNING))")
+    List<String> findPendingRequestBodies(@Param("clientId") Long clientId, @Param("typeCode") OrderType typeCode);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    // Locked in id order, concurrent bulk decisions over overlapping orders can't deadlock
+    @Query("select o from Order o where o.order_Id in :orderIds order by o.order_Id")
+    List<Order> findAllForUpdate(@Param("orderIds") Collection<Long> orderIds);
 }
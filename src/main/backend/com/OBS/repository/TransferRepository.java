@@ -1,16 +1,62 @@
 package com.OBS.repository;
 
+import com.OBS.alternativeBodies.TransferCategorySum;
 import com.OBS.entity.Transfer;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface TransferRepository extends JpaRepository<Transfer,Long>, JpaSpecificationExecutor<Transfer> {
+public interface TransferRepository extends JpaRepository<Transfer,Long>, JpaSpecificationExecutor<Transfer>, TransferRepositoryCustom {
+    // Client is lazy, methods whose results are sent with the client fetch it in the same select
+    @Override
+    @EntityGraph("Transfer.client")
+    List<Transfer> findAll();
+
+    @Override
+    @EntityGraph("Transfer.client")
+    List<Transfer> findAll(Specification<Transfer> specification);
+
+    @Override
+    @EntityGraph("Transfer.client")
+    List<Transfer> findAll(Specification<Transfer> specification, Sort sort);
+
+    @Override
+    @EntityGraph("Transfer.client")
+    Optional<Transfer> findById(Long transferId);
+
+    @EntityGraph("Transfer.client")
     List<Transfer> findRecentTransfersByClient_clientIdOrderByTransferDateDesc(Long client_id, Pageable pageable);
+
+    @EntityGraph("Transfer.client")
     List<Transfer> findAllByClient_clientId(Long client_id);
 
-}
\ No newline at end of file
+    @Query("select new com.OBS.alternativeBodies.TransferCategorySum(t.type, t.category, sum(t.amount)) " +
+            "from Transfer t where t.client.clientId = :clientId " +
+            "and t.transferDate > :dateFrom and t.transferDate < :dateTo " +
+            "group by t.type, t.category")
+    List<TransferCategorySum> sumByTypeAndCategoryBetween(@Param("clientId") Long clientId,
+                                                          @Param("dateFrom") LocalDateTime dateFrom,
+                                                          @Param("dateTo") LocalDateTime dateTo);
+
+    @Query("select new com.OBS.alternativeBodies.TransferCategorySum(t.type, t.category, sum(t.amount)) " +
+            "from Transfer t where t.client.clientId = :clientId and t.transferDate > :dateFrom " +
+            "group by t.type, t.category")
+    List<TransferCategorySum> sumByTypeAndCategorySince(@Param("clientId") Long clientId,
+                                                        @Param("dateFrom") LocalDateTime dateFrom);
+
+    @Query("select distinct t.client.clientId from Transfer t where t.client is not null order by t.client.clientId")
+    List<Long> findDistinctClientIds();
+
+}
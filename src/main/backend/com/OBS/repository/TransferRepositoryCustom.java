@@ -0,0 +1,10 @@
+package com.OBS.repository;
+
+import com.OBS.entity.Transfer;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface TransferRepositoryCustom {
+    List<Transfer> findNewestFirst(Specification<Transfer> specification, int limit);
+}
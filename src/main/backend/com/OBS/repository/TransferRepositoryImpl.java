@@ -0,0 +1,39 @@
+package com.OBS.repository;
+
+import com.OBS.entity.Transfer;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.List;
+
+public class TransferRepositoryImpl implements TransferRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Plain LIMIT query ordered like idx_transfers_client_date_id, no OFFSET and no count query
+    @Override
+    public List<Transfer> findNewestFirst(Specification<Transfer> specification, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Transfer> query = builder.createQuery(Transfer.class);
+        Root<Transfer> root = query.from(Transfer.class);
+
+        Predicate predicate = specification == null ? null : specification.toPredicate(root, query, builder);
+        if (predicate != null)
+            query.where(predicate);
+
+        query.select(root).orderBy(
+                builder.desc(root.get("transferDate")),
+                builder.desc(root.get("transferId"))
+        );
+
+        return entityManager.createQuery(query)
+                .setHint("javax.persistence.fetchgraph", entityManager.getEntityGraph("Transfer.client"))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
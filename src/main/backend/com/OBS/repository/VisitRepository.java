@@ -2,14 +2,33 @@ package com.OBS.repository;
 
 import com.OBS.entity.Visit;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface VisitRepository extends JpaRepository<Visit, Long>, JpaSpecificationExecutor<Visit> {
+    @Override
+    @EntityGraph("Visit.employee")
+    List<Visit> findAll();
+
+    @Override
+    @EntityGraph("Visit.employee")
+    List<Visit> findAll(Specification<Visit> specification);
+
+    @Override
+    @EntityGraph("Visit.employee")
+    List<Visit> findAll(Specification<Visit> specification, Sort sort);
+
+    @Override
+    @EntityGraph("Visit.employee")
+    Optional<Visit> findById(Long visitId);
+
     List<Visit> findAllByEmployee_EmployeeId(Long id);
     List<Visit> findAllByEmployeeNull(Sort s);
 }
@@ -0,0 +1,215 @@
+package com.OBS.searchers;
+
+import com.OBS.enums.SearchOperation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static com.OBS.enums.SearchOperation.*;
+
+// Rewrites a list of criteria joined with "and" into an equivalent, shorter one:
+// equalities and inequalities of one key become a single IN / NOT IN, only the tightest range bounds are kept
+// and exact duplicates are dropped. Criteria it doesn't understand are passed on unchanged
+public final class CriteriaOptimizer {
+    private static final Set<SearchOperation> LOWER_BOUNDS = EnumSet.of(GREATER_THAN, GREATER_THAN_EQUAL, GREATER_THAN_DATE, GREATER_THAN_EQUAL_DATE);
+    private static final Set<SearchOperation> UPPER_BOUNDS = EnumSet.of(LESS_THAN, LESS_THAN_EQUAL, LESS_THAN_DATE, LESS_THAN_EQUAL_DATE);
+    private static final Set<SearchOperation> EXCLUSIVE_BOUNDS = EnumSet.of(GREATER_THAN, GREATER_THAN_DATE, LESS_THAN, LESS_THAN_DATE);
+
+    private CriteriaOptimizer() {
+    }
+
+    // Criteria shared by every alternative and what's left of each alternative, empty when they were merged
+    public static class HoistedCriteria {
+        private final List<SearchCriteria> common;
+        private final List<List<SearchCriteria>> alternatives;
+
+        private HoistedCriteria(List<SearchCriteria> common, List<List<SearchCriteria>> alternatives) {
+            this.common = Collections.unmodifiableList(common);
+            this.alternatives = Collections.unmodifiableList(alternatives);
+        }
+
+        public List<SearchCriteria> getCommon() {
+            return common;
+        }
+
+        public List<List<SearchCriteria>> getAlternatives() {
+            return alternatives;
+        }
+    }
+
+    private static class KeyCriteria {
+        private Set<Object> allowed;
+        private final Set<Object> excluded = new LinkedHashSet<>();
+        private SearchCriteria lower;
+        private SearchCriteria upper;
+        private final List<SearchCriteria> others = new ArrayList<>();
+    }
+
+    public static List<SearchCriteria> optimize(List<SearchCriteria> criteria) {
+        Map<String, KeyCriteria> byKey = new LinkedHashMap<>();
+        for (SearchCriteria searchCriteria : criteria) {
+            KeyCriteria key = byKey.computeIfAbsent(searchCriteria.getKey(), k -> new KeyCriteria());
+            if (!add(key, searchCriteria) && !containsSame(key.others, searchCriteria))
+                key.others.add(searchCriteria);
+        }
+
+        List<SearchCriteria> optimized = new ArrayList<>(criteria.size());
+        for (Map.Entry<String, KeyCriteria> entry : byKey.entrySet()) {
+            String key = entry.getKey();
+            KeyCriteria keyCriteria = entry.getValue();
+            if (keyCriteria.allowed != null) {
+                // An IN list already fixes the value, exclusions only remove entries from it
+                keyCriteria.allowed.removeAll(keyCriteria.excluded);
+                if (keyCriteria.allowed.size() == 1)
+                    optimized.add(new SearchCriteria(key, keyCriteria.allowed.iterator().next(), EQUAL));
+                else optimized.add(new SearchCriteria(key, new ArrayList<>(keyCriteria.allowed), IN));
+            } else if (keyCriteria.excluded.size() == 1)
+                optimized.add(new SearchCriteria(key, keyCriteria.excluded.iterator().next(), NOT_EQUAL));
+            else if (keyCriteria.excluded.size() > 1)
+                optimized.add(new SearchCriteria(key, new ArrayList<>(keyCriteria.excluded), NOT_IN));
+            if (keyCriteria.lower != null)
+                optimized.add(keyCriteria.lower);
+            if (keyCriteria.upper != null)
+                optimized.add(keyCriteria.upper);
+            optimized.addAll(keyCriteria.others);
+        }
+        return optimized;
+    }
+
+    // Alternatives are joined with "or", criteria every one of them has are taken out in front,
+    // and alternatives differing only in the value of one key become a single IN
+    public static HoistedCriteria hoist(List<List<SearchCriteria>> alternatives) {
+        List<List<SearchCriteria>> optimized = new ArrayList<>(alternatives.size());
+        for (List<SearchCriteria> alternative : alternatives)
+            optimized.add(optimize(alternative));
+        if (optimized.isEmpty())
+            return new HoistedCriteria(new ArrayList<>(), new ArrayList<>());
+
+        List<SearchCriteria> common = new ArrayList<>();
+        for (SearchCriteria candidate : optimized.get(0)) {
+            boolean shared = true;
+            for (List<SearchCriteria> alternative : optimized)
+                shared &= containsSame(alternative, candidate);
+            if (shared)
+                common.add(candidate);
+        }
+
+        List<List<SearchCriteria>> residuals = new ArrayList<>(optimized.size());
+        for (List<SearchCriteria> alternative : optimized) {
+            List<SearchCriteria> residual = new ArrayList<>();
+            for (SearchCriteria searchCriteria : alternative)
+                if (!containsSame(common, searchCriteria))
+                    residual.add(searchCriteria);
+            // One alternative needs nothing more than the common part, so the whole "or" is always true
+            if (residual.isEmpty())
+                return new HoistedCriteria(common, new ArrayList<>());
+            residuals.add(residual);
+        }
+
+        SearchCriteria merged = mergeEqualities(residuals);
+        if (merged != null) {
+            common.add(merged);
+            return new HoistedCriteria(optimize(common), new ArrayList<>());
+        }
+        return new HoistedCriteria(common, residuals);
+    }
+
+    private static SearchCriteria mergeEqualities(List<List<SearchCriteria>> residuals) {
+        String key = null;
+        Set<Object> values = new LinkedHashSet<>();
+        for (List<SearchCriteria> residual : residuals) {
+            if (residual.size() != 1)
+                return null;
+            SearchCriteria searchCriteria = residual.get(0);
+            if (key != null && !key.equals(searchCriteria.getKey()))
+                return null;
+            key = searchCriteria.getKey();
+            if (searchCriteria.getOperation() == EQUAL && searchCriteria.getValue() != null)
+                values.add(searchCriteria.getValue());
+            else if (searchCriteria.getOperation() == IN && searchCriteria.getValue() instanceof Collection)
+                values.addAll((Collection<?>) searchCriteria.getValue());
+            else return null;
+        }
+        return new SearchCriteria(key, new ArrayList<>(values), IN);
+    }
+
+    private static boolean add(KeyCriteria key, SearchCriteria criteria) {
+        SearchOperation operation = criteria.getOperation();
+        Object value = criteria.getValue();
+        if (value == null)
+            return false;
+
+        if (operation == EQUAL || operation == IN) {
+            Collection<?> values = operation == EQUAL ? Collections.singleton(value) : asCollection(value);
+            if (values == null)
+                return false;
+            if (key.allowed == null)
+                key.allowed = new LinkedHashSet<>(values);
+            else key.allowed.retainAll(values);
+            return true;
+        }
+        if (operation == NOT_EQUAL || operation == NOT_IN) {
+            Collection<?> values = operation == NOT_EQUAL ? Collections.singleton(value) : asCollection(value);
+            if (values == null)
+                return false;
+            key.excluded.addAll(values);
+            return true;
+        }
+        if (LOWER_BOUNDS.contains(operation)) {
+            SearchCriteria tighter = tighter(key.lower, criteria, 1);
+            if (tighter == null)
+                return false;
+            key.lower = tighter;
+            return true;
+        }
+        if (UPPER_BOUNDS.contains(operation)) {
+            SearchCriteria tighter = tighter(key.upper, criteria, -1);
+            if (tighter == null)
+                return false;
+            key.upper = tighter;
+            return true;
+        }
+        return false;
+    }
+
+    // Bigger lower bound or smaller upper bound wins, with equal values the exclusive one does.
+    // Bounds of different types can't be compared, then the new one is kept as it is.
+    // Text is left alone, the database collation doesn't have to agree with String.compareTo
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static SearchCriteria tighter(SearchCriteria current, SearchCriteria candidate, int direction) {
+        if (!(candidate.getValue() instanceof Comparable) || candidate.getValue() instanceof String)
+            return null;
+        if (current == null)
+            return candidate;
+        if (current.getValue().getClass() != candidate.getValue().getClass())
+            return null;
+
+        int compared = ((Comparable) candidate.getValue()).compareTo(current.getValue()) * direction;
+        if (compared > 0)
+            return candidate;
+        if (compared == 0 && EXCLUSIVE_BOUNDS.contains(candidate.getOperation()))
+            return candidate;
+        return current;
+    }
+
+    private static Collection<?> asCollection(Object value) {
+        return value instanceof Collection ? (Collection<?>) value : null;
+    }
+
+    private static boolean containsSame(List<SearchCriteria> criteria, SearchCriteria candidate) {
+        for (SearchCriteria searchCriteria : criteria)
+            if (Objects.equals(searchCriteria.getKey(), candidate.getKey())
+                    && searchCriteria.getOperation() == candidate.getOperation()
+                    && Objects.equals(searchCriteria.getValue(), candidate.getValue()))
+                return true;
+        return false;
+    }
+}
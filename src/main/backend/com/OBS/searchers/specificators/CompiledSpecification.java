@@ -0,0 +1,79 @@
+package com.OBS.searchers.specificators;
+
+import com.OBS.enums.SearchOperation;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Criteria already checked against the metamodel with values converted to the attribute types,
+// building the predicate only walks paths and binds values. Immutable, so it can be shared between threads
+public final class CompiledSpecification<T> implements Specification<T> {
+    private final Class<T> entityType;
+    private final List<Criterion> criteria;
+
+    public static final class Criterion {
+        private final String[] path;
+        private final SearchOperation operation;
+        private final Object value;
+
+        public Criterion(String[] path, SearchOperation operation, Object value) {
+            this.path = path.clone();
+            this.operation = operation;
+            this.value = value;
+        }
+
+        public String getKey() {
+            return String.join(".", path);
+        }
+
+        public SearchOperation getOperation() {
+            return operation;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        Predicate toPredicate(Root<?> root, Map<String, From<?, ?>> joins, CriteriaBuilder builder) {
+            From<?, ?> from = root;
+            String joined = "";
+            for (int i = 0; i < path.length - 1; i++) {
+                joined = joined + path[i] + ".";
+                From<?, ?> parent = from;
+                String attribute = path[i];
+                from = joins.computeIfAbsent(joined, key -> parent.join(attribute));
+            }
+            return operation.toPredicate(from.get(path[path.length - 1]), value, builder);
+        }
+    }
+
+    CompiledSpecification(Class<T> entityType, List<Criterion> criteria) {
+        this.entityType = entityType;
+        this.criteria = criteria;
+    }
+
+    public Class<T> getEntityType() {
+        return entityType;
+    }
+
+    public List<Criterion> getCriteria() {
+        return criteria;
+    }
+
+    @Override
+    public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
+        // Criteria on the same association share one join
+        Map<String, From<?, ?>> joins = new HashMap<>();
+        Predicate[] predicates = new Predicate[criteria.size()];
+        for (int i = 0; i < predicates.length; i++)
+            predicates[i] = criteria.get(i).toPredicate(root, joins, builder);
+        return builder.and(predicates);
+    }
+}
@@ -0,0 +1,166 @@
+package com.OBS.searchers.specificators;
+
+import com.OBS.enums.SearchOperation;
+import com.OBS.searchers.CriteriaOptimizer;
+import com.OBS.searchers.SearchCriteria;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.PluralAttribute;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Turns SearchCriteria into CompiledSpecification, key paths are resolved against the JPA metamodel
+// once per entity and key, values are converted to the attribute type once per compilation
+@Component
+public class CriteriaCompiler {
+    private final Metamodel metamodel;
+    private final Map<String, Class<?>> attributeTypes = new ConcurrentHashMap<>();
+
+    public CriteriaCompiler(EntityManagerFactory entityManagerFactory) {
+        this.metamodel = entityManagerFactory.getMetamodel();
+    }
+
+    public <T> CompiledSpecification<T> compile(Class<T> entityType, List<SearchCriteria> criteriaList) {
+        List<CompiledSpecification.Criterion> criteria = new ArrayList<>(criteriaList.size());
+        for (SearchCriteria searchCriteria : optimize(entityType, criteriaList))
+            criteria.add(compile(entityType, searchCriteria));
+        return new CompiledSpecification<>(entityType, Collections.unmodifiableList(criteria));
+    }
+
+    public <T> CompiledSpecification.Criterion compile(Class<T> entityType, SearchCriteria searchCriteria) {
+        String[] path = searchCriteria.getOperation().keyPath(searchCriteria.getKey());
+        return new CompiledSpecification.Criterion(path, searchCriteria.getOperation(), convertValue(entityType, searchCriteria));
+    }
+
+    // Values are converted before the optimizer compares them, so "5" and 5L count as the same value
+    public <T> List<SearchCriteria> optimize(Class<T> entityType, List<SearchCriteria> criteriaList) {
+        List<SearchCriteria> converted = new ArrayList<>(criteriaList.size());
+        for (SearchCriteria searchCriteria : criteriaList)
+            converted.add(new SearchCriteria(searchCriteria.getKey(), convertValue(entityType, searchCriteria), searchCriteria.getOperation()));
+        return CriteriaOptimizer.optimize(converted);
+    }
+
+    private Object convertValue(Class<?> entityType, SearchCriteria searchCriteria) {
+        SearchOperation operation = searchCriteria.getOperation();
+        if (operation == null || searchCriteria.getKey() == null)
+            throw new IllegalStateException("Search criteria needs a key and an operation");
+
+        String[] path = operation.keyPath(searchCriteria.getKey());
+        Class<?> attributeType = attributeTypes.computeIfAbsent(
+                entityType.getName() + "#" + String.join(".", path),
+                cacheKey -> resolve(entityType, path)
+        );
+        return convertValue(operation, attributeType, searchCriteria);
+    }
+
+    private Class<?> resolve(Class<?> entityType, String[] path) {
+        ManagedType<?> managedType = metamodel.managedType(entityType);
+        Class<?> attributeType = entityType;
+        for (int i = 0; i < path.length; i++) {
+            Attribute<?, ?> attribute;
+            try {
+                attribute = managedType.getAttribute(path[i]);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Entity " + entityType.getSimpleName() + " has no attribute " + String.join(".", path));
+            }
+            attributeType = attribute instanceof PluralAttribute
+                    ? ((PluralAttribute<?, ?, ?>) attribute).getElementType().getJavaType()
+                    : attribute.getJavaType();
+            if (i < path.length - 1) {
+                if (!attribute.isAssociation())
+                    throw new IllegalStateException("Attribute " + path[i] + " of " + entityType.getSimpleName() + " can't be joined");
+                managedType = metamodel.managedType(attributeType);
+            }
+        }
+        return box(attributeType);
+    }
+
+    private static Object convertValue(SearchOperation operation, Class<?> attributeType, SearchCriteria criteria) {
+        Object value = criteria.getValue();
+        switch (operation.getValueKind()) {
+            case NONE:
+                return null;
+            case COLLECTION:
+                if (!(value instanceof Collection))
+                    throw new IllegalStateException("Operation " + operation.name() + " on " + criteria.getKey() + " requires a collection");
+                List<Object> values = new ArrayList<>();
+                for (Object element : (Collection<?>) value)
+                    values.add(convert(element, attributeType, criteria.getKey()));
+                return Collections.unmodifiableList(values);
+            case TEXT:
+                if (attributeType != String.class)
+                    throw new IllegalStateException("Operation " + operation.name() + " needs a text attribute, " + criteria.getKey() + " isn't one");
+                return convert(value, attributeType, criteria.getKey());
+            case COMPARABLE:
+            case TEMPORAL:
+                if (!Comparable.class.isAssignableFrom(attributeType))
+                    throw new IllegalStateException("Attribute " + criteria.getKey() + " can't be compared with " + operation.name());
+                return convert(value, attributeType, criteria.getKey());
+            default:
+                return convert(value, attributeType, criteria.getKey());
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object convert(Object value, Class<?> type, String key) {
+        if (value == null)
+            throw new IllegalStateException("Value of " + key + " is required, use EQUAL_NULL or NOT_EQUAL_NULL to match empty values");
+        if (type.isInstance(value))
+            return value;
+        try {
+            if (type == LocalDate.class && value instanceof LocalDateTime)
+                return ((LocalDateTime) value).toLocalDate();
+            if (type == LocalDateTime.class && value instanceof LocalDate)
+                return ((LocalDate) value).atStartOfDay();
+            if (value instanceof Number) {
+                Number number = (Number) value;
+                if (type == Long.class) return number.longValue();
+                if (type == Integer.class) return number.intValue();
+                if (type == Float.class) return number.floatValue();
+                if (type == Double.class) return number.doubleValue();
+                if (type == BigDecimal.class) return new BigDecimal(number.toString());
+            }
+            if (value instanceof String) {
+                String text = (String) value;
+                if (type == LocalDateTime.class) return LocalDateTime.parse(text);
+                if (type == LocalDate.class) return LocalDate.parse(text);
+                if (type == Long.class) return Long.valueOf(text);
+                if (type == Integer.class) return Integer.valueOf(text);
+                if (type == Float.class) return Float.valueOf(text);
+                if (type == Double.class) return Double.valueOf(text);
+                if (type == BigDecimal.class) return new BigDecimal(text);
+                if (type == Boolean.class) return Boolean.valueOf(text);
+                if (type.isEnum()) return Enum.valueOf((Class<Enum>) type, text);
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalStateException("Value " + value + " of " + key + " isn't a valid " + type.getSimpleName());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Value " + value + " of " + key + " isn't one of " + type.getSimpleName());
+        }
+        throw new IllegalStateException("Value of " + key + " has to be " + type.getSimpleName() + ", got " + value.getClass().getSimpleName());
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (!type.isPrimitive()) return type;
+        if (type == long.class) return Long.class;
+        if (type == int.class) return Integer.class;
+        if (type == float.class) return Float.class;
+        if (type == double.class) return Double.class;
+        if (type == boolean.class) return Boolean.class;
+        if (type == short.class) return Short.class;
+        if (type == byte.class) return Byte.class;
+        return Character.class;
+    }
+}
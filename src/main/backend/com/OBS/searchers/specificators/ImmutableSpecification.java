@@ -0,0 +1,217 @@
+package com.OBS.searchers.specificators;
+
+import com.OBS.enums.SearchOperation;
+import com.OBS.searchers.CriteriaOptimizer;
+import com.OBS.searchers.SearchCriteria;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Persistent specification, every and/or returns a new instance pointing at the one it was built from,
+// so specifications sharing a prefix share its compiled criteria. Safe to keep in fields and share between threads
+public final class ImmutableSpecification<T> implements Specification<T> {
+    private final CriteriaCompiler compiler;
+    private final Class<T> entityType;
+    private final ImmutableSpecification<T> previous;
+    private final Clause clause;
+    private volatile Optional<String> cacheKey;
+
+    private interface Clause {
+        Predicate toPredicate(Root<?> root, Map<String, From<?, ?>> joins, CriteriaBuilder builder);
+
+        // Null when a value has no stable text form, such specifications aren't cached
+        String key();
+    }
+
+    private static final class CriterionClause implements Clause {
+        private final CompiledSpecification.Criterion criterion;
+
+        private CriterionClause(CompiledSpecification.Criterion criterion) {
+            this.criterion = criterion;
+        }
+
+        @Override
+        public Predicate toPredicate(Root<?> root, Map<String, From<?, ?>> joins, CriteriaBuilder builder) {
+            return criterion.toPredicate(root, joins, builder);
+        }
+
+        @Override
+        public String key() {
+            if (criterion.getOperation().getValueKind() == SearchOperation.ValueKind.NONE)
+                return criterion.getKey() + " " + criterion.getOperation().name();
+            String value = valueKey(criterion.getValue());
+            return value == null ? null : criterion.getKey() + " " + criterion.getOperation().name() + " " + value;
+        }
+    }
+
+    private static final class GroupClause<T> implements Clause {
+        private final boolean or;
+        private final List<ImmutableSpecification<T>> members;
+
+        private GroupClause(boolean or, List<ImmutableSpecification<T>> members) {
+            this.or = or;
+            this.members = members;
+        }
+
+        @Override
+        public Predicate toPredicate(Root<?> root, Map<String, From<?, ?>> joins, CriteriaBuilder builder) {
+            Predicate[] predicates = new Predicate[members.size()];
+            for (int i = 0; i < predicates.length; i++)
+                predicates[i] = members.get(i).toPredicate(root, joins, builder);
+            return or ? builder.or(predicates) : builder.and(predicates);
+        }
+
+        @Override
+        public String key() {
+            List<String> keys = new ArrayList<>(members.size());
+            for (ImmutableSpecification<T> member : members) {
+                Optional<String> key = member.cacheKey();
+                if (!key.isPresent())
+                    return null;
+                keys.add("(" + key.get() + ")");
+            }
+            Collections.sort(keys);
+            return String.join(or ? " or " : " and ", keys);
+        }
+    }
+
+    private ImmutableSpecification(CriteriaCompiler compiler, Class<T> entityType, ImmutableSpecification<T> previous, Clause clause) {
+        this.compiler = compiler;
+        this.entityType = entityType;
+        this.previous = previous;
+        this.clause = clause;
+    }
+
+    public static <T> ImmutableSpecification<T> of(CriteriaCompiler compiler, Class<T> entityType) {
+        return new ImmutableSpecification<>(compiler, entityType, null, null);
+    }
+
+    // Empty specification of the same entity, used to start alternatives of an or group
+    public ImmutableSpecification<T> empty() {
+        return of(compiler, entityType);
+    }
+
+    public boolean isEmpty() {
+        return clause == null;
+    }
+
+    public Class<T> getEntityType() {
+        return entityType;
+    }
+
+    public ImmutableSpecification<T> and(SearchCriteria criteria) {
+        return new ImmutableSpecification<>(compiler, entityType, this, new CriterionClause(compiler.compile(entityType, criteria)));
+    }
+
+    public ImmutableSpecification<T> and(String key, Object value, SearchOperation operation) {
+        return and(new SearchCriteria(key, value, operation));
+    }
+
+    // Criteria are optimized together first, so same key equalities end up as one IN / NOT IN
+    public ImmutableSpecification<T> and(List<SearchCriteria> criteria) {
+        ImmutableSpecification<T> specification = this;
+        for (SearchCriteria searchCriteria : compiler.optimize(entityType, criteria))
+            specification = specification.and(searchCriteria);
+        return specification;
+    }
+
+    // Alternatives joined with or, their shared criteria are hoisted in front of the group
+    // and alternatives differing in one value only are merged into a single IN
+    @SuppressWarnings("unchecked")
+    public ImmutableSpecification<T> andAny(List<List<SearchCriteria>> alternatives) {
+        List<List<SearchCriteria>> converted = new ArrayList<>(alternatives.size());
+        for (List<SearchCriteria> alternative : alternatives)
+            converted.add(compiler.optimize(entityType, alternative));
+        CriteriaOptimizer.HoistedCriteria hoisted = CriteriaOptimizer.hoist(converted);
+
+        ImmutableSpecification<T> specification = and(hoisted.getCommon());
+        List<ImmutableSpecification<T>> members = new ArrayList<>(hoisted.getAlternatives().size());
+        for (List<SearchCriteria> alternative : hoisted.getAlternatives())
+            members.add(empty().and(alternative));
+        return members.isEmpty() ? specification : specification.or(members.toArray(new ImmutableSpecification[0]));
+    }
+
+    public ImmutableSpecification<T> and(ImmutableSpecification<T> other) {
+        if (other.isEmpty())
+            return this;
+        return new ImmutableSpecification<>(compiler, entityType, this, new GroupClause<>(false, Collections.singletonList(other)));
+    }
+
+    @SafeVarargs
+    public final ImmutableSpecification<T> or(ImmutableSpecification<T>... alternatives) {
+        List<ImmutableSpecification<T>> members = new ArrayList<>(alternatives.length);
+        for (ImmutableSpecification<T> alternative : alternatives)
+            if (!alternative.isEmpty())
+                members.add(alternative);
+        if (members.isEmpty())
+            return this;
+        return new ImmutableSpecification<>(compiler, entityType, this, new GroupClause<>(true, Collections.unmodifiableList(members)));
+    }
+
+    // Same criteria give the same key whatever order they were added in
+    public Optional<String> cacheKey() {
+        Optional<String> key = cacheKey;
+        if (key == null) {
+            List<String> keys = new ArrayList<>();
+            for (ImmutableSpecification<T> node = this; node != null && node.clause != null; node = node.previous) {
+                String clauseKey = node.clause.key();
+                if (clauseKey == null) {
+                    keys = null;
+                    break;
+                }
+                keys.add(clauseKey);
+            }
+            if (keys == null)
+                key = Optional.empty();
+            else {
+                Collections.sort(keys);
+                key = Optional.of(entityType.getSimpleName() + ": " + String.join(" and ", keys));
+            }
+            cacheKey = key;
+        }
+        return key;
+    }
+
+    @Override
+    public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
+        return toPredicate(root, new HashMap<>(), builder);
+    }
+
+    private Predicate toPredicate(Root<?> root, Map<String, From<?, ?>> joins, CriteriaBuilder builder) {
+        List<Predicate> predicates = new ArrayList<>();
+        for (ImmutableSpecification<T> node = this; node != null && node.clause != null; node = node.previous)
+            predicates.add(node.clause.toPredicate(root, joins, builder));
+        Collections.reverse(predicates);
+        return builder.and(predicates.toArray(new Predicate[0]));
+    }
+
+    private static String valueKey(Object value) {
+        if (value instanceof String)
+            return "'" + ((String) value).replace("'", "''") + "'";
+        if (value instanceof Number || value instanceof Boolean || value instanceof Enum || value instanceof Temporal)
+            return value.toString();
+        if (value instanceof Collection) {
+            String[] keys = new String[((Collection<?>) value).size()];
+            int i = 0;
+            for (Object element : (Collection<?>) value)
+                if ((keys[i++] = valueKey(element)) == null)
+                    return null;
+            Arrays.sort(keys);
+            return Arrays.toString(keys);
+        }
+        return null;
+    }
+}
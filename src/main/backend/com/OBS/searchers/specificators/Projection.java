@@ -0,0 +1,56 @@
+package com.OBS.searchers.specificators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Declared subset of an entity's columns and the DTO they are read into. A class DTO is built with the
+// constructor taking the columns in declaration order, an interface DTO gets a getter per column alias.
+// Immutable, every column returns a new projection, so they are kept in static fields
+public final class Projection<T, R> {
+    private final Class<T> entityType;
+    private final Class<R> resultType;
+    private final Map<String, String[]> columns;
+
+    private Projection(Class<T> entityType, Class<R> resultType, Map<String, String[]> columns) {
+        this.entityType = entityType;
+        this.resultType = resultType;
+        this.columns = columns;
+    }
+
+    public static <T, R> Projection<T, R> of(Class<T> entityType, Class<R> resultType) {
+        return new Projection<>(entityType, resultType, Collections.emptyMap());
+    }
+
+    public Projection<T, R> column(String path) {
+        String[] segments = path.split("\\.");
+        return column(segments[segments.length - 1], path);
+    }
+
+    // Path may walk many to one associations, e.g. "client.clientId", missing associations give null columns
+    public Projection<T, R> column(String alias, String path) {
+        if (columns.containsKey(alias))
+            throw new IllegalStateException("Projection of " + entityType.getSimpleName() + " already has column " + alias);
+        Map<String, String[]> extended = new LinkedHashMap<>(columns);
+        extended.put(alias, path.split("\\."));
+        return new Projection<>(entityType, resultType, Collections.unmodifiableMap(extended));
+    }
+
+    public Class<T> getEntityType() {
+        return entityType;
+    }
+
+    public Class<R> getResultType() {
+        return resultType;
+    }
+
+    public List<String> getAliases() {
+        return new ArrayList<>(columns.keySet());
+    }
+
+    String[] getPath(String alias) {
+        return columns.get(alias);
+    }
+}
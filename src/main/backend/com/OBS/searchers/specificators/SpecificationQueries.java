@@ -0,0 +1,159 @@
+package com.OBS.searchers.specificators;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.AbstractQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.EntityType;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Terminal operations over specifications that never hydrate entities: projections read only the declared
+// columns, count, exists and sum are answered by the database. Specification may be null for the whole table
+@Component
+public class SpecificationQueries {
+    private final ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public <T, R> List<R> findAll(Projection<T, R> projection, Specification<T> specification, Sort sort) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        List<String> aliases = projection.getAliases();
+        if (aliases.isEmpty())
+            throw new IllegalStateException("Projection of " + projection.getEntityType().getSimpleName() + " has no columns");
+
+        if (!projection.getResultType().isInterface()) {
+            CriteriaQuery<R> query = builder.createQuery(projection.getResultType());
+            Root<T> root = query.from(projection.getEntityType());
+            query.select(builder.construct(projection.getResultType(), selections(projection, root).toArray(new Selection<?>[0])));
+            where(query, root, builder, specification);
+            query.orderBy(QueryUtils.toOrders(sort, root, builder));
+            return entityManager.createQuery(query).getResultList();
+        }
+
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<T> root = query.from(projection.getEntityType());
+        query.multiselect(selections(projection, root));
+        where(query, root, builder, specification);
+        query.orderBy(QueryUtils.toOrders(sort, root, builder));
+
+        List<Tuple> tuples = entityManager.createQuery(query).getResultList();
+        List<R> results = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (String alias : aliases)
+                values.put(alias, tuple.get(alias));
+            results.add(projectionFactory.createProjection(projection.getResultType(), values));
+        }
+        return results;
+    }
+
+    public <T> long count(Class<T> entityType, Specification<T> specification) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        Root<T> root = query.from(entityType);
+        where(query, root, builder, specification);
+        query.select(query.isDistinct() ? builder.countDistinct(root) : builder.count(root));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    public <T> boolean exists(Class<T> entityType, Specification<T> specification) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> query = builder.createQuery(Object.class);
+        Root<T> root = query.from(entityType);
+        String id = idAttribute(entityType);
+        if (id == null)
+            throw new IllegalStateException("Entity " + entityType.getSimpleName() + " has no single id attribute");
+        // Only the id of the first match is read
+        query.select(root.get(id));
+        where(query, root, builder, specification);
+        return !entityManager.createQuery(query).setMaxResults(1).getResultList().isEmpty();
+    }
+
+    // Zero when nothing matches, like the aggregates of the reports
+    @SuppressWarnings("unchecked")
+    public <T> BigDecimal sum(Class<T> entityType, String field, Specification<T> specification) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Number> query = builder.createQuery(Number.class);
+        Root<T> root = query.from(entityType);
+        Path<?> path = path(root, new HashMap<>(), field.split("\\."));
+        if (!Number.class.isAssignableFrom(box(path.getJavaType())))
+            throw new IllegalStateException("Attribute " + field + " of " + entityType.getSimpleName() + " isn't a number");
+        query.select(builder.sum((Expression<Number>) path));
+        where(query, root, builder, specification);
+
+        Number sum = entityManager.createQuery(query).getSingleResult();
+        return sum == null ? BigDecimal.ZERO : new BigDecimal(sum.toString());
+    }
+
+    private static <T> void where(AbstractQuery<?> query, Root<T> root, CriteriaBuilder builder, Specification<T> specification) {
+        Predicate predicate = specification == null ? null : specification.toPredicate(root, (CriteriaQuery<?>) query, builder);
+        if (predicate != null)
+            query.where(predicate);
+    }
+
+    private <T> List<Selection<?>> selections(Projection<T, ?> projection, Root<T> root) {
+        Map<String, From<?, ?>> joins = new HashMap<>();
+        List<Selection<?>> selections = new ArrayList<>();
+        for (String alias : projection.getAliases())
+            selections.add(path(root, joins, projection.getPath(alias)).alias(alias));
+        return selections;
+    }
+
+    // Associations are left joined once per path prefix, the id of a many to one is read from its foreign key
+    private Path<?> path(Root<?> root, Map<String, From<?, ?>> joins, String[] segments) {
+        From<?, ?> from = root;
+        String joined = "";
+        for (int i = 0; i < segments.length - 1; i++) {
+            Path<?> association = from.get(segments[i]);
+            if (i == segments.length - 2 && segments[i + 1].equals(idAttribute(association.getJavaType())))
+                return association.get(segments[i + 1]);
+            joined = joined + segments[i] + ".";
+            From<?, ?> parent = from;
+            String attribute = segments[i];
+            from = joins.computeIfAbsent(joined, key -> parent.join(attribute, JoinType.LEFT));
+        }
+        return from.get(segments[segments.length - 1]);
+    }
+
+    private String idAttribute(Class<?> entityType) {
+        EntityType<?> entity;
+        try {
+            entity = entityManager.getMetamodel().entity(entityType);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!entity.hasSingleIdAttribute())
+            return null;
+        return entity.getId(entity.getIdType().getJavaType()).getName();
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == float.class) return Float.class;
+        if (type == double.class) return Double.class;
+        return type;
+    }
+}
@@ -9,6 +9,7 @@ import javax.persistence.criteria.Root;
 import java.util.ArrayList;
 import java.util.List;
 
+// Mutable, kept for existing callers, new queries are built with ImmutableSpecification
 public class Specifications<T> implements Specification<T>, Cloneable {
     private final List<SearchCriteria> searchCriteriaList;
 
@@ -29,6 +30,10 @@ public class Specifications<T> implements Specification<T>, Cloneable {
         return this;
     }
 
+    public CompiledSpecification<T> compile(CriteriaCompiler compiler, Class<T> entityType) {
+        return compiler.compile(entityType, searchCriteriaList);
+    }
+
     @Override
     public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
 
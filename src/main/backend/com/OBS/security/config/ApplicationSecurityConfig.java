@@ -94,6 +94,9 @@ public class ApplicationSecurityConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers(HttpMethod.DELETE,"/cyclical-transfers/**").hasAnyRole(ADMIN.name(), EMPLOYEE.name(), CLIENT.name())
                 .antMatchers("/cyclical-transfers/**").hasAnyRole(ADMIN.name(), EMPLOYEE.name(), CLIENT.name())
 
+                .antMatchers("/loans/delinquency").hasRole(ADMIN.name())
+                .antMatchers("/loans/portfolio").hasRole(ADMIN.name())
+                .antMatchers("/loans/simulate").hasAnyRole(ADMIN.name(), EMPLOYEE.name())
                 .antMatchers(HttpMethod.PATCH,"/loans/{loanId}").hasAnyRole(ADMIN.name(), EMPLOYEE.name())
                 .antMatchers(HttpMethod.DELETE,"/loans/{loanId}").hasAnyRole(ADMIN.name(), EMPLOYEE.name())
                 .antMatchers(HttpMethod.POST,"/loans/**").hasAnyRole(ADMIN.name(), EMPLOYEE.name(), CLIENT.name())
@@ -101,6 +104,11 @@ public class ApplicationSecurityConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers(HttpMethod.GET,"/loans/**").hasAnyRole(ADMIN.name(), EMPLOYEE.name(), CLIENT.name())
 
                 .antMatchers(HttpMethod.GET,"/loans-rates/**").hasAnyRole(ADMIN.name(), EMPLOYEE.name(), CLIENT.name())
+
+                .antMatchers("/rollups/**").hasRole(ADMIN.name())
+
+                .antMatchers("/orders/queue/**").hasAnyRole(ADMIN.name(), EMPLOYEE.name())
+                .antMatchers("/orders/decisions").hasAnyRole(ADMIN.name(), EMPLOYEE.name())
         ;
     }
 
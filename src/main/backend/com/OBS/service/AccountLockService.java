@@ -0,0 +1,51 @@
+package com.OBS.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+public class AccountLockService {
+    private static final int STRIPES = 256;
+
+    private final ReentrantLock[] locks;
+
+    public AccountLockService() {
+        locks = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++)
+            locks[i] = new ReentrantLock();
+    }
+
+    // Locks the stripes of given accounts in ascending order so two transfers can't deadlock,
+    // stripes stay locked until the surrounding transaction commits or rolls back
+    public void lockForTransaction(Long... clientIds) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (Long clientId : clientIds)
+            if (clientId != null)
+                stripes.add(stripeOf(clientId));
+
+        for (Integer stripe : stripes)
+            locks[stripe].lock();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    unlock(stripes);
+                }
+            });
+        } else unlock(stripes);
+    }
+
+    private void unlock(TreeSet<Integer> stripes) {
+        for (Integer stripe : stripes.descendingSet())
+            locks[stripe].unlock();
+    }
+
+    private int stripeOf(Long clientId) {
+        return (int) Math.floorMod(clientId, (long) STRIPES);
+    }
+}
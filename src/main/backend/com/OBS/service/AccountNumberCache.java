@@ -0,0 +1,88 @@
+package com.OBS.service;
+
+import com.OBS.entity.Client;
+import com.OBS.repository.ClientRepository;
+import com.OBS.support.AfterCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class AccountNumberCache {
+    private static final int MAX_ENTRIES = 10_000;
+    // Cached for account numbers that belong to other banks
+    private static final Long EXTERNAL_ACCOUNT = -1L;
+
+    private final ClientRepository clientRepository;
+    private final Map<String, Long> clientIds;
+    private final AtomicLong invalidations = new AtomicLong();
+    // Digits shared by clients that stored the same account in different spellings, left for an administrator
+    private final Set<String> ambiguousAccounts = ConcurrentHashMap.newKeySet();
+
+    public AccountNumberCache(ClientRepository clientRepository) {
+        this.clientRepository = clientRepository;
+        this.clientIds = Collections.synchronizedMap(new LinkedHashMap<String, Long>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        });
+    }
+
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillAccountNumberDigits() {
+        Logger logger = LoggerFactory.getLogger(AccountNumberCache.class);
+        int updated = clientRepository.backfillAccountNumberDigits();
+        if (updated > 0)
+            logger.info("Normalised account numbers of " + updated + " clients");
+
+        ambiguousAccounts.clear();
+        for (String digits : clientRepository.findDuplicatedAccountNumberDigits()) {
+            ambiguousAccounts.add(digits);
+            logger.error("Account number " + digits + " is stored for clients " + clientRepository.findClientIdsByNormalizedAccountNumber(digits)
+                    + ", transfers to it are rejected until the duplicates are resolved");
+        }
+    }
+
+    // Returns null for accounts outside of our bank
+    public Long getClientId(String accountNumber) {
+        String digits = Client.normalizeAccountNumber(accountNumber);
+        if (digits == null || digits.isEmpty())
+            return null;
+        if (ambiguousAccounts.contains(digits))
+            throw new IllegalStateException("Account number " + accountNumber + " belongs to more than one client");
+
+        Long clientId = clientIds.get(digits);
+        if (clientId == null) {
+            long version = invalidations.get();
+            clientId = clientRepository.findClientIdByAccountNumberDigits(digits).orElse(EXTERNAL_ACCOUNT);
+            // Skip caching when an invalidation happened during the lookup, the result may already be stale
+            if (version == invalidations.get())
+                clientIds.put(digits, clientId);
+        }
+        return EXTERNAL_ACCOUNT.equals(clientId) ? null : clientId;
+    }
+
+    // Dropped once the surrounding transaction commits, a lookup running before that could cache the old owner again
+    public void invalidate(String accountNumber) {
+        String digits = Client.normalizeAccountNumber(accountNumber);
+        AfterCommit.run(() -> remove(digits));
+    }
+
+    private void remove(String digits) {
+        invalidations.incrementAndGet();
+        if (digits != null)
+            clientIds.remove(digits);
+    }
+}
@@ -0,0 +1,151 @@
+package com.OBS.service;
+
+import com.OBS.alternativeBodies.BulkOrderDecisionReport;
+import com.OBS.alternativeBodies.OrderDecision;
+import com.OBS.alternativeBodies.OrderDecisionResult;
+import com.OBS.entity.Order;
+import com.OBS.entity.OrderExecution;
+import com.OBS.enums.OrderEventType;
+import com.OBS.enums.OrderExecutionStatus;
+import com.OBS.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Decides many orders at once, every order type is committed in its own chunked transactions,
+// so one failing group doesn't roll back the others
+@Service
+public class BulkOrderDecisionService {
+    private static final int MAX_DECISIONS = 500;
+    private static final int CHUNK_SIZE = 100;
+    private static final Logger logger = LoggerFactory.getLogger(BulkOrderDecisionService.class);
+
+    private final OrderRepository orderRepository;
+    private final OrderExecutionService orderExecutionService;
+    private final OrderEventService orderEventService;
+    private final OrderCommandRegistry orderCommandRegistry;
+    private final TransactionTemplate transactionTemplate;
+
+    public BulkOrderDecisionService(OrderRepository orderRepository,
+                                    OrderExecutionService orderExecutionService,
+                                    OrderEventService orderEventService,
+                                    OrderCommandRegistry orderCommandRegistry,
+                                    PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.orderExecutionService = orderExecutionService;
+        this.orderEventService = orderEventService;
+        this.orderCommandRegistry = orderCommandRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public BulkOrderDecisionReport finishOrders(List<OrderDecision> decisions) {
+        if (decisions == null || decisions.isEmpty())
+            throw new IllegalStateException("At least one decision is required");
+        if (decisions.size() > MAX_DECISIONS)
+            throw new IllegalStateException("At most " + MAX_DECISIONS + " orders can be decided at once");
+
+        Map<Long, OrderDecisionResult> results = new LinkedHashMap<>();
+        List<OrderDecisionResult> invalid = new ArrayList<>();
+        for (OrderDecision decision : decisions) {
+            OrderDecisionResult result = new OrderDecisionResult(decision.getOrderId(), null, decision.getDecision(), false, null, null);
+            if (decision.getOrderId() == null || decision.getDecision() == null || decision.getDecision().isEmpty()) {
+                result.setMessage("Order id and decision are required");
+                invalid.add(result);
+            } else if (results.containsKey(decision.getOrderId())) {
+                result.setMessage("Order with id: " + decision.getOrderId() + " is decided more than once in this request");
+                invalid.add(result);
+            } else results.put(decision.getOrderId(), result);
+        }
+
+        // One IN query finds every order, grouping needs only the type
+        Map<String, List<Long>> groups = new LinkedHashMap<>();
+        for (Order order : orderRepository.findAllById(results.keySet())) {
+            results.get(order.getOrder_Id()).setOrderType(order.getOrderType());
+            groups.computeIfAbsent(order.getOrderType(), type -> new ArrayList<>()).add(order.getOrder_Id());
+        }
+        for (OrderDecisionResult result : results.values())
+            if (result.getOrderType() == null)
+                result.setMessage("Order with id: " + result.getOrderId() + " doesn't exist in database");
+
+        for (Map.Entry<String, List<Long>> group : groups.entrySet()) {
+            List<Long> orderIds = group.getValue();
+            for (int from = 0; from < orderIds.size(); from += CHUNK_SIZE) {
+                List<Long> chunk = orderIds.subList(from, Math.min(from + CHUNK_SIZE, orderIds.size()));
+                try {
+                    transactionTemplate.execute(status -> decideChunk(chunk, results));
+                } catch (RuntimeException e) {
+                    logger.error("Decisions for " + chunk.size() + " orders of type " + group.getKey() + " were rolled back: " + e.getMessage());
+                    for (Long orderId : chunk) {
+                        OrderDecisionResult result = results.get(orderId);
+                        if (result.getMessage() != null && !result.getSucceeded())
+                            continue;
+                        result.setSucceeded(false);
+                        result.setExecutionStatus(null);
+                        result.setMessage("Decision was rolled back: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        List<OrderDecisionResult> report = new ArrayList<>(results.values());
+        report.addAll(invalid);
+        int succeeded = 0;
+        for (OrderDecisionResult result : report)
+            if (result.getSucceeded())
+                succeeded++;
+        return new BulkOrderDecisionReport(decisions.size(), succeeded, decisions.size() - succeeded, report);
+    }
+
+    // Orders are locked and checked again, they could have been decided since the first read.
+    // Executions are read only once the locks are held, a single decision enqueues under the same lock
+    private Void decideChunk(List<Long> orderIds, Map<Long, OrderDecisionResult> results) {
+        List<Order> locked = orderRepository.findAllForUpdate(orderIds);
+        Map<Long, OrderExecution> executions = orderExecutionService.getExecutions(orderIds);
+        List<Order> accepted = new ArrayList<>();
+        List<Order> decided = new ArrayList<>();
+        Map<Long, OrderDecisionResult> pending = new HashMap<>();
+
+        for (Order order : locked) {
+            OrderDecisionResult result = results.get(order.getOrder_Id());
+            OrderExecution execution = executions.get(order.getOrder_Id());
+            if (!Boolean.TRUE.equals(order.getIsActive())) {
+                result.setMessage("Order with id: " + order.getOrder_Id() + " is already finished");
+                continue;
+            }
+            if (execution != null && execution.getStatus() != OrderExecutionStatus.FAILED) {
+                result.setMessage(OrderExecutionService.alreadyQueued(order.getOrder_Id(), execution));
+                continue;
+            }
+
+            order.setDecision(result.getDecision());
+            if (Objects.equals(result.getDecision(), "accepted")) {
+                order.setClaimExpiresAt(null);
+                accepted.add(order);
+            } else {
+                order.setIsActive(false);
+                orderCommandRegistry.evict(order.getOrder_Id());
+            }
+            decided.add(order);
+            pending.put(order.getOrder_Id(), result);
+        }
+
+        orderRepository.saveAll(decided);
+        for (OrderExecution execution : orderExecutionService.enqueueAll(accepted))
+            pending.get(execution.getOrderId()).setExecutionStatus(execution.getStatus());
+        for (Order order : decided) {
+            // FINISHED of accepted orders is published by the execution queue once they are executed
+            orderEventService.publish(Boolean.TRUE.equals(order.getIsActive()) ? OrderEventType.QUEUED : OrderEventType.FINISHED, order);
+            pending.get(order.getOrder_Id()).setSucceeded(true);
+        }
+        return null;
+    }
+}
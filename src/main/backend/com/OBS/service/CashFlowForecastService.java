@@ -0,0 +1,221 @@
+package com.OBS.service;
+
+import com.OBS.alternativeBodies.CashFlowForecast;
+import com.OBS.alternativeBodies.CashFlowMonth;
+import com.OBS.entity.Client;
+import com.OBS.entity.CyclicalTransfer;
+import com.OBS.entity.Loan;
+import com.OBS.enums.OrderType;
+import com.OBS.enums.TransferCategory;
+import com.OBS.repository.ClientRepository;
+import com.OBS.repository.CyclicalTransferRepository;
+import com.OBS.repository.LoanRepository;
+import com.OBS.repository.OrderRepository;
+import com.OBS.support.AfterCommit;
+import org.springframework.stereotype.Service;
+
+import javax.json.bind.Jsonb;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.OBS.enums.TransferCategory.BILLS;
+
+@Service
+public class CashFlowForecastService {
+    public static final int MAX_MONTHS = 36;
+    private static final int MAX_ENTRIES = 10_000;
+
+    private static final String LOAN_CATEGORY = "Pożyczka";
+
+    private final CyclicalTransferRepository cyclicalTransferRepository;
+    private final LoanRepository loanRepository;
+    private final OrderRepository orderRepository;
+    private final ClientRepository clientRepository;
+    private final ClientService clientService;
+    private final Jsonb jsonb;
+    // Per client incoming and outgoing flows for MAX_MONTHS months, balance is applied on every request
+    private final Map<Long, ProjectedFlows> flows;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public CashFlowForecastService(CyclicalTransferRepository cyclicalTransferRepository,
+                                   LoanRepository loanRepository,
+                                   OrderRepository orderRepository,
+                                   ClientRepository clientRepository,
+                                   ClientService clientService,
+                                   Jsonb jsonb) {
+        this.cyclicalTransferRepository = cyclicalTransferRepository;
+        this.loanRepository = loanRepository;
+        this.orderRepository = orderRepository;
+        this.clientRepository = clientRepository;
+        this.clientService = clientService;
+        this.jsonb = jsonb;
+        this.flows = Collections.synchronizedMap(new LinkedHashMap<Long, ProjectedFlows>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ProjectedFlows> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        });
+    }
+
+    public CashFlowForecast getForecast(Long clientId, int months) {
+        if (months < 1 || months > MAX_MONTHS)
+            throw new IllegalStateException("Forecast can be made for 1 to " + MAX_MONTHS + " months");
+
+        float currentBalance = clientService.getClient(clientId).getBalance();
+        float balance = currentBalance;
+        ProjectedFlows projected = getFlows(clientId);
+
+        List<CashFlowMonth> timeline = new ArrayList<>(months);
+        for (int i = 0; i < months; i++) {
+            Map<String, Float> outgoingByCategory = projected.outgoing.get(i);
+            Map<String, Float> incomingByCategory = projected.incoming.get(i);
+            float outgoing = sum(outgoingByCategory);
+            float incoming = sum(incomingByCategory);
+            balance += incoming - outgoing;
+            timeline.add(new CashFlowMonth(
+                    projected.firstMonth.plusMonths(i).toString(),
+                    outgoing,
+                    new LinkedHashMap<>(outgoingByCategory),
+                    incoming,
+                    new LinkedHashMap<>(incomingByCategory),
+                    balance
+            ));
+        }
+        return new CashFlowForecast(clientId, currentBalance, timeline);
+    }
+
+    // Called whenever client's standing orders, incoming standing orders, loan or pending loan request change.
+    // Dropped once the surrounding transaction commits, a forecast computed before that would be cached again
+    public void invalidate(Long clientId) {
+        AfterCommit.run(() -> remove(clientId));
+    }
+
+    // Receiver of a standing order, nothing happens for accounts of other banks
+    public void invalidateAccount(String accountNumber) {
+        String digits = Client.normalizeAccountNumber(accountNumber);
+        if (digits != null && !digits.isEmpty())
+            clientRepository.findClientIdByAccountNumberDigits(digits).ifPresent(this::invalidate);
+    }
+
+    private void remove(Long clientId) {
+        invalidations.incrementAndGet();
+        if (clientId != null)
+            flows.remove(clientId);
+    }
+
+    private ProjectedFlows getFlows(Long clientId) {
+        YearMonth currentMonth = YearMonth.now();
+        ProjectedFlows projected = flows.get(clientId);
+        if (projected != null && projected.firstMonth.equals(currentMonth))
+            return projected;
+
+        long version = invalidations.get();
+        String accountDigits = clientRepository.findById(clientId).map(Client::getAccountNumberDigits).orElse(null);
+        projected = project(
+                currentMonth,
+                cyclicalTransferRepository.findAllByClient_clientId(clientId),
+                accountDigits == null ? new ArrayList<>() : cyclicalTransferRepository.findAllByAccountNumberDigits(accountDigits),
+                loanRepository.findByClient_clientIdAndIsActive(clientId, true).orElse(null),
+                orderRepository.findPendingRequestBodies(clientId, OrderType.loanRequest)
+        );
+        // Skip caching when an invalidation happened during the computation, the result may already be stale
+        if (version == invalidations.get())
+            flows.put(clientId, projected);
+        return projected;
+    }
+
+    private ProjectedFlows project(YearMonth firstMonth, List<CyclicalTransfer> outgoingTransfers, List<CyclicalTransfer> incomingTransfers,
+                                   Loan loan, List<String> pendingLoanRequests) {
+        ProjectedFlows projected = new ProjectedFlows(firstMonth);
+
+        for (CyclicalTransfer transfer : outgoingTransfers)
+            projected.outgoing.addStandingOrder(transfer);
+        for (CyclicalTransfer transfer : incomingTransfers)
+            projected.incoming.addStandingOrder(transfer);
+
+        if (loan != null && loan.getNextRatePayDay() != null && loan.getRateAmount() != null) {
+            LocalDate date = loan.getNextRatePayDay();
+            for (int rate = 0; rate < loan.getRatesLeftToPay() && projected.outgoing.add(date, BILLS.getCategory(), loan.getRateAmount()); rate++)
+                date = date.plusMonths(1);
+        }
+
+        // Accepted loan requests waiting for execution are paid out as soon as a worker picks them up
+        for (String requestBody : pendingLoanRequests) {
+            Loan requested = (Loan) OrderType.loanRequest.parse(jsonb, requestBody);
+            if (requested.getBasicLoanAmount() != null)
+                projected.incoming.add(firstMonth.atDay(1), LOAN_CATEGORY, requested.getBasicLoanAmount());
+        }
+        return projected;
+    }
+
+    private static float sum(Map<String, Float> byCategory) {
+        float sum = 0f;
+        for (Float amount : byCategory.values())
+            sum += amount;
+        return sum;
+    }
+
+    private static class ProjectedFlows {
+        private final YearMonth firstMonth;
+        private final Timeline outgoing;
+        private final Timeline incoming;
+
+        private ProjectedFlows(YearMonth firstMonth) {
+            this.firstMonth = firstMonth;
+            this.outgoing = new Timeline(firstMonth);
+            this.incoming = new Timeline(firstMonth);
+        }
+    }
+
+    private static class Timeline {
+        private final YearMonth firstMonth;
+        private final List<Map<String, Float>> byCategory;
+
+        private Timeline(YearMonth firstMonth) {
+            this.firstMonth = firstMonth;
+            this.byCategory = new ArrayList<>(MAX_MONTHS);
+            for (int i = 0; i < MAX_MONTHS; i++) {
+                Map<String, Float> month = new LinkedHashMap<>();
+                for (TransferCategory category : TransferCategory.values())
+                    month.put(category.getCategory(), 0f);
+                byCategory.add(month);
+            }
+        }
+
+        private Map<String, Float> get(int month) {
+            return byCategory.get(month);
+        }
+
+        private void addStandingOrder(CyclicalTransfer transfer) {
+            if (transfer.getReTransferDate() == null || transfer.getAmount() == null)
+                return;
+            LocalDate date = transfer.getReTransferDate().toLocalDate();
+            // An overdue order is still going to be retried, it counts once towards current month
+            if (date.isBefore(firstMonth.atDay(1))) {
+                add(date, transfer.getCategory(), transfer.getAmount());
+                while (date.isBefore(firstMonth.atDay(1)))
+                    date = date.plusMonths(1);
+                if (YearMonth.from(date).equals(firstMonth))
+                    date = date.plusMonths(1);
+            }
+            while (add(date, transfer.getCategory(), transfer.getAmount()))
+                date = date.plusMonths(1);
+        }
+
+        // Returns false once the date is past the forecast horizon
+        private boolean add(LocalDate date, String category, float amount) {
+            long offset = Math.max(0, firstMonth.until(YearMonth.from(date), ChronoUnit.MONTHS));
+            if (offset >= MAX_MONTHS)
+                return false;
+            byCategory.get((int) offset).merge(category == null ? TransferCategory.OTHERS.getCategory() : category, amount, Float::sum);
+            return true;
+        }
+    }
+}
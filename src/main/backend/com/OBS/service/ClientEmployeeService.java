@@ -9,6 +9,7 @@ import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
+import java.util.Objects;
 
 @Service
 @AllArgsConstructor
@@ -70,7 +71,7 @@ public class ClientEmployeeService {
         if (clientRepository.existsByIdentificationNumber(client.getIdentificationNumber())) {
             throw new IllegalStateException("This Identification Number is already taken!");
         }
-        if (clientRepository.existsByAccountNumber(client.getAccountNumber())) {
+        if (clientRepository.existsByAccountNumberDigits(Client.normalizeAccountNumber(client.getAccountNumber()))) {
             throw new IllegalStateException("This Account Number is already taken!");
         }
     }
@@ -95,8 +96,9 @@ public class ClientEmployeeService {
                 throw new IllegalStateException("This Identification Number is already taken!");
         }
 
-        if (!currentClientRecord.getAccountNumber().equals(newClientRecord.getAccountNumber())) {
-            if (clientRepository.existsByAccountNumber(newClientRecord.getAccountNumber()))
+        String newAccountNumberDigits = Client.normalizeAccountNumber(newClientRecord.getAccountNumber());
+        if (!Objects.equals(Client.normalizeAccountNumber(currentClientRecord.getAccountNumber()), newAccountNumberDigits)) {
+            if (clientRepository.existsByAccountNumberDigits(newAccountNumberDigits))
                 throw new IllegalStateException("This Account Number is already taken!");
         }
     }
@@ -0,0 +1,138 @@
+package com.OBS.service;
+
+import com.OBS.entity.ClientRollupBackfill;
+import com.OBS.entity.Transfer;
+import com.OBS.repository.ClientMonthlyRollupRepository;
+import com.OBS.repository.ClientRollupBackfillRepository;
+import com.OBS.repository.TransferRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.transaction.Transactional;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@Service
+@RequiredArgsConstructor
+public class ClientMonthlyRollupService {
+    private static final int REBUILD_CHUNK_SIZE = 200;
+    private static final int REBUILD_THREADS = 4;
+
+    private final ClientMonthlyRollupRepository rollupRepository;
+    private final ClientRollupBackfillRepository backfillRepository;
+    private final TransferRepository transferRepository;
+    private final AccountLockService accountLockService;
+    private final PlatformTransactionManager transactionManager;
+
+    // Until every client with transfers has been rebuilt once, summaries are aggregated from transfers alone
+    private volatile boolean complete = false;
+
+    public static String toYearMonth(LocalDateTime date) {
+        return YearMonth.from(date).toString();
+    }
+
+    // Joins the caller's transaction so the rollup never diverges from the transfers table
+    @Transactional
+    public void record(Transfer transfer) {
+        apply(transfer, 1);
+    }
+
+    @Transactional
+    public void revert(Transfer transfer) {
+        apply(transfer, -1);
+    }
+
+    private void apply(Transfer transfer, int sign) {
+        if (transfer.getClient() == null || transfer.getTransferDate() == null || transfer.getAmount() == null)
+            return;
+
+        // Already held on the transfer paths, keeps a rebuild of the client from running in between
+        accountLockService.lockForTransaction(transfer.getClient().getClientId());
+        rollupRepository.upsert(
+                transfer.getClient().getClientId(),
+                toYearMonth(transfer.getTransferDate()),
+                Objects.toString(transfer.getType(), ""),
+                Objects.toString(transfer.getCategory(), ""),
+                (double) (sign * transfer.getAmount()),
+                (long) sign
+        );
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    // Clients not marked as rebuilt yet are filled in at startup, a failure only keeps the fallback on.
+    // Live upserts may already have given such a client some rows, they are replaced as well
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        try {
+            rebuild(rollupRepository.findClientIdsWithoutBackfill());
+            complete = true;
+        } catch (RuntimeException e) {
+            LoggerFactory.getLogger(ClientMonthlyRollupService.class).error("Rollup backfill failed, summaries read transfers: " + e.getMessage());
+        }
+    }
+
+    // Regenerates the whole rollup from the transfers table
+    public int rebuild() {
+        int rows = rebuild(transferRepository.findDistinctClientIds());
+        complete = true;
+        return rows;
+    }
+
+    // Chunks of clients run in parallel, each client is replaced in its own transaction under its account lock
+    private int rebuild(List<Long> clientIds) {
+        Logger logger = LoggerFactory.getLogger(ClientMonthlyRollupService.class);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newFixedThreadPool(REBUILD_THREADS);
+
+        List<Future<Integer>> chunks = new ArrayList<>();
+        for (int from = 0; from < clientIds.size(); from += REBUILD_CHUNK_SIZE) {
+            List<Long> chunk = new ArrayList<>(clientIds.subList(from, Math.min(from + REBUILD_CHUNK_SIZE, clientIds.size())));
+            chunks.add(executor.submit(() -> {
+                int chunkRows = 0;
+                for (Long clientId : chunk)
+                    chunkRows += transactionTemplate.execute(status -> rebuildClient(clientId));
+                return chunkRows;
+            }));
+        }
+
+        int rows = 0;
+        try {
+            for (Future<Integer> chunk : chunks)
+                rows += chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rollup rebuild was interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Rollup rebuild failed: " + e.getCause().getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        logger.info("Rebuilt " + rows + " rollup rows for " + clientIds.size() + " clients in " + chunks.size() + " chunks");
+        return rows;
+    }
+
+    private int rebuildClient(Long clientId) {
+        accountLockService.lockForTransaction(clientId);
+        rollupRepository.deleteAllByClientId(clientId);
+        int rows = rollupRepository.rebuildForClient(clientId);
+        backfillRepository.save(new ClientRollupBackfill(clientId));
+        return rows;
+    }
+}
@@ -6,8 +6,8 @@ import com.OBS.enums.SearchOperation;
 import com.OBS.repository.ClientRepository;
 import com.OBS.alternativeBodies.ClientUserBody;
 import com.OBS.alternativeBodies.UserCredentials;
-import com.OBS.searchers.SearchCriteria;
-import com.OBS.searchers.specificators.Specifications;
+import com.OBS.searchers.specificators.CriteriaCompiler;
+import com.OBS.searchers.specificators.ImmutableSpecification;
 import com.OBS.service.interfaces.systemFacade.ClientServiceFacade;
 import lombok.AllArgsConstructor;
 import org.springframework.data.domain.Sort;
@@ -27,6 +27,8 @@ public class ClientService implements ClientServiceFacade {
     private final ClientRepository clientRepository;
     private final AppUserService appUserService;
     private final ClientEmployeeService clientEmployeeService;
+    private final AccountNumberCache accountNumberCache;
+    private final CriteriaCompiler criteriaCompiler;
 
     public List<Client> getClients() {
         return clientRepository.findAll(Sort.by(Sort.Direction.DESC,"dateOfBirth"));
@@ -56,15 +58,16 @@ public class ClientService implements ClientServiceFacade {
     }
 
     public Client getClientByAccountNumber(String accountNumber) {
-        if(clientRepository.existsByAccountNumber(accountNumber)){
-            return clientRepository.findByAccountNumber(accountNumber);
-        }else return null;
+        Long clientId = accountNumberCache.getClientId(accountNumber);
+        if (clientId == null)
+            return null;
+        return clientRepository.getById(clientId);
     }
 
     public List<Client> getLatestClients(Integer days) {
         LocalDateTime today = LocalDateTime.now();
-        Specifications<Client> findAllByCreationDateBefore = new Specifications<Client>()
-                .add(new SearchCriteria("dateOfCreation",today.minusDays(days), SearchOperation.GREATER_THAN_EQUAL_DATE));
+        ImmutableSpecification<Client> findAllByCreationDateBefore = ImmutableSpecification.of(criteriaCompiler, Client.class)
+                .and("dateOfCreation", today.minusDays(days), SearchOperation.GREATER_THAN_EQUAL_DATE);
         return clientRepository.findAll(findAllByCreationDateBefore,Sort.by(Sort.Direction.DESC, "dateOfCreation"));
     }
 
@@ -83,6 +86,7 @@ public class ClientService implements ClientServiceFacade {
         client.setUser(appUserService.createAppUser(userCredentials));
         client.setDateOfCreation(LocalDateTime.now());
         clientRepository.save(client);
+        accountNumberCache.invalidate(client.getAccountNumber());
     }
 
     public void addOnlyClient(Client client){
@@ -91,6 +95,7 @@ public class ClientService implements ClientServiceFacade {
 
         client.setDateOfCreation(LocalDateTime.now());
         clientRepository.save(client);
+        accountNumberCache.invalidate(client.getAccountNumber());
     }
 
 
@@ -115,7 +120,10 @@ public class ClientService implements ClientServiceFacade {
 
         newClientRecord.setUser(currentClientRecord.getUser());
 
+        String oldAccountNumber = currentClientRecord.getAccountNumber();
         clientRepository.save(newClientRecord);
+        accountNumberCache.invalidate(oldAccountNumber);
+        accountNumberCache.invalidate(newClientRecord.getAccountNumber());
     }
 
     @Transactional
@@ -139,7 +147,10 @@ public class ClientService implements ClientServiceFacade {
 
         newClientRecord.setUser(clientUser);
 
+        String oldAccountNumber = currentClientRecord.getAccountNumber();
         clientRepository.save(newClientRecord);
+        accountNumberCache.invalidate(oldAccountNumber);
+        accountNumberCache.invalidate(newClientRecord.getAccountNumber());
     }
 
     public void deleteClient(Long id) {
@@ -147,7 +158,9 @@ public class ClientService implements ClientServiceFacade {
             throw new IllegalStateException("Can't find client of given id");
         }
         Client client = clientRepository.getById(id);
+        String accountNumber = client.getAccountNumber();
         clientRepository.deleteById(id);
+        accountNumberCache.invalidate(accountNumber);
         if(client.getUser() != null)
             appUserService.deleteUserById(client.getUser().getUserId());
     }
@@ -167,13 +180,46 @@ public class ClientService implements ClientServiceFacade {
         clientRepository.save(client);
     }
 
+    // Balance is changed with a conditional UPDATE, a client already loaded is refreshed afterwards
     @Transactional
     public void updateClientBalance(Client client, Float amount, String type) {
         if(type.equals(INCOMING.name()))
-            client.setBalance(client.getBalance() + amount);
-        else client.setBalance(client.getBalance() - amount);
+            creditBalance(client.getClientId(), amount);
+        else debitBalance(client.getClientId(), amount);
+    }
 
-        clientRepository.save(client);
+    @Transactional
+    public void transferBalance(Long senderId, Long receiverId, Float amount) {
+        // Rows are always updated in ascending id order to avoid deadlocks between opposite transfers
+        if (receiverId != null && receiverId < senderId) {
+            creditBalance(receiverId, amount);
+            debitBalance(senderId, amount);
+        } else {
+            debitBalance(senderId, amount);
+            if (receiverId != null)
+                creditBalance(receiverId, amount);
+        }
+    }
+
+    @Transactional
+    public boolean tryDebitBalance(Long clientId, Float amount) {
+        if (clientRepository.debitBalance(clientId, amount) != 1)
+            return false;
+        clientRepository.refreshIfLoaded(clientId);
+        return true;
+    }
+
+    @Transactional
+    public void debitBalance(Long clientId, Float amount) {
+        if (!tryDebitBalance(clientId, amount))
+            throw new IllegalStateException("Account balance is insufficient to perform this transaction");
+    }
+
+    @Transactional
+    public void creditBalance(Long clientId, Float amount) {
+        if (clientRepository.creditBalance(clientId, amount) != 1)
+            throw new IllegalStateException("Client with given id " + clientId + "doesn't exists in database");
+        clientRepository.refreshIfLoaded(clientId);
     }
 
 
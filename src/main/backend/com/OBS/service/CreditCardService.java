@@ -3,7 +3,7 @@ package com.OBS.service;
 import com.OBS.entity.Client;
 import com.OBS.entity.CreditCard;
 import com.OBS.repository.CreditCardRepository;
-import com.OBS.searchers.specificators.Specifications;
+import org.springframework.data.jpa.domain.Specification;
 import com.OBS.service.interfaces.systemFacade.CreditCardServiceFacade;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -68,7 +68,7 @@ public class CreditCardService implements CreditCardServiceFacade {
         return creditCardRepository.existsByCardNumber(cardNumber);
     }
 
-    public List<CreditCard> getCreditCardsBySpecification(Specifications<CreditCard> creditCardSpecification) {
+    public List<CreditCard> getCreditCardsBySpecification(Specification<CreditCard> creditCardSpecification) {
         return creditCardRepository.findAll(creditCardSpecification);
     }
 }
@@ -0,0 +1,261 @@
+package com.OBS.service;
+
+import com.OBS.email.EmailService;
+import com.OBS.email.EmailTemplates;
+import com.OBS.entity.Client;
+import com.OBS.entity.CyclicalTransfer;
+import com.OBS.entity.CyclicalTransferExecution;
+import com.OBS.entity.CyclicalTransferRun;
+import com.OBS.entity.Transfer;
+import com.OBS.enums.BatchRunStatus;
+import com.OBS.enums.ExecutionOutcome;
+import com.OBS.repository.CyclicalTransferExecutionRepository;
+import com.OBS.repository.CyclicalTransferRepository;
+import com.OBS.repository.CyclicalTransferRunRepository;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.OBS.enums.TransferType.INCOMING;
+import static com.OBS.enums.TransferType.OUTGOING;
+
+@Service
+@AllArgsConstructor
+public class CyclicalTransferBatchService {
+    private static final int CHUNK_SIZE = 50;
+    private static final int THREADS = 4;
+    private static final Logger logger = LoggerFactory.getLogger(CyclicalTransferBatchService.class);
+
+    private final CyclicalTransferRepository cyclicalTransferRepository;
+    private final CyclicalTransferRunRepository runRepository;
+    private final CyclicalTransferExecutionRepository executionRepository;
+    private final TransferService transferService;
+    private final ClientService clientService;
+    private final AccountNumberCache accountNumberCache;
+    private final AccountLockService accountLockService;
+    private final CashFlowForecastService cashFlowForecastService;
+    private final EmailService emailService;
+    private final EmailTemplates emailTemplates;
+    private final PlatformTransactionManager transactionManager;
+
+    // Finishes runs of previous days interrupted by a shutdown, orders that already have a checkpoint are skipped.
+    // Today's run is continued by the scheduler, which fires every due order on its first tick
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedRuns() {
+        for (CyclicalTransferRun run : runRepository.findAllByStatus(BatchRunStatus.RUNNING)) {
+            if (!run.getRunDate().isBefore(LocalDate.now()))
+                continue;
+            logger.info("Resuming cyclical transfer run from " + run.getRunDate());
+            realiseDueTransfers(run.getRunDate());
+        }
+    }
+
+    public CyclicalTransferRun realiseDueTransfers(LocalDate runDate) {
+        return realise(runDate, cyclicalTransferRepository.findPendingIds(dueBy(runDate), runDate));
+    }
+
+    private static LocalDateTime dueBy(LocalDate runDate) {
+        LocalDateTime dueBy = runDate.plusDays(1).atStartOfDay();
+        LocalDateTime now = LocalDateTime.now();
+        return dueBy.isBefore(now) ? dueBy : now;
+    }
+
+    // Realises given orders that are due by now and weren't handled in today's run yet
+    public CyclicalTransferRun realiseTransfers(List<Long> transferIds) {
+        LocalDate runDate = LocalDate.now();
+        return realise(runDate, transferIds.isEmpty()
+                ? new ArrayList<>()
+                : cyclicalTransferRepository.findPendingIds(transferIds, LocalDateTime.now(), runDate));
+    }
+
+    // One realisation at a time, the counters of a run are read and written back
+    private synchronized CyclicalTransferRun realise(LocalDate runDate, List<Long> pendingIds) {
+        CyclicalTransferRun run = runRepository.findByRunDate(runDate).orElseGet(() -> new CyclicalTransferRun(runDate));
+        run.setStatus(BatchRunStatus.RUNNING);
+        run = runRepository.save(run);
+
+        long started = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(THREADS, pendingIds.size() / CHUNK_SIZE + 1)));
+        List<Future<?>> chunks = new ArrayList<>();
+        for (int from = 0; from < pendingIds.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = new ArrayList<>(pendingIds.subList(from, Math.min(from + CHUNK_SIZE, pendingIds.size())));
+            chunks.add(executor.submit(() -> realiseChunk(runDate, chunk)));
+        }
+
+        try {
+            for (Future<?> chunk : chunks)
+                chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cyclical transfer run was interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cyclical transfer chunk failed: " + e.getCause().getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return finishRun(run, pendingIds.size(), Duration.ofNanos(System.nanoTime() - started));
+    }
+
+    // Every order has its own transaction and locks only its own two accounts,
+    // so a failing order is rolled back alone and retried later while the rest of the chunk goes on
+    private void realiseChunk(LocalDate runDate, List<Long> transferIds) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (Long transferId : transferIds) {
+            List<Runnable> afterCommit = new ArrayList<>();
+            try {
+                transactionTemplate.execute(status -> realiseOne(runDate, transferId, afterCommit));
+            } catch (RuntimeException e) {
+                logger.error("Cyclical transfer id:" + transferId + " was rolled back: " + e.getMessage());
+                recordFailure(transactionTemplate, runDate, transferId);
+                continue;
+            }
+            // Emails and cache invalidations happen only once the order is committed
+            for (Runnable action : afterCommit)
+                action.run();
+        }
+    }
+
+    private ExecutionOutcome realiseOne(LocalDate runDate, Long transferId, List<Runnable> afterCommit) {
+        // Row lock, the same order fired twice waits here and then finds it is no longer due
+        CyclicalTransfer transfer = cyclicalTransferRepository.findForUpdate(transferId).orElse(null);
+        if (transfer == null || transfer.getReTransferDate() == null || transfer.getReTransferDate().isAfter(LocalDateTime.now()))
+            return null;
+
+        Long receiverId = accountNumberCache.getClientId(transfer.getAccountNumber());
+        Long senderId = transfer.getClient() == null ? null : transfer.getClient().getClientId();
+        accountLockService.lockForTransaction(senderId, receiverId);
+
+        ExecutionOutcome outcome = realise(transfer, receiverId, afterCommit);
+        // Replaces the failure of an earlier pass of the run
+        CyclicalTransferExecution execution = executionRepository.findByRunDateAndCyclicalTransferId(runDate, transferId)
+                .orElseGet(() -> new CyclicalTransferExecution(runDate, transferId, outcome));
+        execution.setOutcome(outcome);
+        execution.setExecutedAt(LocalDateTime.now());
+        executionRepository.save(execution);
+        return outcome;
+    }
+
+    // Kept apart from checkpoints so the run stays open until the order is realised or stops being due
+    private void recordFailure(TransactionTemplate transactionTemplate, LocalDate runDate, Long transferId) {
+        try {
+            transactionTemplate.execute(status -> {
+                CyclicalTransferExecution execution = executionRepository.findByRunDateAndCyclicalTransferId(runDate, transferId)
+                        .orElseGet(() -> new CyclicalTransferExecution(runDate, transferId, ExecutionOutcome.FAILED));
+                if (execution.getOutcome() != ExecutionOutcome.FAILED)
+                    return null;
+                execution.setExecutedAt(LocalDateTime.now());
+                return executionRepository.save(execution);
+            });
+        } catch (RuntimeException e) {
+            logger.error("Failure of cyclical transfer id:" + transferId + " couldn't be recorded: " + e.getMessage());
+        }
+    }
+
+    private ExecutionOutcome realise(CyclicalTransfer transfer, Long receiverId, List<Runnable> afterCommit) {
+        Client sender = transfer.getClient() == null ? null : clientService.getClientOrNull(transfer.getClient().getClientId());
+        if (sender == null) {
+            logger.error("Cannot realise transfer, client doesn't exist anymore, deleting cyclical transfer!!\n");
+            cyclicalTransferRepository.delete(transfer);
+            return ExecutionOutcome.SENDER_MISSING;
+        }
+
+        if (!clientService.tryDebitBalance(sender.getClientId(), transfer.getAmount())) {
+            logger.warn("Cannot realise transfer, insufficient balance!!\n");
+            String email = sender.getEmail();
+            String message = emailTemplates.emailTemplateInsufficientBalanceForTransfer(sender, transfer.getTransferId());
+            afterCommit.add(() -> sendQuietly(email, message));
+            return ExecutionOutcome.INSUFFICIENT_BALANCE;
+        }
+
+        Transfer senderTransfer = new Transfer(
+                transfer.getAmount(),
+                LocalDateTime.now(),
+                transfer.getCategory(),
+                OUTGOING.name(),
+                transfer.getReceiver(),
+                transfer.getTitle(),
+                transfer.getAccountNumber()
+        );
+        senderTransfer.setClient(sender);
+        transferService.addTransfer(senderTransfer);
+
+        if (receiverId != null) {
+            clientService.creditBalance(receiverId, transfer.getAmount());
+            Transfer receiverTransfer = new Transfer(
+                    transfer.getAmount(),
+                    LocalDateTime.now(),
+                    transfer.getCategory(),
+                    INCOMING.name(),
+                    sender.getFullName(),
+                    transfer.getTitle(),
+                    transfer.getAccountNumber()
+            );
+            receiverTransfer.setClient(clientService.getClient(receiverId));
+            transferService.addTransfer(receiverTransfer);
+        }
+
+        transfer.setReTransferDate(transfer.getReTransferDate().plusMonths(1));
+        cyclicalTransferRepository.save(transfer);
+        logger.debug("Transfer id:" + transfer.getTransferId() + " finalized!\n");
+        Long senderId = sender.getClientId();
+        afterCommit.add(() -> {
+            cashFlowForecastService.invalidate(senderId);
+            cashFlowForecastService.invalidate(receiverId);
+        });
+        return ExecutionOutcome.REALISED;
+    }
+
+    private void sendQuietly(String email, String message) {
+        try {
+            emailService.send(email, message, "Your cyclical transfer couldn't be realised!");
+        } catch (RuntimeException e) {
+            logger.error("Failed to notify " + email + " about insufficient balance: " + e.getMessage());
+        }
+    }
+
+    private CyclicalTransferRun finishRun(CyclicalTransferRun run, int pending, Duration elapsed) {
+        LocalDate runDate = run.getRunDate();
+        int realised = executionRepository.countByRunDateAndOutcome(runDate, ExecutionOutcome.REALISED);
+        int insufficient = executionRepository.countByRunDateAndOutcome(runDate, ExecutionOutcome.INSUFFICIENT_BALANCE);
+        int missing = executionRepository.countByRunDateAndOutcome(runDate, ExecutionOutcome.SENDER_MISSING);
+        int failed = executionRepository.countFailedStillDue(runDate, dueBy(runDate));
+
+        // Orders found no longer due once locked have no record and aren't counted
+        run.setDueTransfers(realised + insufficient + missing + failed);
+        run.setRealised(realised);
+        run.setInsufficientBalance(insufficient);
+        run.setSenderMissing(missing);
+        run.setFailed(failed);
+        run.setProcessedTransfers(orZero(run.getProcessedTransfers()) + pending);
+        run.setProcessingMillis((run.getProcessingMillis() == null ? 0 : run.getProcessingMillis()) + elapsed.toMillis());
+        run.setTransfersPerSecond(run.getProcessingMillis() == 0 ? 0f : run.getProcessedTransfers() * 1000f / run.getProcessingMillis());
+        run.setFinishedAt(LocalDateTime.now());
+        // A run with rolled back orders stays open until they are retried
+        run.setStatus(run.getFailed() == 0 ? BatchRunStatus.FINISHED : BatchRunStatus.RUNNING);
+
+        logger.info("Cyclical transfer run " + runDate + ": " + realised + " realised, " + insufficient
+                + " insufficient balance, " + missing + " sender missing, " + run.getFailed() + " rolled back, "
+                + run.getTransfersPerSecond() + " transfers/s");
+        return runRepository.save(run);
+    }
+
+    private static int orZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,86 @@
+package com.OBS.service;
+
+import com.OBS.alternativeBodies.KeyValueObject;
+import com.OBS.entity.CyclicalTransfer;
+import com.OBS.support.TimingWheel;
+import com.OBS.repository.CyclicalTransferRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Fires cyclical transfers at their own due time instead of scanning the whole table at midnight
+@Service
+public class CyclicalTransferScheduler {
+    private static final long TICK_MILLIS = 60 * 1000;
+    // Rolled back orders have no checkpoint in today's run and are looked at again after this
+    private static final Duration RETRY_DELAY = Duration.ofHours(1);
+    private static final Logger logger = LoggerFactory.getLogger(CyclicalTransferScheduler.class);
+
+    private final CyclicalTransferRepository cyclicalTransferRepository;
+    private final CyclicalTransferBatchService cyclicalTransferBatchService;
+    private final TimingWheel<Long> wheel;
+
+    public CyclicalTransferScheduler(CyclicalTransferRepository cyclicalTransferRepository,
+                                     CyclicalTransferBatchService cyclicalTransferBatchService) {
+        this.cyclicalTransferRepository = cyclicalTransferRepository;
+        this.cyclicalTransferBatchService = cyclicalTransferBatchService;
+        this.wheel = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+    }
+
+    // Orders that became due while the application was down fire on the first tick
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSchedule() {
+        List<KeyValueObject<Long, LocalDateTime>> schedule = cyclicalTransferRepository.findSchedule();
+        for (KeyValueObject<Long, LocalDateTime> entry : schedule)
+            schedule(entry.getKey(), entry.getValue());
+        logger.info("Scheduled " + schedule.size() + " cyclical transfers");
+    }
+
+    public void schedule(CyclicalTransfer cyclicalTransfer) {
+        schedule(cyclicalTransfer.getTransferId(), cyclicalTransfer.getReTransferDate());
+    }
+
+    public void unschedule(Long transferId) {
+        wheel.remove(transferId);
+    }
+
+    @Scheduled(fixedDelay = TICK_MILLIS)
+    public void tick() {
+        List<Long> due = wheel.advance(System.currentTimeMillis());
+        if (due.isEmpty())
+            return;
+
+        try {
+            cyclicalTransferBatchService.realiseTransfers(due);
+        } finally {
+            // Realised orders come back with next month's date, deleted ones are not rescheduled. Orders checkpointed
+            // today without moving forward (insufficient balance) are only picked up again by tomorrow's run
+            LocalDateTime now = LocalDateTime.now();
+            Set<Long> rolledBack = new HashSet<>(cyclicalTransferRepository.findPendingIds(due, now, now.toLocalDate()));
+            LocalDateTime retryAt = now.plus(RETRY_DELAY);
+            LocalDateTime nextRunAt = now.toLocalDate().plusDays(1).atStartOfDay();
+            for (KeyValueObject<Long, LocalDateTime> entry : cyclicalTransferRepository.findSchedule(due)) {
+                LocalDateTime dueAt = entry.getValue();
+                if (dueAt != null && dueAt.isAfter(now))
+                    schedule(entry.getKey(), dueAt);
+                else schedule(entry.getKey(), rolledBack.contains(entry.getKey()) ? retryAt : nextRunAt);
+            }
+        }
+    }
+
+    private void schedule(Long transferId, LocalDateTime dueAt) {
+        if (transferId == null || dueAt == null)
+            return;
+        wheel.schedule(transferId, dueAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+}
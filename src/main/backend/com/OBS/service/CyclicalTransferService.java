@@ -1,51 +1,115 @@
 package com.OBS.service;
 
+import com.OBS.alternativeBodies.CashFlowForecast;
+import com.OBS.alternativeBodies.CyclicalTransferListItem;
 import com.OBS.alternativeBodies.KeyValueObject;
+import com.OBS.alternativeBodies.TransferSummary;
 import com.OBS.alternativeBodies.ValueAndPercent;
-import com.OBS.email.EmailService;
-import com.OBS.email.EmailTemplates;
-import com.OBS.entity.Client;
 import com.OBS.entity.CyclicalTransfer;
-import com.OBS.entity.Transfer;
-import com.OBS.enums.SearchOperation;
 import com.OBS.enums.TransferCategory;
 import com.OBS.repository.CyclicalTransferRepository;
+import com.OBS.searchers.specificators.Projection;
+import com.OBS.searchers.specificators.SpecificationQueries;
 
 
-import com.OBS.searchers.SearchCriteria;
-import com.OBS.searchers.specificators.Specifications;
 import lombok.AllArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
-import static com.OBS.enums.TransferType.*;
+import java.util.Set;
+import static com.OBS.enums.TransferType.OUTGOING;
 
 @Service
 @AllArgsConstructor
 public class CyclicalTransferService {
     private final CyclicalTransferRepository cyclicalTransferRepository;
-    private final EmailService emailService;
-    private final TransferService transferService;
     private final ClientService clientService;
-    private final EmailTemplates emailTemplates;
+    private final TransferAggregationService transferAggregationService;
+    private final CyclicalTransferScheduler cyclicalTransferScheduler;
+    private final CashFlowForecastService cashFlowForecastService;
+    private final SpecificationQueries specificationQueries;
+
+    private static final Projection<CyclicalTransfer, CyclicalTransferListItem> LIST_ITEM = Projection.of(CyclicalTransfer.class, CyclicalTransferListItem.class)
+            .column("transferId")
+            .column("amount")
+            .column("reTransferDate")
+            .column("category")
+            .column("receiver")
+            .column("accountNumber")
+            .column("title")
+            .column("clientId", "client.clientId");
+
+    private static final String DUPLICATED_TRANSFER = "This exact cyclical transfer is already declared";
 
     private String TransferNotExists(Long transferId) { return "Cyclical Transfer with given id "+ transferId + " is not present in database" ;}
 
+    // Brings every stored fingerprint to the current format. Of orders with the same content the one already holding
+    // the fingerprint, otherwise the oldest, keeps it, the others are reported and get a fingerprint of their own
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillFingerprints() {
+        Logger logger = LoggerFactory.getLogger(CyclicalTransferService.class);
+        List<CyclicalTransfer> transfers = cyclicalTransferRepository.findAll(Sort.by(Sort.Direction.ASC, "transferId"));
+        Set<String> claimed = new HashSet<>();
+        for (CyclicalTransfer transfer : transfers)
+            if (CyclicalTransfer.fingerprintOf(transfer).equals(transfer.getFingerprint()))
+                claimed.add(clientKey(transfer) + transfer.getFingerprint());
+
+        for (CyclicalTransfer transfer : transfers) {
+            // Orders declared before the column existed, their current date is the best guess left
+            boolean undeclared = transfer.getDeclaredDay() == null && transfer.getReTransferDate() != null;
+            if (undeclared)
+                transfer.setDeclaredDay(CyclicalTransfer.declaredDayOf(transfer));
+            String fingerprint = CyclicalTransfer.fingerprintOf(transfer);
+            if (fingerprint.equals(transfer.getFingerprint())) {
+                if (undeclared)
+                    cyclicalTransferRepository.save(transfer);
+                continue;
+            }
+            if (!claimed.add(clientKey(transfer) + fingerprint)) {
+                fingerprint = CyclicalTransfer.duplicateFingerprintOf(transfer);
+                if (!fingerprint.equals(transfer.getFingerprint()))
+                    logger.warn("Cyclical transfer id:" + transfer.getTransferId() + " duplicates another order of the same client, both are kept and realised");
+            }
+            if (undeclared || !fingerprint.equals(transfer.getFingerprint())) {
+                transfer.setFingerprint(fingerprint);
+                cyclicalTransferRepository.save(transfer);
+            }
+        }
+    }
+
+    // Standing orders saved before the column existed
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillAccountNumberDigits() {
+        cyclicalTransferRepository.backfillAccountNumberDigits();
+    }
+
+    private static String clientKey(CyclicalTransfer transfer) {
+        return transfer.getClient() == null ? "-" : transfer.getClient().getClientId() + ":";
+    }
+
     public List<CyclicalTransfer> getTransfers() {
         return cyclicalTransferRepository.findAll();
     }
 
+    public List<CyclicalTransferListItem> getTransferItems() {
+        return specificationQueries.findAll(LIST_ITEM, null, Sort.by(Sort.Direction.ASC, "reTransferDate"));
+    }
+
     public List<CyclicalTransfer> getComingTransfers(Long clientId) {
         return cyclicalTransferRepository.findComingByClient_clientIdOrderByReTransferDateAsc(
                 clientId, PageRequest.of(0, 3)
@@ -67,129 +131,87 @@ public class CyclicalTransferService {
     }
 
     public void addTransfer(CyclicalTransfer cyclicalTransfer) {
-        checkForDuplicatedTransfers(cyclicalTransfer);
+        checkForDuplicatedTransfers(cyclicalTransfer, null);
 
-        cyclicalTransferRepository.save(cyclicalTransfer);
+        cyclicalTransferScheduler.schedule(saveUnique(cyclicalTransfer));
+        cashFlowForecastService.invalidate(cyclicalTransfer.getClient().getClientId());
+        cashFlowForecastService.invalidateAccount(cyclicalTransfer.getAccountNumber());
     }
 
-    private void checkForDuplicatedTransfers(CyclicalTransfer cyclicalTransfer) {
-        List<CyclicalTransfer> clientsTransfers = getClientTransfers(cyclicalTransfer.getClient().getClientId());
+    // Single probe of the (client_id, fingerprint) index, the unique constraint catches concurrent inserts
+    private void checkForDuplicatedTransfers(CyclicalTransfer cyclicalTransfer, Long transferId) {
+        Long clientId = cyclicalTransfer.getClient().getClientId();
+        String fingerprint = CyclicalTransfer.fingerprintOf(cyclicalTransfer);
+        boolean duplicated = transferId == null
+                ? cyclicalTransferRepository.existsByClient_clientIdAndFingerprint(clientId, fingerprint)
+                : cyclicalTransferRepository.existsByClient_clientIdAndFingerprintAndTransferIdNot(clientId, fingerprint, transferId);
+        if (duplicated)
+            throw new IllegalStateException(DUPLICATED_TRANSFER);
+    }
 
-        for(CyclicalTransfer transfer : clientsTransfers){
-            if(
-                    Objects.equals(transfer.getAmount(), cyclicalTransfer.getAmount())
-                    && Objects.equals(transfer.getReceiver(), cyclicalTransfer.getReceiver())
-                    && Objects.equals(transfer.getReTransferDate(), cyclicalTransfer.getReTransferDate())
-                    && Objects.equals(transfer.getCategory(), cyclicalTransfer.getCategory())
-                    && Objects.equals(transfer.getAccountNumber(), cyclicalTransfer.getAccountNumber())
-                    && Objects.equals(transfer.getTitle(), cyclicalTransfer.getTitle())
-            )
-                throw new IllegalStateException("This exact cyclical transfer is already declared");
+    private CyclicalTransfer saveUnique(CyclicalTransfer cyclicalTransfer) {
+        cyclicalTransfer.setDeclaredDay(cyclicalTransfer.getReTransferDate() == null
+                ? null : cyclicalTransfer.getReTransferDate().getDayOfMonth());
+        cyclicalTransfer.setFingerprint(CyclicalTransfer.fingerprintOf(cyclicalTransfer));
+        try {
+            return cyclicalTransferRepository.saveAndFlush(cyclicalTransfer);
+        } catch (DataIntegrityViolationException e) {
+            if (violatesFingerprint(e))
+                throw new IllegalStateException(DUPLICATED_TRANSFER);
+            throw e;
         }
     }
 
+    // Only the (client_id, fingerprint) constraint means a duplicated order, other violations are real errors
+    private static boolean violatesFingerprint(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause())
+            if (cause instanceof ConstraintViolationException)
+                return CyclicalTransfer.FINGERPRINT_CONSTRAINT.equalsIgnoreCase(((ConstraintViolationException) cause).getConstraintName());
+        return false;
+    }
+
     @Transactional
     public void updateTransfer(CyclicalTransfer cyclicalTransfer, Long transferId) {
-        if(!cyclicalTransferRepository.existsById(transferId))
-            throw new IllegalStateException(TransferNotExists(transferId));
+        String oldAccountNumber = getTransfer(transferId).getAccountNumber();
 
-        checkForDuplicatedTransfers(cyclicalTransfer);
+        checkForDuplicatedTransfers(cyclicalTransfer, transferId);
 
         // TODO check if this works and change if it's not
         cyclicalTransfer.setTransferId(transferId);
 
-        cyclicalTransferRepository.save(cyclicalTransfer);
+        cyclicalTransferScheduler.schedule(saveUnique(cyclicalTransfer));
+        cashFlowForecastService.invalidate(cyclicalTransfer.getClient().getClientId());
+        cashFlowForecastService.invalidateAccount(oldAccountNumber);
+        cashFlowForecastService.invalidateAccount(cyclicalTransfer.getAccountNumber());
     }
 
     public void deleteTransfer(Long transferId) {
-        if(!cyclicalTransferRepository.existsById(transferId))
-            throw new IllegalStateException(TransferNotExists(transferId));
-        cyclicalTransferRepository.deleteById(transferId);
+        CyclicalTransfer cyclicalTransfer = getTransfer(transferId);
+        cyclicalTransferRepository.delete(cyclicalTransfer);
+        cyclicalTransferScheduler.unschedule(transferId);
+        if (cyclicalTransfer.getClient() != null)
+            cashFlowForecastService.invalidate(cyclicalTransfer.getClient().getClientId());
+        cashFlowForecastService.invalidateAccount(cyclicalTransfer.getAccountNumber());
     }
 
-    //Automated method that runs every day at midnight
-    @Transactional
-    @Scheduled(cron = "0 0 0 * * * ")
-    protected void realiseTransfers(){
-        Logger logger = LoggerFactory.getLogger(CyclicalTransferService.class);
-        LocalDateTime today = LocalDateTime.now().plusDays(1);
-        Specifications<CyclicalTransfer> findAllByReTransferDateToday = new Specifications<CyclicalTransfer>()
-                .add(new SearchCriteria("reTransferDate", today, SearchOperation.LESS_THAN_EQUAL_DATE));
-
-        List<CyclicalTransfer> cyclicalTransfersList = cyclicalTransferRepository.findAll(findAllByReTransferDateToday);
-
-        if(!cyclicalTransfersList.isEmpty()){
-            for(CyclicalTransfer transfer : cyclicalTransfersList){
-
-                Client sender = clientService.getClientOrNull(transfer.getClient().getClientId());
-                Client receiver = clientService.getClientByAccountNumber(transfer.getAccountNumber());
-
-                if(sender == null){
-                    logger.error("Cannot realise transfer, client doesn't exist anymore, deleting cyclical transfer!!\n");
-                    deleteTransfer(transfer.getTransferId());
-                    continue;
-                }
-
-                if(sender.getBalance() < transfer.getAmount()){
-                    logger.warn("Cannot realise transfer, insufficient balance!!\n");
-                    emailService.send(
-                            sender.getEmail(),
-                            emailTemplates.emailTemplateInsufficientBalanceForTransfer(sender,transfer.getTransferId()),
-                            "Your cyclical transfer couldn't be realised!"
-                    );
-                    continue;
-                }
-
-                clientService.updateClientBalance(sender,transfer.getAmount(),OUTGOING.name());
-                Transfer senderTransfer = new Transfer(
-                        transfer.getAmount(),
-                        LocalDateTime.now(),
-                        transfer.getCategory(),
-                        OUTGOING.name(),
-                        transfer.getReceiver(),
-                        transfer.getTitle(),
-                        transfer.getAccountNumber()
-                );
-                transferService.addTransfer(senderTransfer);
-
-                if(!(receiver == null)){
-                    clientService.updateClientBalance(receiver,transfer.getAmount(),INCOMING.name());
-                    Transfer receiverTransfer = new Transfer(
-                            transfer.getAmount(),
-                            LocalDateTime.now(),
-                            transfer.getCategory(),
-                            INCOMING.name(),
-                            sender.getFullName(),
-                            transfer.getTitle(),
-                            transfer.getAccountNumber()
-                    );
-                    transferService.addTransfer(receiverTransfer);
-                }
-                transfer.setReTransferDate(transfer.getReTransferDate().plusMonths(1));
-                logger.debug("Transfer id:" + transfer.getTransferId() + " finalized!\n");
-                cyclicalTransferRepository.save(transfer);
-            }
-        }
-        else logger.debug("No transfer will be realised today!\n");
+    public CashFlowForecast getClientForecast(Long clientId, int months) {
+        return cashFlowForecastService.getForecast(clientId, months);
     }
 
-
     public List<KeyValueObject<String, ValueAndPercent>> getClientEstimated(Long client_id) {
         ArrayList<KeyValueObject<String, ValueAndPercent>> clientEstimation= new ArrayList<>();
 
-        Specifications<CyclicalTransfer> findAllByClientAndForNextMonth = new Specifications<CyclicalTransfer>()
-                .add(new SearchCriteria("client",clientService.getClient(client_id), SearchOperation.EQUAL))
-                .add(new SearchCriteria("reTransferDate", LocalDateTime.now().plusMonths(1), SearchOperation.LESS_THAN_EQUAL_DATE));
+        TransferSummary summary = transferAggregationService.summarizeCyclicalTransfers(
+                clientService.getClient(client_id).getClientId(),
+                LocalDateTime.now().plusMonths(1)
+        );
 
-        float sumOfOutgoing = getTotalAmount(cyclicalTransferRepository.findAll(findAllByClientAndForNextMonth));
+        float sumOfOutgoing = summary.getSum(OUTGOING.name());
 
         clientEstimation.add(new KeyValueObject<>("Suma Wydatków",new ValueAndPercent(sumOfOutgoing,100f)));
 
         for (TransferCategory category : TransferCategory.values()) {
-            Specifications<CyclicalTransfer> findAllByCategory = findAllByClientAndForNextMonth.clone()
-                    .add(new SearchCriteria("category", category.getCategory(), SearchOperation.EQUAL));
-
-            float sumFromCategory = getTotalAmount(cyclicalTransferRepository.findAll(findAllByCategory));
+            float sumFromCategory = summary.getSum(OUTGOING.name(), category.getCategory());
 
             clientEstimation.add(new KeyValueObject<>(
                     category.getCategory(),
@@ -203,15 +225,7 @@ public class CyclicalTransferService {
         return clientEstimation;
     }
 
-    private float getTotalAmount(List<CyclicalTransfer> transfers){
-        float sum = 0f;
-        for(CyclicalTransfer transfer : transfers)
-            sum += transfer.getAmount();
-
-        return sum;
-    }
-
-    public List<CyclicalTransfer> getTransfersBySpecification(Specifications<CyclicalTransfer> transferSpecifications) {
+    public List<CyclicalTransfer> getTransfersBySpecification(Specification<CyclicalTransfer> transferSpecifications) {
         return cyclicalTransferRepository.findAll(transferSpecifications);
     }
 }
@@ -0,0 +1,119 @@
+package com.OBS.service;
+
+import com.OBS.entity.IdempotencyKey;
+import com.OBS.enums.IdempotencyStatus;
+import com.OBS.repository.IdempotencyKeyRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.OBS.enums.IdempotencyStatus.*;
+
+@Service
+public class IdempotencyService {
+    private static final int MAX_CACHED_KEYS = 10_000;
+    private static final int MAX_KEY_LENGTH = 200;
+    private static final long KEY_TTL_HOURS = 24;
+    private static final long ABANDONED_AFTER_MINUTES = 5;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, Outcome> finishedKeys;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.finishedKeys = Collections.synchronizedMap(new LinkedHashMap<String, Outcome>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Outcome> eldest) {
+                return size() > MAX_CACHED_KEYS;
+            }
+        });
+    }
+
+    // Runs the action at most once per key, repeats get the original outcome replayed
+    public void execute(String key, Runnable action) {
+        if (key.length() > MAX_KEY_LENGTH)
+            throw new IllegalStateException("Idempotency-Key can't be longer than " + MAX_KEY_LENGTH + " characters");
+
+        Outcome cached = finishedKeys.get(key);
+        if (cached != null && cached.getExpiresAt().isAfter(LocalDateTime.now())) {
+            cached.replay();
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusHours(KEY_TTL_HOURS);
+        Integer claimed = transactionTemplate.execute(status -> idempotencyKeyRepository.claim(key, now, expiresAt));
+
+        if (claimed == null || claimed == 0) {
+            IdempotencyKey existing = idempotencyKeyRepository.findById(key).orElseThrow(
+                    () -> new IllegalStateException("Request with this Idempotency-Key is already being processed")
+            );
+            if (existing.getStatus() == IN_PROGRESS)
+                throw new IllegalStateException("Request with this Idempotency-Key is already being processed");
+
+            Outcome outcome = new Outcome(existing.getStatus(), existing.getOutcome(), existing.getExpiresAt());
+            finishedKeys.put(key, outcome);
+            outcome.replay();
+            return;
+        }
+
+        try {
+            // Completion is written in the same transaction as the action, a crash can't leave it half done
+            transactionTemplate.execute(status -> {
+                action.run();
+                idempotencyKeyRepository.finish(key, COMPLETED, null);
+                return null;
+            });
+            finishedKeys.put(key, new Outcome(COMPLETED, null, expiresAt));
+        } catch (IllegalStateException e) {
+            transactionTemplate.execute(status -> idempotencyKeyRepository.finish(key, FAILED, e.getMessage()));
+            finishedKeys.put(key, new Outcome(FAILED, e.getMessage(), expiresAt));
+            throw e;
+        } catch (RuntimeException e) {
+            // Unexpected errors are not remembered so the client can retry with the same key
+            transactionTemplate.execute(status -> {
+                idempotencyKeyRepository.deleteById(key);
+                return null;
+            });
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelay = 10 * 60 * 1000)
+    public void removeExpiredKeys() {
+        Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+        LocalDateTime now = LocalDateTime.now();
+        Integer removed = transactionTemplate.execute(status ->
+                idempotencyKeyRepository.deleteExpired(now, now.minusMinutes(ABANDONED_AFTER_MINUTES)));
+        synchronized (finishedKeys) {
+            finishedKeys.values().removeIf(outcome -> !outcome.getExpiresAt().isAfter(now));
+        }
+        logger.debug("Removed " + removed + " expired idempotency keys");
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Outcome {
+        private final IdempotencyStatus status;
+        private final String message;
+        private final LocalDateTime expiresAt;
+
+        void replay() {
+            if (status == FAILED)
+                throw new IllegalStateException(message);
+        }
+    }
+}
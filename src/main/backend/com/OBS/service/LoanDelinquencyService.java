@@ -0,0 +1,144 @@
+package com.OBS.service;
+
+import com.OBS.alternativeBodies.DelinquencyReport;
+import com.OBS.alternativeBodies.DelinquentLoan;
+import com.OBS.entity.Client;
+import com.OBS.entity.Loan;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@AllArgsConstructor
+public class LoanDelinquencyService {
+    private static final int CHUNK_SIZE = 1000;
+
+    // Active loans past their pay day without a rate paid in the month before it, one anti-join per chunk.
+    // Loans whose last overdue period was already charged are left out
+    private static final String FIND_DELINQUENT =
+            "select l.loan_id, l.client_id, l.next_rate_pay_day, l.estimated_end_date, l.rate_amount, " +
+            "l.basic_rate_amount, l.basic_loan_amount, l.interest_amount, l.penalty_amount, l.to_repaid_off, " +
+            "l.rates_left_to_pay, l.num_of_rates, l.penalised_through " +
+            "from loans l " +
+            "where l.is_active = true and l.next_rate_pay_day <= ? and l.loan_id > ? " +
+            "and (l.penalised_through is null or l.penalised_through < l.next_rate_pay_day " +
+            "or l.penalised_through + interval '1 month' <= ?) " +
+            "and not exists (select 1 from loan_rates r where r.loan_id = l.loan_id " +
+            "and r.pay_date between l.next_rate_pay_day - interval '1 month' and l.next_rate_pay_day) " +
+            "order by l.loan_id limit ?";
+
+    // Rows are locked while they are recalculated, a payment realised meanwhile waits instead of being overwritten
+    private static final String LOCK_DELINQUENT = FIND_DELINQUENT + " for update of l";
+
+    private static final String UPDATE_LOAN =
+            "update loans set penalty_amount = ?, interest_amount = ?, to_repaid_off = ?, rate_amount = ?, " +
+            "rates_left_to_pay = ?, num_of_rates = ?, estimated_end_date = ?, penalised_through = ? where loan_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final CashFlowForecastService cashFlowForecastService;
+    private final LoanPortfolioService loanPortfolioService;
+
+    public DelinquencyReport applyPenalties(LocalDate today, boolean dryRun) {
+        Logger logger = LoggerFactory.getLogger(LoanDelinquencyService.class);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        DelinquencyReport report = new DelinquencyReport(today, dryRun);
+
+        long lastLoanId = 0;
+        List<Loan> chunk;
+        do {
+            long fromLoanId = lastLoanId;
+            chunk = dryRun
+                    ? penaliseChunk(FIND_DELINQUENT, today, fromLoanId, report, false)
+                    : transactionTemplate.execute(status -> penaliseChunk(LOCK_DELINQUENT, today, fromLoanId, report, true));
+            if (chunk == null || chunk.isEmpty())
+                break;
+            lastLoanId = chunk.get(chunk.size() - 1).getLoanId();
+
+            if (!dryRun) {
+                for (Loan loan : chunk) {
+                    cashFlowForecastService.invalidate(loan.getClient().getClientId());
+                    loanPortfolioService.onLoanChanged(loan);
+                }
+            }
+        } while (chunk.size() == CHUNK_SIZE);
+
+        if (report.getAffectedLoans() == 0)
+            logger.debug("Every client payed his rate in time!");
+        else logger.info((dryRun ? "Dry run: " : "") + report.getAffectedLoans() + " delinquent loans, penalties "
+                + report.getTotalNewPenalty() + ", interest " + report.getTotalNewInterest());
+        return report;
+    }
+
+    private List<Loan> penaliseChunk(String query, LocalDate today, long lastLoanId, DelinquencyReport report, boolean write) {
+        List<Loan> chunk = jdbcTemplate.query(query, (rs, rowNum) -> mapLoan(rs),
+                Date.valueOf(today), lastLoanId, Date.valueOf(today), CHUNK_SIZE);
+
+        List<Object[]> updates = new ArrayList<>(chunk.size());
+        for (Loan loan : chunk) {
+            float penaltyBefore = loan.getPenaltyAmount();
+            float interestBefore = loan.getInterestAmount();
+            if (loan.penalise(today) == 0)
+                continue;
+
+            report.add(new DelinquentLoan(
+                    loan.getLoanId(),
+                    loan.getClient().getClientId(),
+                    loan.overdueMonths(today),
+                    loan.getPenaltyAmount() - penaltyBefore,
+                    loan.getInterestAmount() - interestBefore,
+                    loan.getToRepaidOff(),
+                    loan.getRatesLeftToPay()
+            ));
+            updates.add(new Object[]{
+                    loan.getPenaltyAmount(),
+                    loan.getInterestAmount(),
+                    loan.getToRepaidOff(),
+                    loan.getRateAmount(),
+                    loan.getRatesLeftToPay(),
+                    loan.getNumOfRates(),
+                    loan.getEstimatedEndDate() == null ? null : Date.valueOf(loan.getEstimatedEndDate()),
+                    Date.valueOf(loan.getPenalisedThrough()),
+                    loan.getLoanId()
+            });
+        }
+
+        if (write && !updates.isEmpty())
+            jdbcTemplate.batchUpdate(UPDATE_LOAN, updates);
+        return chunk;
+    }
+
+    private Loan mapLoan(ResultSet rs) throws SQLException {
+        Loan loan = new Loan();
+        loan.setLoanId(rs.getLong("loan_id"));
+        loan.setIsActive(true);
+        Client client = new Client();
+        client.setClientId(rs.getLong("client_id"));
+        loan.setClient(client);
+        loan.setNextRatePayDay(rs.getDate("next_rate_pay_day").toLocalDate());
+        Date estimatedEndDate = rs.getDate("estimated_end_date");
+        loan.setEstimatedEndDate(estimatedEndDate == null ? null : estimatedEndDate.toLocalDate());
+        loan.setRateAmount(rs.getFloat("rate_amount"));
+        loan.setBasicRateAmount(rs.getFloat("basic_rate_amount"));
+        loan.setBasicLoanAmount(rs.getFloat("basic_loan_amount"));
+        loan.setInterestAmount(rs.getFloat("interest_amount"));
+        loan.setPenaltyAmount(rs.getFloat("penalty_amount"));
+        loan.setToRepaidOff(rs.getFloat("to_repaid_off"));
+        loan.setRatesLeftToPay(rs.getInt("rates_left_to_pay"));
+        loan.setNumOfRates(rs.getInt("num_of_rates"));
+        Date penalisedThrough = rs.getDate("penalised_through");
+        loan.setPenalisedThrough(penalisedThrough == null ? null : penalisedThrough.toLocalDate());
+        return loan;
+    }
+}
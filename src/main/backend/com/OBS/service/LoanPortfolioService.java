@@ -0,0 +1,173 @@
+package com.OBS.service;
+
+import com.OBS.alternativeBodies.KeyValueObject;
+import com.OBS.alternativeBodies.LoanExposure;
+import com.OBS.alternativeBodies.LoanPortfolioSnapshot;
+import com.OBS.entity.Loan;
+import com.OBS.repository.LoanRepository;
+import com.OBS.support.AfterCommit;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Portfolio aggregates kept in memory and updated by the difference of every changed loan,
+// reloaded and re-aged once a day by refresh
+@Service
+public class LoanPortfolioService {
+    public static final int MAX_MONTHS = 24;
+    private static final String[] BUCKETS = {"current", "0-29", "30-59", "60-89", "90+"};
+
+    private final LoanRepository loanRepository;
+    private final Map<Long, LoanExposure> exposures = new HashMap<>();
+
+    private LocalDate today = LocalDate.now();
+    private int activeLoans;
+    private double totalExposure;
+    private double outstanding;
+    private double penalties;
+    private final int[] bucketLoans = new int[BUCKETS.length];
+    private final double[] bucketOutstanding = new double[BUCKETS.length];
+    private final double[] inflows = new double[MAX_MONTHS];
+    private volatile LoanPortfolioSnapshot snapshot;
+
+    public LoanPortfolioService(LoanRepository loanRepository) {
+        this.loanRepository = loanRepository;
+        publish();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        refresh(LocalDate.now());
+    }
+
+    // Reloads every exposure, a change whose notification was lost (other instance, failed apply) is caught up here
+    public synchronized void refresh(LocalDate day) {
+        exposures.clear();
+        for (LoanExposure exposure : loanRepository.findAllExposures())
+            exposures.put(exposure.getLoanId(), exposure);
+        rebuild(day);
+    }
+
+    // Applied once the surrounding transaction commits, so rolled back changes never reach the aggregates
+    public void onLoanChanged(Loan loan) {
+        LoanExposure exposure = LoanExposure.of(loan);
+        AfterCommit.run(() -> apply(exposure.getLoanId(), exposure));
+    }
+
+    public void onLoanDeleted(Long loanId) {
+        AfterCommit.run(() -> apply(loanId, null));
+    }
+
+    public LoanPortfolioSnapshot getSnapshot(int months) {
+        if (months < 1 || months > MAX_MONTHS)
+            throw new IllegalStateException("Inflows can be shown for 1 to " + MAX_MONTHS + " months");
+        LoanPortfolioSnapshot current = snapshot;
+        return new LoanPortfolioSnapshot(
+                current.getAsOf(),
+                current.getActiveLoans(),
+                current.getTotalExposure(),
+                current.getOutstanding(),
+                current.getPenalties(),
+                current.getDelinquentLoans(),
+                current.getDelinquentOutstanding(),
+                current.getExpectedInflows().subList(0, months)
+        );
+    }
+
+    private synchronized void apply(Long loanId, LoanExposure exposure) {
+        LoanExposure previous = exposure == null ? exposures.remove(loanId) : exposures.put(loanId, exposure);
+        add(previous, -1);
+        add(exposure, 1);
+        publish();
+    }
+
+    private void rebuild(LocalDate day) {
+        today = day;
+        activeLoans = 0;
+        totalExposure = 0;
+        outstanding = 0;
+        penalties = 0;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            bucketLoans[i] = 0;
+            bucketOutstanding[i] = 0;
+        }
+        for (int i = 0; i < MAX_MONTHS; i++)
+            inflows[i] = 0;
+
+        for (LoanExposure exposure : exposures.values())
+            add(exposure, 1);
+        publish();
+    }
+
+    private void add(LoanExposure exposure, int sign) {
+        if (exposure == null || !Boolean.TRUE.equals(exposure.getIsActive()))
+            return;
+
+        double loanOutstanding = orZero(exposure.getToRepaidOff());
+        activeLoans += sign;
+        totalExposure += sign * orZero(exposure.getBasicLoanAmount());
+        outstanding += sign * loanOutstanding;
+        penalties += sign * orZero(exposure.getPenaltyAmount());
+
+        LocalDate payDay = exposure.getNextRatePayDay();
+        if (payDay == null)
+            return;
+
+        int bucket = bucketOf(ChronoUnit.DAYS.between(payDay, today));
+        bucketLoans[bucket] += sign;
+        bucketOutstanding[bucket] += sign * loanOutstanding;
+
+        YearMonth firstMonth = YearMonth.from(today);
+        int ratesLeft = exposure.getRatesLeftToPay() == null ? 0 : exposure.getRatesLeftToPay();
+        for (int rate = 0; rate < ratesLeft; rate++) {
+            long month = Math.max(0, firstMonth.until(YearMonth.from(payDay.plusMonths(rate)), ChronoUnit.MONTHS));
+            if (month >= MAX_MONTHS)
+                break;
+            inflows[(int) month] += sign * orZero(exposure.getRateAmount());
+        }
+    }
+
+    private static int bucketOf(long daysPastDue) {
+        if (daysPastDue <= 0)
+            return 0;
+        return (int) Math.min(daysPastDue / 30, 3) + 1;
+    }
+
+    private static double orZero(Float value) {
+        return value == null ? 0 : value;
+    }
+
+    private void publish() {
+        List<KeyValueObject<String, Integer>> delinquentLoans = new ArrayList<>(BUCKETS.length);
+        List<KeyValueObject<String, Double>> delinquentOutstanding = new ArrayList<>(BUCKETS.length);
+        for (int i = 0; i < BUCKETS.length; i++) {
+            delinquentLoans.add(new KeyValueObject<>(BUCKETS[i], bucketLoans[i]));
+            delinquentOutstanding.add(new KeyValueObject<>(BUCKETS[i], bucketOutstanding[i]));
+        }
+
+        List<KeyValueObject<String, Double>> expectedInflows = new ArrayList<>(MAX_MONTHS);
+        YearMonth firstMonth = YearMonth.from(today);
+        for (int i = 0; i < MAX_MONTHS; i++)
+            expectedInflows.add(new KeyValueObject<>(firstMonth.plusMonths(i).toString(), inflows[i]));
+
+        snapshot = new LoanPortfolioSnapshot(
+                LocalDateTime.now(),
+                activeLoans,
+                totalExposure,
+                outstanding,
+                penalties,
+                delinquentLoans,
+                delinquentOutstanding,
+                expectedInflows
+        );
+    }
+}
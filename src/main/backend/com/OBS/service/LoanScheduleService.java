@@ -0,0 +1,46 @@
+package com.OBS.service;
+
+import com.OBS.entity.Loan;
+import com.OBS.entity.LoanInstallment;
+import com.OBS.repository.LoanInstallmentRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@AllArgsConstructor
+public class LoanScheduleService {
+    private final LoanInstallmentRepository loanInstallmentRepository;
+
+    // Computed once when the loan is granted, later reads only look installments up
+    @Transactional
+    public List<LoanInstallment> generate(Loan loan) {
+        loanInstallmentRepository.deleteAllByLoanId(loan.getLoanId());
+        return loanInstallmentRepository.saveAll(loan.buildSchedule());
+    }
+
+    public List<LoanInstallment> getSchedule(Long loanId) {
+        return loanInstallmentRepository.findAllByLoan_loanIdOrderByInstallmentNumberAsc(loanId);
+    }
+
+    // Empty for loans granted before schedules existed and for rates added by penalties
+    public Optional<LoanInstallment> getNextInstallment(Loan loan) {
+        int paidRates = loan.getNumOfRates() - loan.getRatesLeftToPay();
+        return loanInstallmentRepository.findByLoan_loanIdAndInstallmentNumber(loan.getLoanId(), paidRates + 1);
+    }
+
+    @Transactional
+    public void markPaid(LoanInstallment installment) {
+        installment.setPaidDate(LocalDate.now());
+        loanInstallmentRepository.save(installment);
+    }
+
+    @Transactional
+    public void deleteSchedule(Long loanId) {
+        loanInstallmentRepository.deleteAllByLoanId(loanId);
+    }
+}
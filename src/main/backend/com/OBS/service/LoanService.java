@@ -1,18 +1,26 @@
 package com.OBS.service;
 
+import com.OBS.alternativeBodies.DelinquencyReport;
 import com.OBS.alternativeBodies.LoanBody;
-import com.OBS.entity.Client;
+import com.OBS.alternativeBodies.LoanListItem;
+import com.OBS.alternativeBodies.LoanPortfolioSnapshot;
+import com.OBS.alternativeBodies.LoanSimulationBody;
+import com.OBS.alternativeBodies.LoanSimulationResult;
 import com.OBS.entity.Loan;
+import com.OBS.entity.LoanInstallment;
 import com.OBS.entity.Transfer;
 import com.OBS.enums.SearchOperation;
 import com.OBS.enums.TransferType;
 import com.OBS.repository.LoanRepository;
-import com.OBS.searchers.SearchCriteria;
-import com.OBS.searchers.specificators.Specifications;
+import com.OBS.searchers.specificators.CriteriaCompiler;
+import com.OBS.searchers.specificators.ImmutableSpecification;
+import com.OBS.searchers.specificators.Projection;
+import com.OBS.searchers.specificators.SpecificationQueries;
 import com.OBS.service.interfaces.systemFacade.LoanServiceFacade;
 import lombok.AllArgsConstructor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -29,6 +37,27 @@ public class LoanService implements LoanServiceFacade {
     private final ClientService clientService;
     private final TransferService transferService;
     private final LoanRateService loanRateService;
+    private final CashFlowForecastService cashFlowForecastService;
+    private final LoanDelinquencyService loanDelinquencyService;
+    private final LoanScheduleService loanScheduleService;
+    private final LoanSimulationService loanSimulationService;
+    private final LoanPortfolioService loanPortfolioService;
+    private final CriteriaCompiler criteriaCompiler;
+    private final SpecificationQueries specificationQueries;
+
+    private static final Projection<Loan, LoanListItem> LIST_ITEM = Projection.of(Loan.class, LoanListItem.class)
+            .column("loanId")
+            .column("isActive")
+            .column("concludedDate")
+            .column("estimatedEndDate")
+            .column("nextRatePayDay")
+            .column("basicLoanAmount")
+            .column("rateAmount")
+            .column("toRepaidOff")
+            .column("penaltyAmount")
+            .column("ratesPaid")
+            .column("clientId", "client.clientId")
+            .column("clientFullName", "client.fullName");
 
     private String LoanNotFound(Long loanId) {
         return "Loan with id:" + loanId + " doesn't exists in database";
@@ -38,20 +67,34 @@ public class LoanService implements LoanServiceFacade {
         return loanRepository.findAll();
     }
 
+    public List<LoanListItem> getLoanItems() {
+        return specificationQueries.findAll(LIST_ITEM, null, Sort.by(Sort.Direction.DESC, "concludedDate"));
+    }
+
     public Loan getLoan(Long loanId) {
         Loan loan = loanRepository.findById(loanId).orElseThrow(
                 () -> new IllegalStateException(LoanNotFound(loanId))
         );
-        updateRatesInfo(loan);
+        Optional<LoanInstallment> nextInstallment = loanScheduleService.getNextInstallment(loan);
+        if (nextInstallment.isPresent())
+            loan.setRateAmount(nextInstallment.get().getAmount().floatValue());
+        else loan.updateRatesInfo();
         return loan;
     }
 
+    public List<LoanInstallment> getSchedule(Long loanId) {
+        return loanScheduleService.getSchedule(loanId);
+    }
+
+    @Transactional
     public void addLoan(Loan newLoan) {
-        List<Loan> clientLoans = loanRepository.findAllByClient_clientId(newLoan.getClient().getClientId());
-        for (Loan loan : clientLoans) {
-            if (loan.getIsActive())
-                throw new IllegalStateException("New loan couldn't be created because there is already an active loan registered on this client");
-        }
+        if (newLoan.getInitialRatesNumber() < 1)
+            throw new IllegalStateException("Number of rates has to be positive");
+        ImmutableSpecification<Loan> activeClientLoans = ImmutableSpecification.of(criteriaCompiler, Loan.class)
+                .and("client", newLoan.getClient(), SearchOperation.EQUAL)
+                .and("isActive", true, SearchOperation.EQUAL);
+        if (specificationQueries.exists(Loan.class, activeClientLoans))
+            throw new IllegalStateException("New loan couldn't be created because there is already an active loan registered on this client");
 
         newLoan.setNextRatePayDay(LocalDate.now().plusMonths(1));
 
@@ -66,7 +109,10 @@ public class LoanService implements LoanServiceFacade {
 
         transferService.performLoanTransfer(transfer);
 
-        loanRepository.save(newLoan);
+        Loan savedLoan = loanRepository.save(newLoan);
+        loanScheduleService.generate(savedLoan);
+        loanPortfolioService.onLoanChanged(savedLoan);
+        cashFlowForecastService.invalidate(newLoan.getClient().getClientId());
     }
 
     @Transactional
@@ -77,107 +123,80 @@ public class LoanService implements LoanServiceFacade {
 
         oldLoan.setIsActive(false);
         loanRepository.save(oldLoan);
+        loanPortfolioService.onLoanChanged(oldLoan);
+        invalidateForecast(oldLoan);
     }
 
+    @Transactional
     public void deleteLoan(Long loanId) {
-        loanRepository.findById(loanId).orElseThrow(
+        Loan loan = loanRepository.findById(loanId).orElseThrow(
                 () -> new IllegalStateException(LoanNotFound(loanId))
         );
+        loanScheduleService.deleteSchedule(loanId);
         loanRepository.deleteById(loanId);
+        loanPortfolioService.onLoanDeleted(loanId);
+        invalidateForecast(loan);
+    }
+
+    // Loans saved before the counter existed are counted once at startup
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillRatesPaid() {
+        loanRepository.backfillRatesPaid();
+    }
+
+    private static int ratesPaid(Loan loan) {
+        return loan.getRatesPaid() == null ? 0 : loan.getRatesPaid();
+    }
+
+    private void invalidateForecast(Loan loan) {
+        if (loan.getClient() != null)
+            cashFlowForecastService.invalidate(loan.getClient().getClientId());
     }
 
     @Transactional
     public void realizePayment(Long clientId) {
-        Loan loan = loanRepository.findByClient_clientIdAndIsActive(clientId, true).orElseThrow(
+        Loan loan = loanRepository.findActiveForUpdate(clientId).orElseThrow(
                 () -> new IllegalStateException("There is no active loan for this client with id:" + clientId)
         );
-        Client client = clientService.getClientOrNull(clientId);
 
-        transferService.performTransfer(client, loan);
+        Optional<LoanInstallment> installment = loanScheduleService.getNextInstallment(loan);
+        installment.ifPresent(value -> loan.setRateAmount(value.getAmount().floatValue()));
+
+        transferService.performTransfer(loan.getClient(), loan);
 
         loanRateService.addRate(loan);
-        //TODO check logic if works
+        loan.setRatesPaid(ratesPaid(loan) + 1);
 
         loan.setNextRatePayDay(loan.getNextRatePayDay().plusMonths(1));
         loan.setRatesLeftToPay(loan.getRatesLeftToPay() - 1);
         loan.setToRepaidOff(loan.getToRepaidOff() - loan.getRateAmount());
         loan.setTotalPaidOff(loan.getTotalPaidOff() + loan.getRateAmount());
 
-        updateRatesInfo(loan);
+        if (installment.isPresent())
+            loanScheduleService.markPaid(installment.get());
+        else loan.updateRatesInfo();
 
         if (loan.getRatesLeftToPay() == 0
                 || loan.getToRepaidOff() == 0
-                || loan.getNumOfRates() == loanRateService.getNumOfRatesPayed(loan.getLoanId())
+                || loan.getNumOfRates() == ratesPaid(loan)
         )
             loan.setIsActive(false);
 
         loanRepository.save(loan);
-    }
-
-    private void updateRatesInfo(Loan loan) {
-
-        if (loan.getRatesLeftToPay() == 1 && loan.getToRepaidOff() > loan.getRateAmount()) {
-            if (loan.getToRepaidOff() < loan.getBasicRateAmount())
-                loan.setRateAmount(loan.getToRepaidOff());
-            else {
-                loan.setRateAmount(loan.getBasicRateAmount());
-            }
-        }
-
-        if (loan.getRatesLeftToPay() == 1 && loan.getToRepaidOff() < loan.getRateAmount())
-            loan.setRateAmount(loan.getToRepaidOff());
-
-        if (loan.getToRepaidOff() > (loan.getRateAmount()) * loan.getRatesLeftToPay()) {
-            float difference = loan.getToRepaidOff() - (loan.getRateAmount() * loan.getRatesLeftToPay());
-            int additionalRates = (int) (difference % loan.getRateAmount());
-            if (difference - (additionalRates * loan.getRateAmount()) > 0)
-                additionalRates += 1;
-
-            loan.setEstimatedEndDate(loan.getEstimatedEndDate().plusMonths(additionalRates));
-            loan.setRatesLeftToPay(loan.getRatesLeftToPay() + additionalRates);
-            loan.setNumOfRates(loan.getNumOfRates() + additionalRates);
-        }
+        loanPortfolioService.onLoanChanged(loan);
+        cashFlowForecastService.invalidate(clientId);
     }
 
     //Automated method that runs every day at midnight
-    @Transactional
     @Scheduled(cron = "0 0 0 * * * ")
     protected void updateLoans() {
-        Logger logger = LoggerFactory.getLogger(CyclicalTransferService.class);
-        Specifications<Loan> findAllByReTransferDate = new Specifications<Loan>()
-                .add(new SearchCriteria("nextRatePayDay", LocalDate.now(), SearchOperation.LESS_THAN_EQUAL_DATE));
-
-        List<Loan> loans = loanRepository.findAll(findAllByReTransferDate);
-
-        //TODO do checking logic if client hasn't payed in time
-        if (!loans.isEmpty())
-            for (Loan loan : loans) {
-                if (!loanRateService.checkIfPayed(loan.getNextRatePayDay())) {
-                    LocalDate today = LocalDate.now();
-                    int penaltyMonths = 0;
-
-                    while (!today.isBefore(loan.getNextRatePayDay())){
-                        penaltyMonths++;
-                        today = today.plusMonths(1);
-                    }
-
-                    float newPenaltyAmount = penaltyMonths * loan.getRateAmount();
-
-                    loan.setPenaltyAmount(loan.getPenaltyAmount() + newPenaltyAmount);
-
-                    float newInterestAmount = (penaltyMonths * (Loan.yearlyRRSO / 12)) * (
-                            loan.getInterestAmount() + loan.getBasicLoanAmount() + loan.getPenaltyAmount()
-                    );
-
-                    loan.setInterestAmount(loan.getInterestAmount() + newInterestAmount);
-
-                    loan.setToRepaidOff(loan.getToRepaidOff() + newPenaltyAmount + newInterestAmount);
+        loanDelinquencyService.applyPenalties(LocalDate.now(), false);
+        loanPortfolioService.refresh(LocalDate.now());
+    }
 
-                    updateRatesInfo(loan);
-                    loanRepository.save(loan);
-                }
-            }
-        else logger.debug("Every client payed his rate in time!");
+    public DelinquencyReport applyPenalties(boolean dryRun) {
+        return loanDelinquencyService.applyPenalties(LocalDate.now(), dryRun);
     }
 
     public Loan calculateLoan(LoanBody body) {
@@ -189,15 +208,24 @@ public class LoanService implements LoanServiceFacade {
         );
     }
 
+    public LoanPortfolioSnapshot getPortfolio(int months) {
+        return loanPortfolioService.getSnapshot(months);
+    }
+
+    public LoanSimulationResult simulateLoans(LoanSimulationBody body) {
+        return loanSimulationService.simulate(body);
+    }
+
     public Optional<Loan> getClientLoan(Long clientId) {
-        Specifications<Loan> findByClient = new Specifications<Loan>()
-                .add(new SearchCriteria("client", clientService.getClient(clientId), SearchOperation.EQUAL))
-                .add(new SearchCriteria("isActive", true, SearchOperation.EQUAL));
+        ImmutableSpecification<Loan> findByClient = ImmutableSpecification.of(criteriaCompiler, Loan.class)
+                .and("client", clientService.getClient(clientId), SearchOperation.EQUAL)
+                .and("isActive", true, SearchOperation.EQUAL);
 
         return loanRepository.findOne(findByClient);
     }
 
     public void updateLoan(Loan newLoan){
-        loanRepository.save(newLoan);
+        loanPortfolioService.onLoanChanged(loanRepository.save(newLoan));
+        invalidateForecast(newLoan);
     }
 }
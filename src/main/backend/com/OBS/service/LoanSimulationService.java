@@ -0,0 +1,58 @@
+package com.OBS.service;
+
+import com.OBS.alternativeBodies.LoanSimulationBody;
+import com.OBS.alternativeBodies.LoanSimulationResult;
+import com.OBS.entity.Loan;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+// Computes loan offers for a grid of amounts and rate counts without touching the database
+@Service
+public class LoanSimulationService {
+    private static final int MAX_SCENARIOS = 10_000;
+    private static final int MAX_RATES_NUMBER = 360;
+
+    // Annuity factor depends only on the number of rates, so it's shared by every amount and request
+    private final Map<Integer, BigDecimal> annuityFactors = new ConcurrentHashMap<>();
+
+    public LoanSimulationResult simulate(LoanSimulationBody body) {
+        List<Float> amounts = body.getAmounts();
+        List<Integer> ratesNumbers = body.getRatesNumbers();
+        if (amounts == null || ratesNumbers == null || amounts.isEmpty() || ratesNumbers.isEmpty())
+            throw new IllegalStateException("Amounts and rates numbers are required");
+        if ((long) amounts.size() * ratesNumbers.size() > MAX_SCENARIOS)
+            throw new IllegalStateException("At most " + MAX_SCENARIOS + " scenarios can be simulated at once");
+        for (Float amount : amounts)
+            if (amount == null || amount <= 0)
+                throw new IllegalStateException("Loan amount has to be positive");
+        for (Integer ratesNumber : ratesNumbers)
+            if (ratesNumber == null || ratesNumber < 1 || ratesNumber > MAX_RATES_NUMBER)
+                throw new IllegalStateException("Number of rates has to be between 1 and " + MAX_RATES_NUMBER);
+
+        int scenarios = amounts.size() * ratesNumbers.size();
+        float[] rateAmount = new float[scenarios];
+        float[] toRepaidOff = new float[scenarios];
+        float[] interestAmount = new float[scenarios];
+
+        // Runs on the common fork-join pool, every scenario writes only its own cells
+        IntStream.range(0, scenarios).parallel().forEach(index -> {
+            float amount = amounts.get(index / ratesNumbers.size());
+            int ratesNumber = ratesNumbers.get(index % ratesNumbers.size());
+
+            BigDecimal financedAmount = Loan.financedAmount(amount, amount * Loan.basicCommission);
+            BigDecimal installment = Loan.installmentAmount(financedAmount, annuityFactors.computeIfAbsent(ratesNumber, Loan::annuityFactor));
+            float total = Loan.scheduleTotal(financedAmount, installment, ratesNumber).floatValue();
+
+            rateAmount[index] = installment.floatValue();
+            toRepaidOff[index] = total;
+            interestAmount[index] = total - amount;
+        });
+
+        return new LoanSimulationResult(amounts, ratesNumbers, rateAmount, toRepaidOff, interestAmount);
+    }
+}
@@ -0,0 +1,77 @@
+package com.OBS.service;
+
+import com.OBS.entity.Order;
+import com.OBS.enums.OrderType;
+import com.OBS.repository.OrderRepository;
+import com.OBS.service.interfaces.SystemFacade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.json.bind.Jsonb;
+import javax.transaction.Transactional;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Request bodies are validated and parsed once when the order is created, executing the order
+// takes the parsed payload from here and parses again only after a restart or eviction
+@Service
+public class OrderCommandRegistry {
+    private static final int MAX_ENTRIES = 10_000;
+    private static final Logger logger = LoggerFactory.getLogger(OrderCommandRegistry.class);
+
+    private final OrderRepository orderRepository;
+    private final Jsonb jsonb;
+    private final Map<Long, Object> payloads;
+
+    public OrderCommandRegistry(OrderRepository orderRepository, Jsonb jsonb) {
+        this.orderRepository = orderRepository;
+        this.jsonb = jsonb;
+        this.payloads = Collections.synchronizedMap(new LinkedHashMap<Long, Object>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Object> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        });
+    }
+
+    // Rejects orders of unknown type or with a body that doesn't match it, before anything is saved
+    public Object prepare(Order order) {
+        OrderType orderType = OrderType.fromType(order.getOrderType());
+        if (orderType == null)
+            throw new IllegalStateException("Unknown order type: " + order.getOrderType());
+        order.setTypeCode(orderType);
+        return orderType.parse(jsonb, order.getRequestBody());
+    }
+
+    public void register(Long orderId, Object payload) {
+        payloads.put(orderId, payload);
+    }
+
+    // Payloads are handed out once, a retried execution gets a fresh copy
+    public void execute(SystemFacade systemService, Order order) {
+        OrderType orderType = OrderType.of(order);
+        Object payload = payloads.remove(order.getOrder_Id());
+        if (payload == null)
+            payload = orderType.parse(jsonb, order.getRequestBody());
+        orderType.execute(systemService, payload, order);
+    }
+
+    public void evict(Long orderId) {
+        payloads.remove(orderId);
+    }
+
+    // Orders saved before the code column existed get it from their display name
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillTypeCodes() {
+        int updated = 0;
+        for (OrderType orderType : OrderType.values())
+            updated += orderRepository.backfillTypeCode(orderType.getType(), orderType);
+        if (updated > 0)
+            logger.info(updated + " orders got their type code");
+    }
+}
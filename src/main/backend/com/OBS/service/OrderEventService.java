@@ -0,0 +1,183 @@
+package com.OBS.service;
+
+import com.OBS.alternativeBodies.OrderEvent;
+import com.OBS.entity.Order;
+import com.OBS.enums.OrderEventType;
+import com.OBS.support.AfterCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Pushes order changes to employee consoles, the last events are buffered so a reconnecting console
+// receives only what it missed. Every console has its own bounded queue drained by a sender thread in order,
+// a slow console never holds the buffer lock, the thread that committed the change or the other consoles
+@Service
+public class OrderEventService {
+    private static final int BUFFER_SIZE = 1000;
+    // Room for a full replay, a console that falls further behind is disconnected and replays on reconnect
+    private static final int SUBSCRIBER_QUEUE_SIZE = BUFFER_SIZE + 1;
+    private static final long TIMEOUT = Duration.ofMinutes(30).toMillis();
+    private static final Logger logger = LoggerFactory.getLogger(OrderEventService.class);
+
+    private final ArrayDeque<OrderEvent> buffer = new ArrayDeque<>(BUFFER_SIZE);
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private long lastEventId;
+    // A stalled console keeps one thread until it is dropped
+    private final ExecutorService sender = Executors.newCachedThreadPool();
+
+    private static class Subscriber {
+        private final SseEmitter emitter;
+        private final List<String> excludedTypes;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> pending = new ArrayBlockingQueue<>(SUBSCRIBER_QUEUE_SIZE);
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter, List<String> excludedTypes) {
+            this.emitter = emitter;
+            this.excludedTypes = excludedTypes;
+        }
+
+        private boolean accepts(OrderEvent event) {
+            return event.getType() == OrderEventType.RESET || !excludedTypes.contains(event.getOrderType());
+        }
+    }
+
+    public SseEmitter subscribe(String role, Long lastSeenEventId) {
+        Subscriber subscriber = new Subscriber(new SseEmitter(TIMEOUT), OrderQueueService.excludedOrderTypes(role));
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onError(error -> subscribers.remove(subscriber));
+
+        // Registered under the buffer lock and replayed before any later event is queued,
+        // so no event falls between the replay and the live stream
+        synchronized (buffer) {
+            List<OrderEvent> missed = new ArrayList<>();
+            if (lastSeenEventId != null) {
+                // Ids start over after a restart, then the console knows an id this instance never issued
+                OrderEvent oldest = buffer.peekFirst();
+                boolean evicted = lastSeenEventId < lastEventId && (oldest == null || oldest.getEventId() > lastSeenEventId + 1);
+                if (evicted || lastSeenEventId > lastEventId)
+                    missed.add(new OrderEvent(lastEventId, OrderEventType.RESET, null, null, null, null, null, LocalDateTime.now()));
+                else for (OrderEvent event : buffer)
+                    if (event.getEventId() > lastSeenEventId && subscriber.accepts(event))
+                        missed.add(event);
+            }
+            subscribers.add(subscriber);
+            for (OrderEvent event : missed)
+                enqueue(subscriber, eventOf(event));
+        }
+        return subscriber.emitter;
+    }
+
+    public long getLastEventId() {
+        synchronized (buffer) {
+            return lastEventId;
+        }
+    }
+
+    // Published once the surrounding transaction commits, rolled back changes never reach the consoles
+    public void publish(OrderEventType type, Order order) {
+        OrderEvent event = new OrderEvent(
+                null,
+                type,
+                order.getOrder_Id(),
+                order.getOrderType(),
+                order.getEmployee() == null ? null : order.getEmployee().getEmployeeId(),
+                order.getDecision(),
+                order.getCreateDate(),
+                null
+        );
+        AfterCommit.run(() -> dispatch(event));
+    }
+
+    // Lets proxies and browsers notice dead connections between events
+    @Scheduled(fixedDelay = 20_000)
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers)
+            enqueue(subscriber, SseEmitter.event().comment("heartbeat"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    private void dispatch(OrderEvent event) {
+        synchronized (buffer) {
+            event.setEventId(++lastEventId);
+            event.setOccurredAt(LocalDateTime.now());
+            if (buffer.size() == BUFFER_SIZE)
+                buffer.removeFirst();
+            buffer.addLast(event);
+
+            for (Subscriber subscriber : subscribers)
+                if (subscriber.accepts(event))
+                    enqueue(subscriber, eventOf(event));
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder eventOf(OrderEvent event) {
+        return SseEmitter.event()
+                .id(String.valueOf(event.getEventId()))
+                .name(event.getType().name())
+                .data(event, MediaType.APPLICATION_JSON);
+    }
+
+    // Never blocks, a full queue means the console stopped reading
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (!subscribers.contains(subscriber))
+            return;
+        if (!subscriber.pending.offer(event)) {
+            logger.warn("Order events subscriber fell " + SUBSCRIBER_QUEUE_SIZE + " events behind, disconnecting it");
+            drop(subscriber);
+            return;
+        }
+        if (subscriber.draining.compareAndSet(false, true))
+            sender.execute(() -> drain(subscriber));
+    }
+
+    private void drain(Subscriber subscriber) {
+        do {
+            SseEmitter.SseEventBuilder event;
+            while ((event = subscriber.pending.poll()) != null)
+                if (!send(subscriber, event)) {
+                    subscriber.pending.clear();
+                    return;
+                }
+            subscriber.draining.set(false);
+            // An event queued after the last poll found the flag still set and is sent by this thread
+        } while (!subscriber.pending.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    private boolean send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        try {
+            subscriber.emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Order events subscriber disconnected: " + e.getMessage());
+            drop(subscriber);
+            return false;
+        }
+    }
+
+    private void drop(Subscriber subscriber) {
+        if (subscribers.remove(subscriber))
+            subscriber.emitter.completeWithError(new IOException("Order events subscriber disconnected"));
+    }
+}
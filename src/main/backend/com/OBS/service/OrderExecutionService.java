@@ -0,0 +1,247 @@
+package com.OBS.service;
+
+import com.OBS.entity.Order;
+import com.OBS.entity.OrderExecution;
+import com.OBS.enums.OrderEventType;
+import com.OBS.enums.OrderExecutionStatus;
+import com.OBS.enums.OrderType;
+import com.OBS.repository.OrderExecutionRepository;
+import com.OBS.repository.OrderRepository;
+import com.OBS.service.interfaces.SystemFacade;
+import com.OBS.support.AfterCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Persistent queue of accepted orders, side effects of every order run on a bounded worker pool
+// in their own transaction, so approving an order returns as soon as it's queued
+@Service
+public class OrderExecutionService {
+    private static final int THREADS = 4;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_SECONDS = 30;
+    private static final long LEASE_SECONDS = 60;
+    private static final Logger logger = LoggerFactory.getLogger(OrderExecutionService.class);
+
+    private final OrderExecutionRepository executionRepository;
+    private final OrderRepository orderRepository;
+    private final SystemFacade systemService;
+    private final OrderCommandRegistry orderCommandRegistry;
+    private final CashFlowForecastService cashFlowForecastService;
+    private final OrderEventService orderEventService;
+    private final TransactionTemplate transactionTemplate;
+    // Executions this instance is running, their leases are renewed by the heartbeat
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    // Extra wake ups are dropped when every worker is already busy, busy workers drain the queue anyway
+    private final ThreadPoolExecutor workers = new ThreadPoolExecutor(
+            THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(THREADS), new ThreadPoolExecutor.DiscardPolicy()
+    );
+
+    public OrderExecutionService(OrderExecutionRepository executionRepository,
+                                 OrderRepository orderRepository,
+                                 SystemFacade systemService,
+                                 OrderCommandRegistry orderCommandRegistry,
+                                 CashFlowForecastService cashFlowForecastService,
+                                 OrderEventService orderEventService,
+                                 PlatformTransactionManager transactionManager) {
+        this.executionRepository = executionRepository;
+        this.orderRepository = orderRepository;
+        this.systemService = systemService;
+        this.orderCommandRegistry = orderCommandRegistry;
+        this.cashFlowForecastService = cashFlowForecastService;
+        this.orderEventService = orderEventService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Joins the caller's transaction, workers are woken once it commits
+    public OrderExecution enqueue(Order order) {
+        return enqueueAll(Collections.singletonList(order)).get(0);
+    }
+
+    public List<OrderExecution> enqueueAll(List<Order> orders) {
+        List<Long> orderIds = new ArrayList<>(orders.size());
+        for (Order order : orders)
+            orderIds.add(order.getOrder_Id());
+        Map<Long, OrderExecution> existing = getExecutions(orderIds);
+
+        List<OrderExecution> executions = new ArrayList<>(orders.size());
+        for (Long orderId : orderIds) {
+            OrderExecution execution = existing.get(orderId);
+            if (execution == null)
+                execution = new OrderExecution(orderId);
+            else if (execution.getStatus() == OrderExecutionStatus.FAILED)
+                execution.requeue();
+            else throw new IllegalStateException(alreadyQueued(orderId, execution));
+            executions.add(execution);
+        }
+
+        executions = executionRepository.saveAll(executions);
+        for (Order order : orders)
+            invalidateForecast(order);
+        AfterCommit.run(this::wakeUp);
+        return executions;
+    }
+
+    public static String alreadyQueued(Long orderId, OrderExecution execution) {
+        return "Order with id: " + orderId + " is already " + execution.getStatus().name().toLowerCase();
+    }
+
+    public Map<Long, OrderExecution> getExecutions(Collection<Long> orderIds) {
+        Map<Long, OrderExecution> executions = new HashMap<>();
+        if (!orderIds.isEmpty())
+            for (OrderExecution execution : executionRepository.findAllByOrderIdIn(orderIds))
+                executions.put(execution.getOrderId(), execution);
+        return executions;
+    }
+
+    public OrderExecution getExecution(Long orderId) {
+        return executionRepository.findByOrderId(orderId).orElseThrow(
+                () -> new IllegalStateException("Order with id: " + orderId + " wasn't queued for execution")
+        );
+    }
+
+    public void deleteExecution(Long orderId) {
+        executionRepository.deleteByOrderId(orderId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        heartbeat();
+        wakeUp();
+    }
+
+    // Renews the leases of executions running here, then queues again those another instance stopped renewing
+    @Scheduled(fixedDelay = LEASE_SECONDS * 1000 / 3)
+    public void heartbeat() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> executionIds = new ArrayList<>(running);
+        Integer requeued = transactionTemplate.execute(status -> {
+            if (!executionIds.isEmpty())
+                executionRepository.renewLeases(executionIds, now.plusSeconds(LEASE_SECONDS));
+            return executionRepository.requeueExpired(now);
+        });
+        if (requeued != null && requeued > 0) {
+            logger.warn(requeued + " interrupted order executions queued again");
+            wakeUp();
+        }
+    }
+
+    // Picks up retries whose delay has passed and anything queued while every worker was busy
+    @Scheduled(fixedDelay = 15_000)
+    public void wakeUp() {
+        for (int i = 0; i < THREADS; i++)
+            workers.execute(this::drain);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void drain() {
+        Optional<OrderExecution> next;
+        while (!Thread.currentThread().isInterrupted() && (next = start()).isPresent()) {
+            Long executionId = next.get().getExecutionId();
+            running.add(executionId);
+            try {
+                run(next.get());
+            } finally {
+                running.remove(executionId);
+            }
+        }
+    }
+
+    // RUNNING is committed before the side effects start, so other workers skip it and pollers can see it
+    private Optional<OrderExecution> start() {
+        return transactionTemplate.execute(status -> {
+            Optional<OrderExecution> execution = executionRepository.lockNextDue(LocalDateTime.now());
+            execution.ifPresent(value -> {
+                value.setStatus(OrderExecutionStatus.RUNNING);
+                value.setAttempts(value.getAttempts() + 1);
+                value.setLeaseExpiresAt(LocalDateTime.now().plusSeconds(LEASE_SECONDS));
+                executionRepository.save(value);
+            });
+            return execution;
+        });
+    }
+
+    private void run(OrderExecution execution) {
+        try {
+            transactionTemplate.execute(status -> {
+                // Locked like a decision, an order rejected or finished since it was queued is never executed
+                Order order = orderRepository.findForUpdate(execution.getOrderId()).orElseThrow(
+                        () -> new IllegalStateException("Order with id: " + execution.getOrderId() + " doesn't exist in database")
+                );
+                if (!Boolean.TRUE.equals(order.getIsActive()) || !Objects.equals(order.getDecision(), "accepted"))
+                    throw new IllegalStateException("Order with id: " + order.getOrder_Id() + " is no longer accepted");
+                orderCommandRegistry.execute(systemService, order);
+                order.setIsActive(false);
+                order.setClaimExpiresAt(null);
+                orderRepository.save(order);
+
+                execution.setStatus(OrderExecutionStatus.DONE);
+                execution.setLastError(null);
+                execution.setFinishedAt(LocalDateTime.now());
+                execution.setLeaseExpiresAt(null);
+                orderEventService.publish(OrderEventType.FINISHED, order);
+                return executionRepository.save(execution);
+            });
+        } catch (RuntimeException e) {
+            fail(execution, e);
+        }
+    }
+
+    // Business rule violations won't change on retry, anything else is retried with growing delay
+    private void fail(OrderExecution execution, RuntimeException e) {
+        boolean retry = !(e instanceof IllegalStateException) && execution.getAttempts() < MAX_ATTEMPTS;
+        String error = String.valueOf(e.getMessage());
+        logger.error("Order " + execution.getOrderId() + " execution attempt " + execution.getAttempts() + " failed: " + error);
+
+        transactionTemplate.execute(status -> {
+            OrderExecution failed = executionRepository.findById(execution.getExecutionId()).orElse(execution);
+            failed.setAttempts(execution.getAttempts());
+            failed.setLeaseExpiresAt(null);
+            failed.setLastError(error.length() > OrderExecution.MAX_ERROR_LENGTH ? error.substring(0, OrderExecution.MAX_ERROR_LENGTH) : error);
+            if (retry) {
+                failed.setStatus(OrderExecutionStatus.QUEUED);
+                failed.setNextAttemptAt(LocalDateTime.now().plusSeconds(RETRY_DELAY_SECONDS << (execution.getAttempts() - 1)));
+            } else {
+                failed.setStatus(OrderExecutionStatus.FAILED);
+                failed.setFinishedAt(LocalDateTime.now());
+                orderRepository.findById(execution.getOrderId()).ifPresent(order -> {
+                    invalidateForecast(order);
+                    orderEventService.publish(OrderEventType.FINISHED, order);
+                });
+            }
+            return executionRepository.save(failed);
+        });
+    }
+
+    // A queued loan request is part of the client's forecast until it is paid out or fails
+    private void invalidateForecast(Order order) {
+        if (order.getClient() != null && order.getTypeCode() == OrderType.loanRequest)
+            cashFlowForecastService.invalidate(order.getClient().getClientId());
+    }
+}
@@ -0,0 +1,73 @@
+package com.OBS.service;
+
+import com.OBS.entity.Order;
+import com.OBS.searchers.specificators.ImmutableSpecification;
+import com.OBS.searchers.specificators.Projection;
+import com.OBS.searchers.specificators.SpecificationQueries;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Short lived results of order list queries shared by every employee asking the same question,
+// a result is dropped when it's older than the TTL or any order event was published since it was read.
+// Only interface projections are kept, their rows are read-only and detached from any persistence context
+@Service
+public class OrderQueryCache {
+    private static final long TTL = TimeUnit.SECONDS.toNanos(5);
+    private static final int MAX_ENTRIES = 256;
+
+    private final OrderEventService orderEventService;
+    private final SpecificationQueries specificationQueries;
+    private final Map<String, Entry> results;
+
+    private static class Entry {
+        private final long readAt;
+        private final long lastEventId;
+        private final List<?> rows;
+
+        private Entry(long readAt, long lastEventId, List<?> rows) {
+            this.readAt = readAt;
+            this.lastEventId = lastEventId;
+            this.rows = rows;
+        }
+    }
+
+    public OrderQueryCache(OrderEventService orderEventService, SpecificationQueries specificationQueries) {
+        this.orderEventService = orderEventService;
+        this.specificationQueries = specificationQueries;
+        this.results = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(MAX_ENTRIES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        });
+    }
+
+    // A key per result type, the same specification may be read into different projections
+    @SuppressWarnings("unchecked")
+    public <R> List<R> findAll(Projection<Order, R> projection, ImmutableSpecification<Order> specification, Sort sort) {
+        if (!projection.getResultType().isInterface())
+            throw new IllegalStateException("Only interface projections of orders can be cached, " + projection.getResultType().getSimpleName() + " is a class");
+        Optional<String> specificationKey = specification.cacheKey();
+        if (!specificationKey.isPresent())
+            return specificationQueries.findAll(projection, specification, sort);
+
+        String key = projection.getResultType().getName() + " " + specificationKey.get() + " order by " + sort;
+        long now = System.nanoTime();
+        // Event id is taken before the query, an event published meanwhile makes the result stale at once
+        long lastEventId = orderEventService.getLastEventId();
+        Entry entry = results.get(key);
+        if (entry != null && now - entry.readAt < TTL && entry.lastEventId == lastEventId)
+            return (List<R>) entry.rows;
+
+        List<R> rows = Collections.unmodifiableList(specificationQueries.findAll(projection, specification, sort));
+        results.put(key, new Entry(now, lastEventId, rows));
+        return rows;
+    }
+}
@@ -0,0 +1,92 @@
+package com.OBS.service;
+
+import com.OBS.auth.AppUserRole;
+import com.OBS.entity.Employee;
+import com.OBS.entity.Order;
+import com.OBS.enums.OrderEventType;
+import com.OBS.repository.OrderRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static com.OBS.auth.AppUserRole.ADMIN;
+import static com.OBS.enums.OrderType.*;
+
+// Work queue over active orders, every employee claims own batch and keeps it for the lease duration
+@Service
+@AllArgsConstructor
+public class OrderQueueService {
+    public static final Duration LEASE = Duration.ofMinutes(15);
+    private static final int MAX_CLAIM = 50;
+    // Placeholder keeping "not in" valid when nothing is excluded
+    private static final List<String> NOTHING_EXCLUDED = Collections.singletonList("");
+
+    private final OrderRepository orderRepository;
+    private final EmployeeService employeeService;
+    private final OrderEventService orderEventService;
+
+    // Oldest orders come first, so those waiting longer than a day are always claimed before newer ones
+    @Transactional
+    public List<Order> claimNext(Long employeeId, int limit) {
+        if (limit < 1 || limit > MAX_CLAIM)
+            throw new IllegalStateException("Between 1 and " + MAX_CLAIM + " orders can be claimed at once");
+        Employee employee = employeeService.getEmployee(employeeId);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Order> orders = orderRepository.lockClaimable(now, excludedOrderTypes(roleOf(employee)), limit);
+        for (Order order : orders) {
+            order.setEmployee(employee);
+            order.setClaimExpiresAt(now.plus(LEASE));
+            orderEventService.publish(OrderEventType.ASSIGNED, order);
+        }
+        return orderRepository.saveAll(orders);
+    }
+
+    @Transactional
+    public Order renew(Long orderId, Long employeeId) {
+        Order order = lockClaimedBy(orderId, employeeId);
+        order.setClaimExpiresAt(LocalDateTime.now().plus(LEASE));
+        return orderRepository.save(order);
+    }
+
+    @Transactional
+    public void release(Long orderId, Long employeeId) {
+        Order order = lockClaimedBy(orderId, employeeId);
+        order.setEmployee(null);
+        order.setClaimExpiresAt(null);
+        orderRepository.save(order);
+        orderEventService.publish(OrderEventType.RELEASED, order);
+    }
+
+    public static List<String> excludedOrderTypes(String role) {
+        if (Objects.equals(role, ADMIN.name()))
+            return NOTHING_EXCLUDED;
+        return Arrays.asList(changeEmployee.toString(), changeUser.toString(), createUser.toString());
+    }
+
+    private Order lockClaimedBy(Long orderId, Long employeeId) {
+        Order order = orderRepository.findForUpdate(orderId).orElseThrow(
+                () -> new IllegalStateException("Order with id: " + orderId + " doesn't exist in database")
+        );
+        boolean claimedByEmployee = order.getEmployee() != null
+                && Objects.equals(order.getEmployee().getEmployeeId(), employeeId)
+                && order.getClaimExpiresAt() != null
+                && order.getClaimExpiresAt().isAfter(LocalDateTime.now());
+        if (!claimedByEmployee)
+            throw new IllegalStateException("Order with id: " + orderId + " isn't claimed by employee with id: " + employeeId);
+        return order;
+    }
+
+    private static String roleOf(Employee employee) {
+        if (employee.getUser() == null || employee.getUser().getAppUserRole() == null)
+            return AppUserRole.EMPLOYEE.name();
+        return employee.getUser().getAppUserRole().name();
+    }
+}
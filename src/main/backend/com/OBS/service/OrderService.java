@@ -1,24 +1,33 @@
 package com.OBS.service;
 
+import com.OBS.alternativeBodies.OrderListItem;
 import com.OBS.entity.Client;
 import com.OBS.entity.Employee;
 import com.OBS.entity.Order;
-import com.OBS.enums.OrderType;
+import com.OBS.entity.OrderExecution;
+import com.OBS.enums.OrderEventType;
+import com.OBS.enums.OrderExecutionStatus;
 import com.OBS.enums.SearchOperation;
-import com.OBS.lab.BuilderSpecification;
-import com.OBS.lab.ImplementedSpecification;
 import com.OBS.repository.OrderRepository;
 import com.OBS.searchers.SearchCriteria;
-import com.OBS.searchers.specificators.Specifications;
+import com.OBS.searchers.specificators.CriteriaCompiler;
+import com.OBS.searchers.specificators.ImmutableSpecification;
+import com.OBS.searchers.specificators.Projection;
 import com.OBS.service.interfaces.SystemFacade;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import javax.json.bind.Jsonb;
 import javax.transaction.Transactional;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.OBS.auth.AppUserRole.ADMIN;
 import static com.OBS.enums.OrderType.*;
@@ -26,55 +35,88 @@ import static com.OBS.enums.OrderType.*;
 @Service
 @RequiredArgsConstructor
 public class OrderService {
+    private static final Projection<Order, OrderListItem> LIST_ITEM = Projection.of(Order.class, OrderListItem.class)
+            .column("order_Id")
+            .column("orderType")
+            .column("decision")
+            .column("createDate")
+            .column("isActive")
+            .column("clientId", "client.clientId")
+            .column("clientFullName", "client.fullName")
+            .column("orderingEmployeeId", "orderingEmployee.employeeId")
+            .column("employeeId", "employee.employeeId");
+
     protected final OrderRepository orderRepository;
     protected final SystemFacade systemService;
     protected final EmployeeService employeeService;
     protected final ClientService clientService;
     protected final Jsonb jsonb;
-    protected ImplementedSpecification<Order> specification;
+    protected final OrderExecutionService orderExecutionService;
+    protected final OrderEventService orderEventService;
+    protected final OrderCommandRegistry orderCommandRegistry;
+    protected final CriteriaCompiler criteriaCompiler;
+    protected final OrderQueryCache orderQueryCache;
+    // Immutable, so one prefix per role is shared by every request
+    private final Map<String, ImmutableSpecification<Order>> unassignedOrders = new ConcurrentHashMap<>();
 
-    public ImplementedSpecification<Order> getSpecification() {
-        return specification;
+    protected String orderNotFound(Long id) {
+        return "Order with id: " + id + " doesn't exist in database";
     }
 
-    public void setSpecification(ImplementedSpecification<Order> specification) {
-        this.specification = specification;
+    private ImmutableSpecification<Order> unassignedOrders(String role) {
+        String roleKey = Objects.equals(role, ADMIN.name()) ? ADMIN.name() : "";
+        return unassignedOrders.computeIfAbsent(roleKey, key -> {
+            List<SearchCriteria> criteria = new ArrayList<>();
+            criteria.add(new SearchCriteria("employee", null, SearchOperation.EQUAL_NULL));
+            if (!Objects.equals(key, ADMIN.name())) {
+                criteria.add(new SearchCriteria("orderType", changeEmployee.toString(), SearchOperation.NOT_EQUAL));
+                criteria.add(new SearchCriteria("orderType", changeUser.toString(), SearchOperation.NOT_EQUAL));
+                criteria.add(new SearchCriteria("orderType", createUser.toString(), SearchOperation.NOT_EQUAL));
+            }
+            // The three inequalities are sent as one "order_type not in (...)"
+            return ImmutableSpecification.of(criteriaCompiler, Order.class).and(criteria);
+        });
     }
 
-    protected String orderNotFound(Long id) {
-        return "Order with id: " + id + " doesn't exist in database";
+    // Day boundary is taken to the minute, so requests within the same minute share a cached result
+    private static LocalDateTime priorityBoundary() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).minusDays(1);
     }
 
     public List<Order> getOrders(String role) {
-         specification = new BuilderSpecification<Order>()
-                .add(new SearchCriteria("createDate", LocalDateTime.now().minusDays(1), SearchOperation.GREATER_THAN_DATE))
-                .add(new SearchCriteria("employee", null, SearchOperation.EQUAL_NULL));
-        if (!Objects.equals(role, ADMIN.name())) {
-            ((BuilderSpecification<Order>) specification).add(new SearchCriteria("orderType", changeEmployee.toString(), SearchOperation.NOT_EQUAL))
-                    .add(new SearchCriteria("orderType", changeUser.toString(), SearchOperation.NOT_EQUAL))
-                    .add(new SearchCriteria("orderType", createUser.toString(), SearchOperation.NOT_EQUAL));
-        }
-        return orderRepository.findAll(specification, Sort.by(Sort.Direction.ASC,"createDate"));
+        ImmutableSpecification<Order> orders = unassignedOrders(role)
+                .and("createDate", priorityBoundary(), SearchOperation.GREATER_THAN_DATE);
+        return orderRepository.findAll(orders, Sort.by(Sort.Direction.ASC,"createDate"));
     }
 
     public List<Order> getPriorityOrders(String role) {
-        BuilderSpecification<Order> priorityOrdersSpecifications = new BuilderSpecification<Order>()
-                .add(new SearchCriteria("createDate", LocalDateTime.now().minusDays(1), SearchOperation.LESS_THAN_EQUAL_DATE))
-                .add(new SearchCriteria("employee",null, SearchOperation.EQUAL_NULL));
-        if (!Objects.equals(role, ADMIN.name())) {
-            priorityOrdersSpecifications = priorityOrdersSpecifications
-                    .add(new SearchCriteria("orderType", changeEmployee.toString(), SearchOperation.NOT_EQUAL))
-                    .add(new SearchCriteria("orderType", changeUser.toString(), SearchOperation.NOT_EQUAL))
-                    .add(new SearchCriteria("orderType", createUser.toString(), SearchOperation.NOT_EQUAL));
-        }
-        return orderRepository.findAll(priorityOrdersSpecifications, Sort.by(Sort.Direction.ASC,"createDate"));
+        ImmutableSpecification<Order> priorityOrders = unassignedOrders(role)
+                .and("createDate", priorityBoundary(), SearchOperation.LESS_THAN_EQUAL_DATE);
+        return orderRepository.findAll(priorityOrders, Sort.by(Sort.Direction.ASC,"createDate"));
+    }
+
+    public List<OrderListItem> getOrderItems(String role) {
+        ImmutableSpecification<Order> orders = unassignedOrders(role)
+                .and("createDate", priorityBoundary(), SearchOperation.GREATER_THAN_DATE);
+        return orderQueryCache.findAll(LIST_ITEM, orders, Sort.by(Sort.Direction.ASC,"createDate"));
+    }
+
+    public List<OrderListItem> getPriorityOrderItems(String role) {
+        ImmutableSpecification<Order> priorityOrders = unassignedOrders(role)
+                .and("createDate", priorityBoundary(), SearchOperation.LESS_THAN_EQUAL_DATE);
+        return orderQueryCache.findAll(LIST_ITEM, priorityOrders, Sort.by(Sort.Direction.ASC,"createDate"));
+    }
+
+    // Badge of the consoles, counted by the database
+    public long countUnassignedOrders(String role) {
+        return orderRepository.count(unassignedOrders(role));
     }
 
     public List<Order> getEmployeeOrders(Long employeeId,boolean isActive) {
-        BuilderSpecification<Order> employeeOrdersSpecifications = new BuilderSpecification<Order>()
-                .add(new SearchCriteria("employee",employeeService.getEmployee(employeeId),SearchOperation.EQUAL))
-                .add(new SearchCriteria("isActive", isActive,SearchOperation.EQUAL));
-        return orderRepository.findAll(employeeOrdersSpecifications, Sort.by(Sort.Direction.ASC,"createDate"));
+        ImmutableSpecification<Order> employeeOrders = ImmutableSpecification.of(criteriaCompiler, Order.class)
+                .and("employee", employeeService.getEmployee(employeeId), SearchOperation.EQUAL)
+                .and("isActive", isActive, SearchOperation.EQUAL);
+        return orderRepository.findAll(employeeOrders, Sort.by(Sort.Direction.ASC,"createDate"));
     }
 
 
@@ -86,57 +128,86 @@ public class OrderService {
 
     public void addOrder(Order order, String requestBody) {
         order.setRequestBody(requestBody);
+        Object payload = orderCommandRegistry.prepare(order);
         order.setIsActive(true);
-        orderRepository.save(order);
+        Order savedOrder = orderRepository.save(order);
+        orderCommandRegistry.register(savedOrder.getOrder_Id(), payload);
+        orderEventService.publish(OrderEventType.CREATED, savedOrder);
     }
 
+    @Transactional
     public void deleteOrder(Long orderId) {
         if (!orderRepository.existsById(orderId))
             throw new IllegalStateException(orderNotFound(orderId));
+        orderExecutionService.deleteExecution(orderId);
         orderRepository.deleteById(orderId);
+        orderCommandRegistry.evict(orderId);
     }
 
+    // Accepted orders stay active until their side effects are executed by the order execution queue,
+    // which publishes FINISHED once the execution is done or failed
     @Transactional
-    public void finishOrder(Long orderId, String decision) {
-        Order order = orderRepository.findById(orderId).orElseThrow(
+    public OrderExecution finishOrder(Long orderId, String decision) {
+        Order order = orderRepository.findForUpdate(orderId).orElseThrow(
                 () -> new IllegalStateException(orderNotFound(orderId))
         );
+        // Same checks as bulk decisions, made under the order lock the execution queue takes too
+        if (!Boolean.TRUE.equals(order.getIsActive()))
+            throw new IllegalStateException("Order with id: " + orderId + " is already finished");
+        OrderExecution execution = orderExecutionService.getExecutions(Collections.singletonList(orderId)).get(orderId);
+        if (execution != null && execution.getStatus() != OrderExecutionStatus.FAILED)
+            throw new IllegalStateException(OrderExecutionService.alreadyQueued(orderId, execution));
 
         order.setDecision(decision);
 
         if(Objects.equals(decision,"accepted")){
-           String type = order.getOrderType();
-           for(OrderType orderType: OrderType.values())
-               if(Objects.equals(type, orderType.getType())){
-                   orderType.finishOrder(systemService,jsonb,order);
-                   break;
-               }
+            order.setClaimExpiresAt(null);
+            orderRepository.save(order);
+            orderEventService.publish(OrderEventType.QUEUED, order);
+            return orderExecutionService.enqueue(order);
         }
 
         order.setIsActive(false);
 
         orderRepository.save(order);
+        orderCommandRegistry.evict(orderId);
+        orderEventService.publish(OrderEventType.FINISHED, order);
+        return null;
+    }
+
+    public OrderExecution getOrderExecution(Long orderId) {
+        return orderExecutionService.getExecution(orderId);
     }
 
 
     public List<Order> getClientOrders(Long clientId) {
         Client client = clientService.getClient(clientId);
-        BuilderSpecification<Order> findAllByClient = new BuilderSpecification<Order>()
-                .add(new SearchCriteria("client",client,SearchOperation.EQUAL));
+        ImmutableSpecification<Order> findAllByClient = ImmutableSpecification.of(criteriaCompiler, Order.class)
+                .and("client", client, SearchOperation.EQUAL);
         return orderRepository.findAll(findAllByClient, Sort.by(Sort.Direction.ASC,"createDate"));
     }
 
     @Transactional
     public void assignEmployee(Long orderId, Long employeeId) {
-        Order order = orderRepository.findById(orderId).orElseThrow(
+        Order order = orderRepository.findForUpdate(orderId).orElseThrow(
                 ()-> new IllegalStateException(orderNotFound(orderId))
         );
+        // Manual assignment can take over only an order without holder or with an expired queue claim
+        Employee holder = order.getEmployee();
+        boolean heldByOther = holder != null
+                && !Objects.equals(holder.getEmployeeId(), employeeId)
+                && (order.getClaimExpiresAt() == null || order.getClaimExpiresAt().isAfter(LocalDateTime.now()));
+        if (heldByOther)
+            throw new IllegalStateException("Order with id: " + orderId + " is already assigned to employee with id: " + holder.getEmployeeId());
+
         Employee employee = employeeService.getEmployee(employeeId);
         order.setEmployee(employee);
+        order.setClaimExpiresAt(null);
         orderRepository.save(order);
+        orderEventService.publish(OrderEventType.ASSIGNED, order);
     }
 
-    public List<Order> getOrdersBySpecification(Specifications<Order> orderSpecification) {
+    public List<Order> getOrdersBySpecification(Specification<Order> orderSpecification) {
         return orderRepository.findAll(orderSpecification);
     }
 }
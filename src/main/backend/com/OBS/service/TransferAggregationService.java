@@ -0,0 +1,39 @@
+package com.OBS.service;
+
+import com.OBS.alternativeBodies.TransferSummary;
+import com.OBS.repository.ClientMonthlyRollupRepository;
+import com.OBS.repository.CyclicalTransferRepository;
+import com.OBS.repository.TransferRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+@Service
+@AllArgsConstructor
+public class TransferAggregationService {
+    private final TransferRepository transferRepository;
+    private final CyclicalTransferRepository cyclicalTransferRepository;
+    private final ClientMonthlyRollupRepository rollupRepository;
+    private final ClientMonthlyRollupService rollupService;
+
+    // Whole months after dateFrom come from the monthly rollup,
+    // only the partial month dateFrom falls in is aggregated from transfers
+    public TransferSummary summarizeTransfers(Long clientId, LocalDateTime dateFrom) {
+        if (!rollupService.isComplete())
+            return new TransferSummary(transferRepository.sumByTypeAndCategorySince(clientId, dateFrom));
+
+        YearMonth firstFullMonth = YearMonth.from(dateFrom).plusMonths(1);
+
+        return new TransferSummary(transferRepository.sumByTypeAndCategoryBetween(
+                        clientId,
+                        dateFrom,
+                        firstFullMonth.atDay(1).atStartOfDay()))
+                .addAll(rollupRepository.sumByTypeAndCategory(clientId, firstFullMonth.toString()));
+    }
+
+    public TransferSummary summarizeCyclicalTransfers(Long clientId, LocalDateTime dateTo) {
+        return new TransferSummary(cyclicalTransferRepository.sumByCategory(clientId, dateTo));
+    }
+}
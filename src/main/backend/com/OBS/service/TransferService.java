@@ -2,16 +2,17 @@ package com.OBS.service;
 
 import com.OBS.alternativeBodies.ClientCreditWorthiness;
 import com.OBS.alternativeBodies.KeyValueObject;
+import com.OBS.alternativeBodies.TransferListItem;
+import com.OBS.alternativeBodies.TransferPage;
+import com.OBS.alternativeBodies.TransferSummary;
 import com.OBS.alternativeBodies.ValueAndPercent;
 import com.OBS.entity.Client;
 import com.OBS.entity.Loan;
 import com.OBS.entity.Transfer;
-import com.OBS.entity.Visit;
-import com.OBS.enums.SearchOperation;
 import com.OBS.enums.TransferCategory;
 import com.OBS.repository.TransferRepository;
-import com.OBS.searchers.SearchCriteria;
-import com.OBS.searchers.specificators.Specifications;
+import com.OBS.searchers.specificators.Projection;
+import com.OBS.searchers.specificators.SpecificationQueries;
 import lombok.AllArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
@@ -19,8 +20,10 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 
 import static com.OBS.enums.TransferCategory.BILLS;
@@ -30,13 +33,33 @@ import static com.OBS.enums.TransferType.OUTGOING;
 @Service
 @AllArgsConstructor
 public class TransferService {
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final Projection<Transfer, TransferListItem> LIST_ITEM = Projection.of(Transfer.class, TransferListItem.class)
+            .column("transferId")
+            .column("amount")
+            .column("transferDate")
+            .column("category")
+            .column("type")
+            .column("receiver_sender")
+            .column("title")
+            .column("toAccountNumber")
+            .column("clientId", "client.clientId");
+
     private final TransferRepository transferRepository;
     private final ClientService clientService;
+    private final TransferAggregationService transferAggregationService;
+    private final ClientMonthlyRollupService rollupService;
+    private final AccountLockService accountLockService;
+    private final SpecificationQueries specificationQueries;
 
     public List<Transfer> getTransfers() {
         return transferRepository.findAll();
     }
 
+    public List<TransferListItem> getTransferItems() {
+        return specificationQueries.findAll(LIST_ITEM, null, Sort.by(Sort.Direction.DESC, "transferDate"));
+    }
+
     public List<Transfer> getRecentTransfers(Long client_id) {
         return transferRepository.findRecentTransfersByClient_clientIdOrderByTransferDateDesc(client_id, PageRequest.of(0, 3));
     }
@@ -45,27 +68,82 @@ public class TransferService {
         return transferRepository.findAll(filterTransferSpec,Sort.by(Sort.Direction.DESC,"transferDate"));
     }
 
+    public TransferPage getTransfersPage(Specification<Transfer> filterTransferSpec, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE)
+            throw new IllegalStateException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+
+        Specification<Transfer> pageSpec = Specification.where(filterTransferSpec);
+        if (cursor != null && !cursor.isEmpty())
+            pageSpec = pageSpec.and(olderThan(cursor));
+
+        List<Transfer> transfers = transferRepository.findNewestFirst(pageSpec, size + 1);
+        boolean hasMore = transfers.size() > size;
+        if (hasMore)
+            transfers = new ArrayList<>(transfers.subList(0, size));
+
+        String nextCursor = hasMore ? encodeCursor(transfers.get(transfers.size() - 1)) : null;
+        return new TransferPage(transfers, nextCursor, hasMore);
+    }
+
+    // Cursor keeps the full precision date, the JSON date format only has milliseconds.
+    // Transfers without a date get an empty date part, descending order puts them first on Postgres
+    private String encodeCursor(Transfer transfer) {
+        String date = transfer.getTransferDate() == null ? "" : transfer.getTransferDate().toString();
+        String cursor = date + "_" + transfer.getTransferId();
+        return Base64.getUrlEncoder().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Specification<Transfer> olderThan(String cursor) {
+        LocalDateTime cursorDate;
+        Long cursorId;
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("_");
+            cursorDate = parts[0].isEmpty() ? null : LocalDateTime.parse(parts[0]);
+            cursorId = Long.parseLong(parts[1]);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Invalid page cursor");
+        }
+
+        if (cursorDate == null)
+            return (root, query, builder) -> builder.or(
+                    builder.isNotNull(root.get("transferDate")),
+                    builder.lessThan(root.get("transferId"), cursorId)
+            );
+        return (root, query, builder) -> builder.or(
+                builder.lessThan(root.get("transferDate"), cursorDate),
+                builder.and(
+                        builder.equal(root.get("transferDate"), cursorDate),
+                        builder.lessThan(root.get("transferId"), cursorId)
+                )
+        );
+    }
+
+    @Transactional
     public void addTransfer(Transfer transfer) {
         transferRepository.save(transfer);
+        rollupService.record(transfer);
     }
 
+    @Transactional
     public void deleteTransfer(Long transferId) {
-        if (!transferRepository.existsById(transferId))
-            throw new IllegalStateException("Transfer with given id " + transferId + " doesn't exists");
-        transferRepository.deleteById(transferId);
+        Transfer transfer = transferRepository.findById(transferId).orElseThrow(
+                () -> new IllegalStateException("Transfer with given id " + transferId + " doesn't exists")
+        );
+        transferRepository.delete(transfer);
+        rollupService.revert(transfer);
     }
 
     @Transactional
     public void performTransfer(Client client, Loan clientLoan) {
         if (client == null) throw new IllegalStateException("Internal Server Error, Sender not available");
-        if (client.getBalance() < clientLoan.getRateAmount()) {
+        accountLockService.lockForTransaction(client.getClientId());
+        // Conditional UPDATE, the balance is checked and debited in one statement
+        if (!clientService.tryDebitBalance(client.getClientId(), clientLoan.getRateAmount()))
             throw new IllegalStateException("There is insufficient account balance to perform this transaction");
-        }
-        updateBalance(client, clientLoan);
+        addRateTransfer(client, clientLoan);
     }
 
-    private void updateBalance(Client client, Loan clientLoan) {
-        clientService.updateClientBalance(client, clientLoan.getRateAmount(), OUTGOING.name());
+    private void addRateTransfer(Client client, Loan clientLoan) {
         Transfer clientRateTransfer = new Transfer(
                 clientLoan.getRateAmount(),
                 LocalDateTime.now(),
@@ -83,8 +161,12 @@ public class TransferService {
 
     @Transactional
     public void performTransfer(Transfer transfer) {
-        Client sender = clientService.getClientOrNull(transfer.getClient().getClientId());
         Client receiver = clientService.getClientByAccountNumber(transfer.getToAccountNumber());
+        accountLockService.lockForTransaction(
+                transfer.getClient().getClientId(),
+                receiver == null ? null : receiver.getClientId()
+        );
+        Client sender = clientService.getClientOrNull(transfer.getClient().getClientId());
 
         if (sender == null) throw new IllegalStateException("Internal Server Error, Sender not available");
         if (sender.getBalance() < transfer.getAmount()) {
@@ -117,7 +199,11 @@ public class TransferService {
     }
 
     private void updateBalances(Client sender, Client receiver, Transfer transfer) {
-        clientService.updateClientBalance(sender, transfer.getAmount(), OUTGOING.name());
+        clientService.transferBalance(
+                sender.getClientId(),
+                receiver == null ? null : receiver.getClientId(),
+                transfer.getAmount()
+        );
         String receiverName;
         if (receiver != null)
             receiverName = receiver.getFullName();
@@ -135,7 +221,6 @@ public class TransferService {
         addTransfer(senderTransfer);
 
         if (!(receiver == null)) {
-            clientService.updateClientBalance(receiver, transfer.getAmount(), INCOMING.name());
             Transfer receiverTransfer = new Transfer(
                     transfer.getAmount(),
                     transfer.getTransferDate(),
@@ -153,21 +238,13 @@ public class TransferService {
     public ClientCreditWorthiness getClientWorthiness(Long clientId,int months){
         ClientCreditWorthiness clientCreditWorthiness = new ClientCreditWorthiness();
 
-        Specifications<Transfer> findAllByClientAndWithinMonths = new Specifications<Transfer>()
-                .add(new SearchCriteria("client", clientService.getClient(clientId), SearchOperation.EQUAL))
-                .add(new SearchCriteria(
-                        "transferDate",
-                        LocalDateTime.now().minusMonths(months),
-                        SearchOperation.GREATER_THAN_DATE));
-
-        Specifications<Transfer> findAllByOutgoing = findAllByClientAndWithinMonths.clone()
-                .add(new SearchCriteria("type", OUTGOING.toString(), SearchOperation.EQUAL));
-
-        Specifications<Transfer> findAllByIncoming = findAllByClientAndWithinMonths.clone()
-                .add(new SearchCriteria("type", INCOMING.toString(), SearchOperation.EQUAL));
+        TransferSummary summary = transferAggregationService.summarizeTransfers(
+                clientService.getClient(clientId).getClientId(),
+                LocalDateTime.now().minusMonths(months)
+        );
 
-        clientCreditWorthiness.setSumOfOutgoing(getTotalAmount(transferRepository.findAll(findAllByOutgoing)));
-        clientCreditWorthiness.setSumOfIncoming(getTotalAmount(transferRepository.findAll(findAllByIncoming)));
+        clientCreditWorthiness.setSumOfOutgoing(summary.getSum(OUTGOING.toString()));
+        clientCreditWorthiness.setSumOfIncoming(summary.getSum(INCOMING.toString()));
 
         clientCreditWorthiness.setSumOfBalance(clientCreditWorthiness.getSumOfIncoming() - clientCreditWorthiness.getSumOfOutgoing());
 
@@ -179,30 +256,19 @@ public class TransferService {
     public List<KeyValueObject<String, ValueAndPercent>> getClientHistory(Long clientId,int months) {
         ArrayList<KeyValueObject<String, ValueAndPercent>> clientHistory = new ArrayList<>();
 
-        Specifications<Transfer> findAllByClientAndWithinMonths = new Specifications<Transfer>()
-                .add(new SearchCriteria("client", clientService.getClient(clientId), SearchOperation.EQUAL))
-                .add(new SearchCriteria(
-                        "transferDate",
-                        LocalDateTime.now().minusMonths(months),
-                        SearchOperation.GREATER_THAN_DATE));
-
-        Specifications<Transfer> findAllByOutgoing = findAllByClientAndWithinMonths.clone()
-                .add(new SearchCriteria("type", OUTGOING.toString(), SearchOperation.EQUAL));
-
-        Specifications<Transfer> findAllByIncoming = findAllByClientAndWithinMonths.clone()
-                .add(new SearchCriteria("type", INCOMING.toString(), SearchOperation.EQUAL));
+        TransferSummary summary = transferAggregationService.summarizeTransfers(
+                clientService.getClient(clientId).getClientId(),
+                LocalDateTime.now().minusMonths(months)
+        );
 
-        float sumOfOutgoing = getTotalAmount(transferRepository.findAll(findAllByOutgoing));
-        float sumOfIncoming = getTotalAmount(transferRepository.findAll(findAllByIncoming));
+        float sumOfOutgoing = summary.getSum(OUTGOING.toString());
+        float sumOfIncoming = summary.getSum(INCOMING.toString());
 
         clientHistory.add(new KeyValueObject<>("Suma Wydatków", new ValueAndPercent(sumOfOutgoing,sumOfOutgoing / (sumOfIncoming + sumOfOutgoing) * 100)));
         clientHistory.add(new KeyValueObject<>("Suma Przychodów", new ValueAndPercent(sumOfIncoming,sumOfIncoming / (sumOfIncoming + sumOfOutgoing) * 100)));
 
         for (TransferCategory category : TransferCategory.values()) {
-            Specifications<Transfer> findAllByCategory = findAllByOutgoing.clone()
-                    .add(new SearchCriteria("category", category.getCategory(), SearchOperation.EQUAL));
-
-            float sumFromCategory = getTotalAmount(transferRepository.findAll(findAllByCategory));
+            float sumFromCategory = summary.getSum(OUTGOING.toString(), category.getCategory());
 
             clientHistory.add(new KeyValueObject<>(
                     category.getCategory(),
@@ -215,15 +281,7 @@ public class TransferService {
         return clientHistory;
     }
 
-    private Float getTotalAmount(List<Transfer> transfers) {
-        float sum = 0f;
-        for (Transfer transfer : transfers)
-            sum += transfer.getAmount();
-
-        return sum;
-    }
-
-    public List<Transfer> getTransfersBySpecification(Specifications<Transfer> visitSpecifications) {
+    public List<Transfer> getTransfersBySpecification(Specification<Transfer> visitSpecifications) {
         return transferRepository.findAll(visitSpecifications);
     }
 }
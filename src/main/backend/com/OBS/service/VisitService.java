@@ -1,13 +1,17 @@
 package com.OBS.service;
 
+import com.OBS.alternativeBodies.VisitListItem;
 import com.OBS.entity.Employee;
 import com.OBS.entity.Visit;
 import com.OBS.enums.SearchOperation;
 import com.OBS.repository.VisitRepository;
-import com.OBS.searchers.SearchCriteria;
-import com.OBS.searchers.specificators.Specifications;
+import com.OBS.searchers.specificators.CriteriaCompiler;
+import com.OBS.searchers.specificators.ImmutableSpecification;
+import com.OBS.searchers.specificators.Projection;
+import com.OBS.searchers.specificators.SpecificationQueries;
 import lombok.AllArgsConstructor;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
@@ -18,6 +22,17 @@ import java.util.List;
 public class VisitService {
     private final VisitRepository visitRepository;
     private final EmployeeService employeeService;
+    private final CriteriaCompiler criteriaCompiler;
+    private final SpecificationQueries specificationQueries;
+
+    private static final Projection<Visit, VisitListItem> LIST_ITEM = Projection.of(Visit.class, VisitListItem.class)
+            .column("visit_id")
+            .column("visitDate")
+            .column("visitTime")
+            .column("establishment")
+            .column("isActive")
+            .column("employeeId", "employee.employeeId")
+            .column("employeeFullName", "employee.fullName");
 
     private String doesntExist(Long id) { return  "Visit by given id:" + id + " doesn't exists in database" ;}
 
@@ -54,14 +69,24 @@ public class VisitService {
 
     public List<Visit> getEmployeeVisits(Long id) {
         Employee employee = employeeService.getEmployee(id);
-        Specifications<Visit> findAllByEmployee = new Specifications<Visit>()
-                .add(new SearchCriteria("employee",employee, SearchOperation.EQUAL));
+        ImmutableSpecification<Visit> findAllByEmployee = ImmutableSpecification.of(criteriaCompiler, Visit.class)
+                .and("employee", employee, SearchOperation.EQUAL);
         return visitRepository.findAll(findAllByEmployee,Sort.by(Sort.Direction.DESC,"visitDate"));
     }
 
+    public List<VisitListItem> getVisitItems() {
+        return specificationQueries.findAll(LIST_ITEM, null, Sort.by(Sort.Direction.DESC, "visitDate"));
+    }
+
+    public List<VisitListItem> getVisitItemsUnassigned() {
+        ImmutableSpecification<Visit> findAllByEmployeeNull = ImmutableSpecification.of(criteriaCompiler, Visit.class)
+                .and("employee", null, SearchOperation.EQUAL_NULL);
+        return specificationQueries.findAll(LIST_ITEM, findAllByEmployeeNull, Sort.by(Sort.Direction.DESC, "visitDate"));
+    }
+
     public List<Visit> getVisitsUnassigned() {
-        Specifications<Visit> findAllByEmployeeNull = new Specifications<Visit>()
-                .add(new SearchCriteria("employee",null, SearchOperation.EQUAL_NULL));
+        ImmutableSpecification<Visit> findAllByEmployeeNull = ImmutableSpecification.of(criteriaCompiler, Visit.class)
+                .and("employee", null, SearchOperation.EQUAL_NULL);
         return visitRepository.findAll(findAllByEmployeeNull,Sort.by(Sort.Direction.DESC,"visitDate"));
     }
 
@@ -76,7 +101,7 @@ public class VisitService {
         visitRepository.save(visit);
     }
 
-    public List<Visit> getVisitBySpecification(Specifications<Visit> visitSpecifications){
+    public List<Visit> getVisitBySpecification(Specification<Visit> visitSpecifications){
         return visitRepository.findAll(visitSpecifications);
     }
 }
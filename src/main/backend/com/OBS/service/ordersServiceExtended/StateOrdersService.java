@@ -1,9 +1,15 @@
 package com.OBS.service.ordersServiceExtended;
 
 import com.OBS.entity.Order;
+import com.OBS.entity.OrderExecution;
 import com.OBS.repository.OrderRepository;
+import com.OBS.searchers.specificators.CriteriaCompiler;
 import com.OBS.service.ClientService;
+import com.OBS.service.OrderCommandRegistry;
 import com.OBS.service.EmployeeService;
+import com.OBS.service.OrderEventService;
+import com.OBS.service.OrderExecutionService;
+import com.OBS.service.OrderQueryCache;
 import com.OBS.service.OrderService;
 import com.OBS.service.interfaces.SystemFacade;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,12 +19,12 @@ import javax.json.bind.Jsonb;
 @Service
 public class StateOrdersService extends OrderService {
     @Autowired
-    public StateOrdersService(OrderRepository orderRepository, SystemFacade systemService, EmployeeService employeeService, ClientService clientService, Jsonb jsonb) {
-        super(orderRepository, systemService, employeeService, clientService, jsonb);
+    public StateOrdersService(OrderRepository orderRepository, SystemFacade systemService, EmployeeService employeeService, ClientService clientService, Jsonb jsonb, OrderExecutionService orderExecutionService, OrderEventService orderEventService, OrderCommandRegistry orderCommandRegistry, CriteriaCompiler criteriaCompiler, OrderQueryCache orderQueryCache) {
+        super(orderRepository, systemService, employeeService, clientService, jsonb, orderExecutionService, orderEventService, orderCommandRegistry, criteriaCompiler, orderQueryCache);
     }
 
     @Override
-    public void finishOrder(Long orderId, String decision) {
+    public OrderExecution finishOrder(Long orderId, String decision) {
         Order order = orderRepository.findById(orderId).orElseThrow(
                 () -> new IllegalStateException(orderNotFound(orderId))
         );
@@ -26,5 +32,6 @@ public class StateOrdersService extends OrderService {
         order.setDecision(decision);
 
         orderRepository.save(order);
+        return null;
     }
 }
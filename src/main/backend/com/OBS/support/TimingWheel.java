@@ -0,0 +1,113 @@
+package com.OBS.support;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Hierarchical timing wheel, every level has 64 slots and each slot of a level spans a whole lower level.
+// Entries are cascaded one level down whenever the lower levels wrap around, so adding, removing
+// and expiring an entry costs O(1) regardless of how many entries are scheduled
+public class TimingWheel<K> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final List<List<Set<K>>> levels;
+    private final Set<K> overflow;
+    private final Set<K> expired;
+    private final Map<K, Long> dueTicks;
+    private final Map<K, Set<K>> buckets;
+    private long currentTick;
+
+    public TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.levels = new ArrayList<>(LEVELS);
+        for (int level = 0; level < LEVELS; level++) {
+            List<Set<K>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++)
+                slots.add(new LinkedHashSet<>());
+            levels.add(slots);
+        }
+        this.overflow = new LinkedHashSet<>();
+        this.expired = new LinkedHashSet<>();
+        this.dueTicks = new HashMap<>();
+        this.buckets = new HashMap<>();
+    }
+
+    // Replaces the previous due time of given key
+    public synchronized void schedule(K key, long dueMillis) {
+        remove(key);
+        long dueTick = Math.max(dueMillis / tickMillis, currentTick);
+        dueTicks.put(key, dueTick);
+        place(key, dueTick);
+    }
+
+    public synchronized boolean remove(K key) {
+        Set<K> bucket = buckets.remove(key);
+        dueTicks.remove(key);
+        return bucket != null && bucket.remove(key);
+    }
+
+    public synchronized boolean contains(K key) {
+        return buckets.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return buckets.size();
+    }
+
+    // Moves the wheel forward to given time and returns keys that became due, in due order
+    public synchronized List<K> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<K> due = new ArrayList<>();
+        drain(expired, due);
+
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = LEVELS; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0)
+                    continue;
+                Set<K> cascaded = level == LEVELS ? overflow : slotOf(level, currentTick);
+                List<K> keys = new ArrayList<>(cascaded);
+                cascaded.clear();
+                for (K key : keys)
+                    place(key, dueTicks.get(key));
+            }
+            drain(slotOf(0, currentTick), due);
+            drain(expired, due);
+        }
+        for (K key : due) {
+            buckets.remove(key);
+            dueTicks.remove(key);
+        }
+        return due;
+    }
+
+    private void place(K key, long dueTick) {
+        Set<K> bucket;
+        if (dueTick <= currentTick)
+            bucket = expired;
+        else {
+            int level = 0;
+            while (level < LEVELS && (dueTick >>> (SLOT_BITS * (level + 1))) != (currentTick >>> (SLOT_BITS * (level + 1))))
+                level++;
+            bucket = level == LEVELS ? overflow : slotOf(level, dueTick);
+        }
+        bucket.add(key);
+        buckets.put(key, bucket);
+    }
+
+    private Set<K> slotOf(int level, long tick) {
+        return levels.get(level).get((int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1)));
+    }
+
+    private static <K> void drain(Set<K> bucket, List<K> due) {
+        due.addAll(bucket);
+        bucket.clear();
+    }
+}
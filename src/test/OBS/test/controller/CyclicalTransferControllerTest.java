@@ -1,6 +1,8 @@
 package test.controller;
 
 import com.OBS.ObsApplication;
+import com.OBS.alternativeBodies.CashFlowForecast;
+import com.OBS.alternativeBodies.CashFlowMonth;
 import com.OBS.alternativeBodies.KeyValueObject;
 import com.OBS.alternativeBodies.ValueAndPercent;
 import com.OBS.controller.CyclicalTransferController;
@@ -101,6 +103,18 @@ public class CyclicalTransferControllerTest {
 
     @Test
     @Order(4)
+    public void testGetClientForecast() {
+        CashFlowForecast forecast = cyclicalTransferController.getClientForecast(transferPerformer.getClientId(), 12);
+        assertEquals(12, forecast.getMonths().size());
+
+        CashFlowMonth currentMonth = forecast.getMonths().get(0);
+        assertTrue(currentMonth.getOutgoing() >= cyclicalTransfer.getAmount());
+        assertTrue(currentMonth.getIncoming() >= 0);
+        assertEquals(forecast.getCurrentBalance() + currentMonth.getIncoming() - currentMonth.getOutgoing(), currentMonth.getProjectedBalance(), 0.01f);
+    }
+
+    @Test
+    @Order(5)
     public void testDeletingCyclicalTransfer() {
         List<CyclicalTransfer> transfers = cyclicalTransferService.getTransfersBySpecification(findTransfer);
         assertFalse(transfers.isEmpty());
@@ -109,4 +123,38 @@ public class CyclicalTransferControllerTest {
             assertDoesNotThrow(() -> cyclicalTransferService.deleteTransfer(transfer.getTransferId()));
         }
     }
+
+    @Test
+    @Order(6)
+    public void testOrdersDifferingOnlyByDayAreNotDuplicates() {
+        cyclicalTransfer.setTitle("Czynsz z testu");
+        cyclicalTransferController.addTransfer(cyclicalTransfer);
+
+        CyclicalTransfer midMonth = new CyclicalTransfer();
+        midMonth.setAmount(cyclicalTransfer.getAmount());
+        midMonth.setCategory(cyclicalTransfer.getCategory());
+        midMonth.setReceiver(cyclicalTransfer.getReceiver());
+        midMonth.setTitle(cyclicalTransfer.getTitle());
+        midMonth.setAccountNumber(cyclicalTransfer.getAccountNumber());
+        midMonth.setReTransferDate(cyclicalTransfer.getReTransferDate().withDayOfMonth(15));
+        midMonth.setClient(transferPerformer);
+        assertDoesNotThrow(() -> cyclicalTransferController.addTransfer(midMonth));
+
+        CyclicalTransfer sameDay = new CyclicalTransfer();
+        sameDay.setAmount(cyclicalTransfer.getAmount());
+        sameDay.setCategory(cyclicalTransfer.getCategory());
+        sameDay.setReceiver(cyclicalTransfer.getReceiver());
+        sameDay.setTitle(cyclicalTransfer.getTitle());
+        sameDay.setAccountNumber(cyclicalTransfer.getAccountNumber());
+        sameDay.setReTransferDate(cyclicalTransfer.getReTransferDate().plusMonths(1));
+        sameDay.setClient(transferPerformer);
+        assertThrows(IllegalStateException.class, () -> cyclicalTransferController.addTransfer(sameDay));
+
+        Specifications<CyclicalTransfer> findRent = new Specifications<CyclicalTransfer>()
+                .add(new SearchCriteria("title", cyclicalTransfer.getTitle(), SearchOperation.EQUAL));
+        List<CyclicalTransfer> transfers = cyclicalTransferService.getTransfersBySpecification(findRent);
+        assertEquals(2, transfers.size());
+        for (CyclicalTransfer transfer : transfers)
+            cyclicalTransferService.deleteTransfer(transfer.getTransferId());
+    }
 }
@@ -0,0 +1,96 @@
+package test.controller;
+
+import com.OBS.ObsApplication;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static com.OBS.auth.AppUserRole.ADMIN;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Every list endpoint has to be answered with one select whatever the number of rows,
+// a lazy association loaded row by row during serialization shows up as extra statements.
+// Endpoints of one client may look the client up first, that is one more select at most
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = ObsApplication.class)
+@AutoConfigureMockMvc
+public class FetchPlanStatementCountTest {
+    @TestConfiguration
+    static class StatementCounting {
+        @Bean
+        public HibernatePropertiesCustomizer statementCounter() {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, SqlStatementCounter.INSTANCE);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private void assertStatements(String path, int maxStatements) throws Exception {
+        SqlStatementCounter.start();
+        List<String> statements;
+        try {
+            mockMvc.perform(get(path).with(user("admin").roles(ADMIN.name()))).andExpect(status().isOk());
+        } finally {
+            statements = SqlStatementCounter.stop();
+        }
+        assertTrue(statements.size() <= maxStatements,
+                path + " ran " + statements.size() + " statements, at most " + maxStatements + " expected:\n" + String.join("\n", statements));
+    }
+
+    @Test
+    public void testTransfersFetchClientsInOneSelect() throws Exception {
+        assertStatements("/dictionary/transfers", 1);
+        assertStatements("/dictionary/transfers/slim", 1);
+        assertStatements("/dictionary/cyclical-transfers", 1);
+        assertStatements("/dictionary/cyclical-transfers/slim", 1);
+    }
+
+    @Test
+    public void testLoansFetchClientsInOneSelect() throws Exception {
+        assertStatements("/dictionary/loans", 1);
+        assertStatements("/dictionary/loans/slim", 1);
+        // Rates are sent without their loan
+        assertStatements("/dictionary/loans-rates", 1);
+    }
+
+    @Test
+    public void testVisitsFetchEmployeesInOneSelect() throws Exception {
+        assertStatements("/dictionary/visits", 1);
+        assertStatements("/dictionary/visits/unassigned", 1);
+        assertStatements("/dictionary/visits/slim", 1);
+    }
+
+    @Test
+    public void testOrdersFetchPeopleInOneSelect() throws Exception {
+        assertStatements("/dictionary/orders", 1);
+        assertStatements("/dictionary/orders/priority", 1);
+        assertStatements("/dictionary/orders/slim", 1);
+        assertStatements("/dictionary/orders/count", 1);
+    }
+
+    @Test
+    public void testClientEndpointsFetchInOneSelect() throws Exception {
+        long clientId = 5L;
+        assertStatements("/transfers/client/" + clientId, 1);
+        assertStatements("/transfers/client/" + clientId + "/page", 1);
+        assertStatements("/cyclical-transfers/client/" + clientId, 1);
+        assertStatements("/cyclical-transfers/coming/client/" + clientId, 1);
+        assertStatements("/loans/client/" + clientId, 2);
+        assertStatements("/credit-cards/client/" + clientId, 2);
+        assertStatements("/orders/client/" + clientId, 2);
+    }
+}
@@ -3,10 +3,16 @@ package test.controller;
 import com.OBS.ObsApplication;
 import com.OBS.auth.entity.AppUser;
 import com.OBS.controller.ClientController;
+import com.OBS.alternativeBodies.BulkOrderDecisionReport;
+import com.OBS.alternativeBodies.OrderDecision;
+import com.OBS.alternativeBodies.OrderDecisionResult;
 import com.OBS.controller.CreditCardController;
+import com.OBS.controller.OrderController;
 import com.OBS.entity.*;
+import com.OBS.enums.OrderExecutionStatus;
 import com.OBS.enums.OrderType;
 import com.OBS.enums.SearchOperation;
+import com.OBS.repository.OrderExecutionRepository;
 import com.OBS.searchers.SearchCriteria;
 import com.OBS.searchers.specificators.Specifications;
 import com.OBS.service.AppUserService;
@@ -24,6 +30,7 @@ import org.springframework.test.context.junit4.SpringRunner;
 import javax.json.bind.Jsonb;
 import javax.persistence.EntityManagerFactory;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -37,8 +44,12 @@ public class OrderControllerTest {
     @Autowired
     private ClientController clientController;
     @Autowired
+    private OrderController orderController;
+    @Autowired
     private OrderService orderService;
     @Autowired
+    private OrderExecutionRepository executionRepository;
+    @Autowired
     private Jsonb jsonb;
     @Autowired
     AppUserService appUserService;
@@ -93,4 +104,109 @@ public class OrderControllerTest {
             assertDoesNotThrow(() -> orderService.deleteOrder(order.getOrder_Id()));
         }
     }
+
+    @Test
+    public void testBulkDecisionsReportEveryOrder() {
+        Order first = addCopyOfNewOrder();
+        Order second = addCopyOfNewOrder();
+        try {
+            BulkOrderDecisionReport report = orderController.finishOrders(Arrays.asList(
+                    new OrderDecision(first.getOrder_Id(), "rejected"),
+                    new OrderDecision(second.getOrder_Id(), "rejected"),
+                    new OrderDecision(second.getOrder_Id(), "accepted"),
+                    new OrderDecision(-1L, "rejected"),
+                    new OrderDecision(null, "rejected")
+            ));
+
+            assertEquals(5, report.getRequested());
+            assertEquals(2, report.getSucceeded());
+            assertEquals(3, report.getFailed());
+            assertTrue(result(report, first.getOrder_Id()).getSucceeded());
+            assertNull(result(report, first.getOrder_Id()).getExecutionStatus());
+            assertFalse(result(report, -1L).getSucceeded());
+            assertFalse(orderService.getOrder(first.getOrder_Id()).getIsActive());
+            assertFalse(orderService.getOrder(second.getOrder_Id()).getIsActive());
+
+            // Deciding again fails only the orders already decided
+            BulkOrderDecisionReport again = orderController.finishOrders(Arrays.asList(
+                    new OrderDecision(first.getOrder_Id(), "accepted")
+            ));
+            assertEquals(0, again.getSucceeded());
+            assertNotNull(again.getResults().get(0).getMessage());
+        } finally {
+            orderService.deleteOrder(first.getOrder_Id());
+            orderService.deleteOrder(second.getOrder_Id());
+        }
+    }
+
+    @Test
+    public void testBulkDecisionSkipsOrderAlreadyExecuting() {
+        Order running = addCopyOfNewOrder();
+        Order waiting = addCopyOfNewOrder();
+        try {
+            // Execution claimed by another instance after the bulk request first read the orders
+            OrderExecution execution = new OrderExecution(running.getOrder_Id());
+            execution.setStatus(OrderExecutionStatus.RUNNING);
+            execution.setAttempts(1);
+            execution.setLeaseExpiresAt(LocalDateTime.now().plusMinutes(10));
+            executionRepository.save(execution);
+
+            BulkOrderDecisionReport report = orderController.finishOrders(Arrays.asList(
+                    new OrderDecision(running.getOrder_Id(), "rejected"),
+                    new OrderDecision(waiting.getOrder_Id(), "rejected")
+            ));
+
+            assertEquals(1, report.getSucceeded());
+            OrderDecisionResult skipped = result(report, running.getOrder_Id());
+            assertFalse(skipped.getSucceeded());
+            assertTrue(skipped.getMessage().contains("running"));
+            assertTrue(orderService.getOrder(running.getOrder_Id()).getIsActive());
+            assertTrue(result(report, waiting.getOrder_Id()).getSucceeded());
+            assertFalse(orderService.getOrder(waiting.getOrder_Id()).getIsActive());
+        } finally {
+            orderService.deleteOrder(running.getOrder_Id());
+            orderService.deleteOrder(waiting.getOrder_Id());
+        }
+    }
+
+    @Test
+    public void testSingleDecisionRefusesDecidedAndExecutingOrders() {
+        Order rejected = addCopyOfNewOrder();
+        Order running = addCopyOfNewOrder();
+        try {
+            orderController.finishOrder(rejected.getOrder_Id(), "rejected");
+            assertThrows(IllegalStateException.class, () -> orderController.finishOrder(rejected.getOrder_Id(), "accepted"));
+            assertEquals("rejected", orderService.getOrder(rejected.getOrder_Id()).getDecision());
+
+            OrderExecution execution = new OrderExecution(running.getOrder_Id());
+            execution.setStatus(OrderExecutionStatus.RUNNING);
+            execution.setAttempts(1);
+            execution.setLeaseExpiresAt(LocalDateTime.now().plusMinutes(10));
+            executionRepository.save(execution);
+
+            assertThrows(IllegalStateException.class, () -> orderController.finishOrder(running.getOrder_Id(), "rejected"));
+            assertTrue(orderService.getOrder(running.getOrder_Id()).getIsActive());
+        } finally {
+            orderService.deleteOrder(rejected.getOrder_Id());
+            orderService.deleteOrder(running.getOrder_Id());
+        }
+    }
+
+    private Order addCopyOfNewOrder() {
+        Order order = new Order();
+        order.setIsActive(true);
+        order.setClient(newOrder.getClient());
+        order.setOrderType(newOrder.getOrderType());
+        order.setDecision("inProgress");
+        order.setCreateDate(LocalDateTime.now());
+        orderService.addOrder(order, newOrder.getRequestBody());
+        return order;
+    }
+
+    private static OrderDecisionResult result(BulkOrderDecisionReport report, Long orderId) {
+        for (OrderDecisionResult result : report.getResults())
+            if (orderId.equals(result.getOrderId()))
+                return result;
+        throw new IllegalStateException("No result for order " + orderId);
+    }
 }
@@ -0,0 +1,35 @@
+package test.controller;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Records the SQL prepared by the current thread between start and stop, registered as Hibernate's statement inspector.
+// Scheduled jobs and the order workers run on other threads, so they don't disturb the count
+public class SqlStatementCounter implements StatementInspector {
+    public static final SqlStatementCounter INSTANCE = new SqlStatementCounter();
+
+    private static final ThreadLocal<List<String>> statements = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    public static void start() {
+        statements.set(new ArrayList<>());
+    }
+
+    public static List<String> stop() {
+        List<String> recorded = statements.get();
+        statements.remove();
+        return recorded == null ? new ArrayList<>() : recorded;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        List<String> recorded = statements.get();
+        if (recorded != null)
+            recorded.add(sql);
+        return sql;
+    }
+}
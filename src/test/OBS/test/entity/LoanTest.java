@@ -2,8 +2,11 @@ package test.entity;
 
 import com.OBS.entity.Client;
 import com.OBS.entity.Loan;
+import com.OBS.entity.LoanInstallment;
 import org.junit.Test;
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -19,4 +22,80 @@ public class LoanTest {
         assertEquals(LocalDate.now().plusMonths(26),newLoan.getEstimatedEndDate());
         assertEquals(40000f,newLoan.getBasicLoanAmount().floatValue());
     }
+
+    @Test
+    public void testLoanWithoutRatesIsRejected(){
+        assertThrows(IllegalStateException.class, () -> new Loan(LocalDate.now(), 0, 40000f, new Client()));
+        assertThrows(IllegalStateException.class, () -> new Loan(LocalDate.now(), -3, 40000f, new Client()));
+    }
+
+    @Test
+    public void testPenaltyForOverdueRate(){
+        Loan loan = new Loan(
+                LocalDate.of(2021, 1, 10),
+                12,
+                12000f,
+                new Client()
+        );
+        LocalDate payDay = loan.getNextRatePayDay();
+        assertEquals(0, loan.overdueMonths(payDay.minusDays(1)));
+        assertEquals(1, loan.overdueMonths(payDay));
+        assertEquals(3, loan.overdueMonths(payDay.plusMonths(2).plusDays(5)));
+
+        float toRepaidOffBefore = loan.getToRepaidOff();
+        float interestBefore = loan.getInterestAmount();
+        loan.applyPenalty(2);
+
+        assertEquals(2 * loan.getBasicRateAmount(), loan.getPenaltyAmount(), 0.01f);
+        float newInterest = loan.getInterestAmount() - interestBefore;
+        assertEquals(toRepaidOffBefore + loan.getPenaltyAmount() + newInterest, loan.getToRepaidOff(), 0.01f);
+        assertTrue(loan.getRatesLeftToPay() >= 12);
+    }
+
+    @Test
+    public void testPenaltyChargedOncePerPeriod(){
+        Loan loan = new Loan(
+                LocalDate.of(2021, 1, 10),
+                12,
+                12000f,
+                new Client()
+        );
+        LocalDate payDay = loan.getNextRatePayDay();
+        assertEquals(2, loan.penalise(payDay.plusMonths(1)));
+        assertEquals(payDay.plusMonths(1), loan.getPenalisedThrough());
+
+        float penaltyBefore = loan.getPenaltyAmount();
+        assertEquals(0, loan.penalise(payDay.plusMonths(1).plusDays(10)));
+        assertEquals(penaltyBefore, loan.getPenaltyAmount(), 0.001f);
+
+        // Only the period that became overdue since the last run is charged
+        assertEquals(1, loan.penalise(payDay.plusMonths(2)));
+        assertEquals(penaltyBefore + loan.getRateAmount(), loan.getPenaltyAmount(), 0.01f);
+
+        // After the overdue rate is paid the next pay day is still inside the charged periods
+        loan.setNextRatePayDay(payDay.plusMonths(1));
+        assertEquals(0, loan.penalise(payDay.plusMonths(2)));
+        assertEquals(1, loan.penalise(payDay.plusMonths(3)));
+    }
+
+    @Test
+    public void testAmortizationSchedule(){
+        Loan loan = new Loan(
+                LocalDate.of(2021, 1, 10),
+                26,
+                40000f,
+                new Client()
+        );
+        List<LoanInstallment> schedule = loan.buildSchedule();
+        assertEquals(26, schedule.size());
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (LoanInstallment installment : schedule)
+            total = total.add(installment.getAmount());
+
+        assertEquals(loan.getToRepaidOff(), total.floatValue(), 0.01f);
+        assertEquals(0, BigDecimal.ZERO.compareTo(schedule.get(25).getRemainingPrincipal()));
+        assertEquals(loan.getNextRatePayDay().plusMonths(25), schedule.get(25).getDueDate());
+        assertEquals(schedule.get(0).getAmount(), schedule.get(24).getAmount());
+    }
 }
@@ -0,0 +1,198 @@
+package test.searchers;
+
+import com.OBS.ObsApplication;
+import com.OBS.entity.Order;
+import com.OBS.entity.Transfer;
+import com.OBS.enums.TransferCategory;
+import com.OBS.repository.OrderRepository;
+import com.OBS.repository.TransferRepository;
+import com.OBS.searchers.SearchCriteria;
+import com.OBS.searchers.specificators.CriteriaCompiler;
+import com.OBS.searchers.specificators.ImmutableSpecification;
+import com.OBS.searchers.specificators.SpecificationQueries;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+import test.controller.SqlStatementCounter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static com.OBS.enums.OrderType.*;
+import static com.OBS.enums.SearchOperation.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Checks the SQL Hibernate actually prepares for optimized criteria against the SQL of the same criteria
+// compiled one by one, and that both select the same rows as the criteria checked in Java
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = ObsApplication.class)
+@AutoConfigureMockMvc
+public class CriteriaOptimizerSqlTest {
+    @TestConfiguration
+    static class StatementCounting {
+        @Bean
+        public HibernatePropertiesCustomizer statementCounter() {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, SqlStatementCounter.INSTANCE);
+        }
+    }
+
+    @Autowired
+    private CriteriaCompiler criteriaCompiler;
+    @Autowired
+    private SpecificationQueries specificationQueries;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Test
+    public void testInequalitiesAreSentAsOneNotIn() {
+        List<String> excluded = Arrays.asList(changeEmployee.getType(), changeUser.getType(), createUser.getType());
+        List<SearchCriteria> roleFilter = new ArrayList<>();
+        roleFilter.add(new SearchCriteria("employee", null, EQUAL_NULL));
+        for (String orderType : excluded)
+            roleFilter.add(new SearchCriteria("orderType", orderType, NOT_EQUAL));
+        ImmutableSpecification<Order> unassigned = ImmutableSpecification.of(criteriaCompiler, Order.class).and(roleFilter);
+
+        ImmutableSpecification<Order> unoptimized = unoptimized(Order.class, roleFilter);
+
+        String rawSql = singleStatement(() -> specificationQueries.count(Order.class, unoptimized));
+        String sql = singleStatement(() -> specificationQueries.count(Order.class, unassigned));
+        assertEquals(excluded.size(), occurrences(rawSql, "<>"), rawSql);
+        assertFalse(isNotIn(rawSql, excluded.size()), rawSql);
+        assertTrue(isNotIn(sql, excluded.size()), sql);
+        assertEquals(0, occurrences(sql, "<>"), sql);
+
+        long expected = 0;
+        for (Order order : orderRepository.findAll())
+            if (order.getEmployee() == null && !excluded.contains(order.getOrderType()))
+                expected++;
+        assertEquals(expected, specificationQueries.count(Order.class, unoptimized));
+        assertEquals(expected, specificationQueries.count(Order.class, unassigned));
+    }
+
+    @Test
+    public void testNotInPredicate() {
+        List<String> excluded = Arrays.asList(blockCreditCard.getType(), loanRequest.getType());
+        ImmutableSpecification<Order> notIn = ImmutableSpecification.of(criteriaCompiler, Order.class)
+                .and("orderType", excluded, NOT_IN);
+
+        List<SearchCriteria> inequalities = new ArrayList<>();
+        for (String orderType : excluded)
+            inequalities.add(new SearchCriteria("orderType", orderType, NOT_EQUAL));
+        ImmutableSpecification<Order> unoptimized = unoptimized(Order.class, inequalities);
+        ImmutableSpecification<Order> optimized = ImmutableSpecification.of(criteriaCompiler, Order.class).and(inequalities);
+
+        String rawSql = singleStatement(() -> specificationQueries.count(Order.class, unoptimized));
+        String sql = singleStatement(() -> specificationQueries.count(Order.class, notIn));
+        assertEquals(excluded.size(), occurrences(rawSql, "<>"), rawSql);
+        assertTrue(isNotIn(sql, excluded.size()), sql);
+        assertEquals(0, occurrences(sql, "<>"), sql);
+        // Inequalities of one key are merged into the same statement as the explicit NOT IN
+        assertEquals(compact(sql), compact(singleStatement(() -> specificationQueries.count(Order.class, optimized))));
+
+        List<Order> orders = orderRepository.findAll();
+        long expected = 0;
+        for (Order order : orders)
+            if (!excluded.contains(order.getOrderType()))
+                expected++;
+        assertEquals(expected, specificationQueries.count(Order.class, unoptimized));
+        assertEquals(expected, specificationQueries.count(Order.class, notIn));
+
+        // Nothing excluded matches every order instead of sending "not in ()"
+        ImmutableSpecification<Order> nothingExcluded = ImmutableSpecification.of(criteriaCompiler, Order.class)
+                .and("orderType", Collections.emptyList(), NOT_IN);
+        assertEquals(orders.size(), specificationQueries.count(Order.class, nothingExcluded));
+    }
+
+    @Test
+    public void testAlternativesAreSentAsOneIn() {
+        List<String> categories = new ArrayList<>();
+        List<List<SearchCriteria>> alternatives = new ArrayList<>();
+        for (TransferCategory category : Arrays.asList(TransferCategory.BILLS, TransferCategory.COMMON_EXPENSES,
+                TransferCategory.ENTERTAINMENT, TransferCategory.HEALTHCARE, TransferCategory.OTHERS)) {
+            categories.add(category.getCategory());
+            alternatives.add(Arrays.asList(
+                    new SearchCriteria("type", "OUTGOING", EQUAL),
+                    new SearchCriteria("category", category.getCategory(), EQUAL)
+            ));
+        }
+        ImmutableSpecification<Transfer> outgoing = ImmutableSpecification.of(criteriaCompiler, Transfer.class).andAny(alternatives);
+        List<ImmutableSpecification<Transfer>> members = new ArrayList<>();
+        for (List<SearchCriteria> alternative : alternatives)
+            members.add(unoptimized(Transfer.class, alternative));
+        @SuppressWarnings("unchecked")
+        ImmutableSpecification<Transfer> unoptimized = ImmutableSpecification.of(criteriaCompiler, Transfer.class)
+                .or(members.toArray(new ImmutableSpecification[0]));
+
+        String rawSql = singleStatement(() -> specificationQueries.count(Transfer.class, unoptimized));
+        String sql = singleStatement(() -> specificationQueries.count(Transfer.class, outgoing));
+        // Every alternative repeats the type check and compares the category on its own
+        assertEquals(alternatives.size() * 2, occurrences(rawSql, "=?"), rawSql);
+        assertEquals(alternatives.size() - 1, occurrences(rawSql, ")or("), rawSql);
+        assertTrue(compact(sql).matches(".*[\\w.]+in" + list(categories.size()) + ".*"), sql);
+        assertEquals(1, occurrences(sql, "=?"), sql);
+        assertEquals(0, occurrences(sql, ")or("), sql);
+
+        long expected = 0;
+        for (Transfer transfer : transferRepository.findAll())
+            if ("OUTGOING".equals(transfer.getType()) && categories.contains(transfer.getCategory()))
+                expected++;
+        assertEquals(expected, specificationQueries.count(Transfer.class, unoptimized));
+        assertEquals(expected, specificationQueries.count(Transfer.class, outgoing));
+    }
+
+    // Same criteria added one at a time, the compiler never gets to merge them
+    private <T> ImmutableSpecification<T> unoptimized(Class<T> entityType, List<SearchCriteria> criteria) {
+        ImmutableSpecification<T> specification = ImmutableSpecification.of(criteriaCompiler, entityType);
+        for (SearchCriteria searchCriteria : criteria)
+            specification = specification.and(searchCriteria);
+        return specification;
+    }
+
+    private static String singleStatement(Supplier<?> query) {
+        SqlStatementCounter.start();
+        List<String> statements;
+        try {
+            query.get();
+        } finally {
+            statements = SqlStatementCounter.stop();
+        }
+        assertEquals(1, statements.size(), String.join("\n", statements));
+        return statements.get(0);
+    }
+
+    // Hibernate renders a negated IN either as "x not in (...)" or as "not (x in (...))"
+    private static boolean isNotIn(String sql, int values) {
+        String list = list(values);
+        return compact(sql).matches(".*([\\w.]+notin" + list + "|not\\([\\w.]+in" + list + "\\)).*");
+    }
+
+    // Placeholders of an IN list, in_clause_parameter_padding may repeat the last one up to a power of two
+    private static String list(int values) {
+        int padded = Integer.highestOneBit(values) == values ? values : Integer.highestOneBit(values) << 1;
+        return "\\(\\?(,\\?){" + (values - 1) + "," + (padded - 1) + "}\\)";
+    }
+
+    private static int occurrences(String sql, String fragment) {
+        String compacted = compact(sql);
+        int count = 0;
+        for (int from = compacted.indexOf(fragment); from >= 0; from = compacted.indexOf(fragment, from + fragment.length()))
+            count++;
+        return count;
+    }
+
+    private static String compact(String sql) {
+        return sql.toLowerCase().replaceAll("\\s+", "");
+    }
+}
@@ -0,0 +1,143 @@
+package test.searchers;
+
+import com.OBS.enums.SearchOperation;
+import com.OBS.searchers.CriteriaOptimizer;
+import com.OBS.searchers.SearchCriteria;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static com.OBS.enums.SearchOperation.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CriteriaOptimizerTest {
+    private static SearchCriteria criteria(String key, Object value, SearchOperation operation) {
+        return new SearchCriteria(key, value, operation);
+    }
+
+    @Test
+    public void testMergesInequalitiesIntoNotIn() {
+        List<SearchCriteria> optimized = CriteriaOptimizer.optimize(Arrays.asList(
+                criteria("employee", null, EQUAL_NULL),
+                criteria("orderType", "a", NOT_EQUAL),
+                criteria("orderType", "b", NOT_EQUAL),
+                criteria("orderType", Arrays.asList("b", "c"), NOT_IN)
+        ));
+
+        assertEquals(2, optimized.size());
+        assertEquals(EQUAL_NULL, optimized.get(0).getOperation());
+        assertEquals(NOT_IN, optimized.get(1).getOperation());
+        assertEquals(Arrays.asList("a", "b", "c"), optimized.get(1).getValue());
+    }
+
+    @Test
+    public void testIntersectsEqualities() {
+        List<SearchCriteria> optimized = CriteriaOptimizer.optimize(Arrays.asList(
+                criteria("category", Arrays.asList("Rachunki", "Jedzenie", "Paliwo"), IN),
+                criteria("category", Arrays.asList("Jedzenie", "Paliwo"), IN),
+                criteria("category", "Paliwo", NOT_EQUAL)
+        ));
+
+        assertEquals(1, optimized.size());
+        assertEquals(EQUAL, optimized.get(0).getOperation());
+        assertEquals("Jedzenie", optimized.get(0).getValue());
+    }
+
+    @Test
+    public void testContradictionBecomesEmptyIn() {
+        List<SearchCriteria> optimized = CriteriaOptimizer.optimize(Arrays.asList(
+                criteria("type", "INCOMING", EQUAL),
+                criteria("type", "OUTGOING", EQUAL)
+        ));
+
+        assertEquals(1, optimized.size());
+        assertEquals(IN, optimized.get(0).getOperation());
+        assertTrue(((Collection<?>) optimized.get(0).getValue()).isEmpty());
+    }
+
+    @Test
+    public void testKeepsTightestRangeBounds() {
+        LocalDateTime from = LocalDateTime.of(2021, 1, 1, 0, 0);
+        List<SearchCriteria> optimized = CriteriaOptimizer.optimize(Arrays.asList(
+                criteria("amount", 10f, GREATER_THAN_EQUAL),
+                criteria("amount", 50f, GREATER_THAN_EQUAL),
+                criteria("amount", 50f, GREATER_THAN),
+                criteria("amount", 400f, LESS_THAN_EQUAL),
+                criteria("amount", 100f, LESS_THAN_EQUAL),
+                criteria("transferDate", from, GREATER_THAN_EQUAL_DATE),
+                criteria("transferDate", from.minusDays(3), GREATER_THAN_EQUAL_DATE)
+        ));
+
+        assertEquals(3, optimized.size());
+        assertEquals(GREATER_THAN, optimized.get(0).getOperation());
+        assertEquals(50f, optimized.get(0).getValue());
+        assertEquals(LESS_THAN_EQUAL, optimized.get(1).getOperation());
+        assertEquals(100f, optimized.get(1).getValue());
+        assertEquals(from, optimized.get(2).getValue());
+    }
+
+    @Test
+    public void testLeavesUnknownCriteriaAlone() {
+        List<SearchCriteria> optimized = CriteriaOptimizer.optimize(Arrays.asList(
+                criteria("name", "Jan", MATCH),
+                criteria("name", "Jan", MATCH),
+                criteria("name", "a", GREATER_THAN),
+                criteria("name", "b", GREATER_THAN),
+                criteria("pesel", "123", EQUAL_JOIN_USER)
+        ));
+
+        assertEquals(4, optimized.size());
+        assertEquals(MATCH, optimized.get(0).getOperation());
+        assertEquals("b", optimized.get(2).getValue());
+        assertEquals(EQUAL_JOIN_USER, optimized.get(3).getOperation());
+    }
+
+    @Test
+    public void testHoistsCommonPrefixAndMergesAlternatives() {
+        List<List<SearchCriteria>> categories = new ArrayList<>();
+        for (String category : Arrays.asList("Rachunki", "Jedzenie", "Paliwo"))
+            categories.add(Arrays.asList(
+                    criteria("client", 1L, EQUAL),
+                    criteria("type", "OUTGOING", EQUAL),
+                    criteria("category", category, EQUAL)
+            ));
+
+        CriteriaOptimizer.HoistedCriteria hoisted = CriteriaOptimizer.hoist(categories);
+
+        assertTrue(hoisted.getAlternatives().isEmpty());
+        assertEquals(3, hoisted.getCommon().size());
+        assertEquals(IN, hoisted.getCommon().get(2).getOperation());
+        assertEquals(Arrays.asList("Rachunki", "Jedzenie", "Paliwo"), hoisted.getCommon().get(2).getValue());
+    }
+
+    @Test
+    public void testHoistKeepsDifferentAlternatives() {
+        CriteriaOptimizer.HoistedCriteria hoisted = CriteriaOptimizer.hoist(Arrays.asList(
+                Arrays.asList(criteria("client", 1L, EQUAL), criteria("amount", 100f, GREATER_THAN)),
+                Arrays.asList(criteria("client", 1L, EQUAL), criteria("category", "Paliwo", EQUAL))
+        ));
+
+        assertEquals(1, hoisted.getCommon().size());
+        assertEquals(2, hoisted.getAlternatives().size());
+        assertEquals(Collections.singletonList("amount"), keys(hoisted.getAlternatives().get(0)));
+
+        CriteriaOptimizer.HoistedCriteria alwaysTrue = CriteriaOptimizer.hoist(Arrays.asList(
+                Collections.singletonList(criteria("client", 1L, EQUAL)),
+                Arrays.asList(criteria("client", 1L, EQUAL), criteria("category", "Paliwo", EQUAL))
+        ));
+        assertTrue(alwaysTrue.getAlternatives().isEmpty());
+        assertEquals(1, alwaysTrue.getCommon().size());
+    }
+
+    private static List<String> keys(List<SearchCriteria> criteria) {
+        List<String> keys = new ArrayList<>();
+        for (SearchCriteria searchCriteria : criteria)
+            keys.add(searchCriteria.getKey());
+        return keys;
+    }
+}
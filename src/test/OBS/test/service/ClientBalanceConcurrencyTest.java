@@ -0,0 +1,188 @@
+package test.service;
+
+import com.OBS.ObsApplication;
+import com.OBS.entity.Client;
+import com.OBS.entity.Transfer;
+import com.OBS.repository.ClientMonthlyRollupRepository;
+import com.OBS.repository.ClientRepository;
+import com.OBS.repository.TransferRepository;
+import com.OBS.service.AccountNumberCache;
+import com.OBS.service.TransferService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.OBS.enums.TransferType.OUTGOING;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the real transfer path on clients of its own, the shared test clients keep their balances
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = ObsApplication.class)
+@AutoConfigureMockMvc
+public class ClientBalanceConcurrencyTest {
+    private static final int THREADS = 32;
+    private static final int TRANSFERS_PER_DIRECTION = 200;
+    private static final float INITIAL_BALANCE = 1000f;
+    private static final String EXTERNAL_ACCOUNT = "00000000000000000000000000";
+
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private ClientRepository clientRepository;
+    @Autowired
+    private TransferRepository transferRepository;
+    @Autowired
+    private ClientMonthlyRollupRepository rollupRepository;
+    @Autowired
+    private AccountNumberCache accountNumberCache;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Client first;
+    private Client second;
+
+    @Before
+    public void createClients() {
+        first = clientRepository.save(newClient("Balance Tester First"));
+        second = clientRepository.save(newClient("Balance Tester Second"));
+    }
+
+    @After
+    public void removeClients() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (Client client : Arrays.asList(first, second)) {
+            transactionTemplate.execute(status -> {
+                transferRepository.deleteAll(transferRepository.findAllByClient_clientId(client.getClientId()));
+                rollupRepository.deleteAllByClientId(client.getClientId());
+                clientRepository.deleteById(client.getClientId());
+                return null;
+            });
+            accountNumberCache.invalidate(client.getAccountNumber());
+        }
+    }
+
+    @Test
+    public void concurrentOppositeTransfersDoNotLoseUpdates() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < TRANSFERS_PER_DIRECTION * 2; i++) {
+            boolean forward = i % 2 == 0;
+            futures.add(executor.submit(() -> transferService.performTransfer(
+                    forward ? transfer(first, second.getAccountNumber(), 1f) : transfer(second, first.getAccountNumber(), 1f)
+            )));
+        }
+        for (Future<?> future : futures)
+            future.get();
+        executor.shutdown();
+
+        assertEquals(INITIAL_BALANCE, balanceOf(first), 0.001f);
+        assertEquals(INITIAL_BALANCE, balanceOf(second), 0.001f);
+        assertEquals(TRANSFERS_PER_DIRECTION * 2, transferRepository.findAllByClient_clientId(first.getClientId()).size());
+    }
+
+    @Test
+    public void concurrentTransfersNeverOverdrawAccount() throws Exception {
+        float amount = INITIAL_BALANCE / 10;
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++)
+            futures.add(executor.submit(() -> {
+                transferService.performTransfer(transfer(first, EXTERNAL_ACCOUNT, amount));
+                succeeded.incrementAndGet();
+            }));
+        int rejected = 0;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException, e.getCause().toString());
+                rejected++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(10, succeeded.get());
+        assertEquals(THREADS - 10, rejected);
+        assertEquals(0f, balanceOf(first), 0.01f);
+        assertEquals(10, transferRepository.findAllByClient_clientId(first.getClientId()).size());
+    }
+
+    @Test
+    public void loadedClientIsNotWrittenBackWithOldBalance() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.execute(status -> {
+            Client sender = clientRepository.findById(first.getClientId()).orElseThrow(IllegalStateException::new);
+            transferService.performTransfer(transfer(first, second.getAccountNumber(), 100f));
+            assertEquals(INITIAL_BALANCE - 100f, sender.getBalance(), 0.001f);
+
+            // Dirty entity is flushed on commit together with its balance
+            sender.setCity("Kraków");
+            return null;
+        });
+
+        assertEquals(INITIAL_BALANCE - 100f, balanceOf(first), 0.001f);
+        assertEquals(INITIAL_BALANCE + 100f, balanceOf(second), 0.001f);
+    }
+
+    private float balanceOf(Client client) {
+        return clientRepository.findById(client.getClientId()).orElseThrow(IllegalStateException::new).getBalance();
+    }
+
+    private static Transfer transfer(Client sender, String toAccountNumber, float amount) {
+        Transfer transfer = new Transfer(
+                amount,
+                LocalDateTime.now(),
+                "Inne",
+                OUTGOING.name(),
+                "Balance Tester",
+                "Przelew z testu",
+                toAccountNumber
+        );
+        transfer.setClient(sender);
+        return transfer;
+    }
+
+    private static Client newClient(String fullName) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder accountNumber = new StringBuilder("99");
+        for (int i = 0; i < 24; i++)
+            accountNumber.append(random.nextInt(10));
+        return new Client(
+                fullName.replace(' ', '.').toLowerCase() + "@test.com",
+                fullName,
+                accountNumber.toString(),
+                INITIAL_BALANCE,
+                String.valueOf(random.nextLong(10_000_000_000L, 100_000_000_000L)),
+                "TST" + random.nextInt(100_000, 1_000_000),
+                LocalDate.of(1990, 1, 1),
+                "Testowa 1",
+                "Kraków",
+                "30-001",
+                0,
+                null
+        );
+    }
+}
@@ -7,6 +7,8 @@ import com.OBS.entity.Client;
 import com.OBS.entity.Loan;
 import com.OBS.entity.LoanRate;
 import com.OBS.entity.Order;
+import com.OBS.entity.OrderExecution;
+import com.OBS.enums.OrderExecutionStatus;
 import com.OBS.enums.OrderType;
 import com.OBS.enums.SearchOperation;
 import com.OBS.lab.BuilderSpecification;
@@ -104,7 +106,17 @@ public class LoanServiceTest {
 
         orderService.addOrder(newOrder, newOrder.getRequestBody());
 
-        assertThrows(IllegalStateException.class,()->orderService.finishOrder(newOrder.getOrder_Id(), "accepted"));
+        assertDoesNotThrow(()->orderService.finishOrder(newOrder.getOrder_Id(), "accepted"));
+
+        // Loan is created by the order execution queue, second active loan fails there without retries
+        OrderExecution execution = orderService.getOrderExecution(newOrder.getOrder_Id());
+        for (int i = 0; i < 100 && execution.getStatus() != OrderExecutionStatus.FAILED; i++) {
+            assertDoesNotThrow(()->Thread.sleep(100));
+            execution = orderService.getOrderExecution(newOrder.getOrder_Id());
+        }
+        assertEquals(OrderExecutionStatus.FAILED, execution.getStatus());
+        assertEquals(1, execution.getAttempts());
+        assertTrue(orderService.getOrder(newOrder.getOrder_Id()).getIsActive());
 
         assertDoesNotThrow(()->orderService.deleteOrder(newOrder.getOrder_Id()));
 
@@ -116,6 +128,7 @@ public class LoanServiceTest {
 
         Loan dbLoan = loanService.getClientLoan(dbClient.getClientId()).get();
         Loan originalLoan = dbLoan;
+        int ratesPaidBefore = dbLoan.getRatesPaid() == null ? 0 : dbLoan.getRatesPaid();
 
         for (int i = 0; i < 3; i++)
             loanService.realizePayment(dbLoan.getClient().getClientId());
@@ -125,6 +138,7 @@ public class LoanServiceTest {
         assertEquals(originalLoan.getNextRatePayDay().plusMonths(3), dbLoan.getNextRatePayDay());
 
         assertEquals(3, loanRateService.getNumOfRatesPayed(dbLoan.getLoanId()));
+        assertEquals(ratesPaidBefore + 3, dbLoan.getRatesPaid());
 
         ArrayList<LoanRate> listOfRates = (ArrayList<LoanRate>) loanRateService.getRates(dbLoan.getLoanId());
 
@@ -0,0 +1,47 @@
+package test.service;
+
+import com.OBS.alternativeBodies.LoanSimulationBody;
+import com.OBS.alternativeBodies.LoanSimulationResult;
+import com.OBS.entity.Client;
+import com.OBS.entity.Loan;
+import com.OBS.service.LoanSimulationService;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanSimulationServiceTest {
+    private final LoanSimulationService loanSimulationService = new LoanSimulationService();
+
+    @Test
+    public void testScenariosMatchCalculatedLoans() {
+        List<Float> amounts = Arrays.asList(1000f, 12500f, 40000f);
+        List<Integer> ratesNumbers = Arrays.asList(6, 12, 26, 120);
+
+        LoanSimulationResult result = loanSimulationService.simulate(new LoanSimulationBody(amounts, ratesNumbers));
+        assertEquals(amounts.size() * ratesNumbers.size(), result.getRateAmount().length);
+
+        for (int a = 0; a < amounts.size(); a++)
+            for (int r = 0; r < ratesNumbers.size(); r++) {
+                Loan loan = new Loan(LocalDate.now(), ratesNumbers.get(r), amounts.get(a), new Client());
+                int index = a * ratesNumbers.size() + r;
+                assertEquals(loan.getRateAmount(), result.getRateAmount()[index]);
+                assertEquals(loan.getToRepaidOff(), result.getToRepaidOff()[index]);
+                assertEquals(loan.getInterestAmount(), result.getInterestAmount()[index]);
+            }
+    }
+
+    @Test
+    public void testRejectsInvalidGrid() {
+        assertThrows(IllegalStateException.class, () -> loanSimulationService.simulate(
+                new LoanSimulationBody(Collections.singletonList(1000f), Collections.singletonList(0))
+        ));
+        assertThrows(IllegalStateException.class, () -> loanSimulationService.simulate(
+                new LoanSimulationBody(Collections.singletonList(-5f), Collections.singletonList(12))
+        ));
+    }
+}
@@ -0,0 +1,91 @@
+package test.service;
+
+import com.OBS.ObsApplication;
+import com.OBS.entity.Order;
+import com.OBS.entity.OrderExecution;
+import com.OBS.enums.OrderExecutionStatus;
+import com.OBS.repository.OrderExecutionRepository;
+import com.OBS.service.OrderExecutionService;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = ObsApplication.class)
+@AutoConfigureMockMvc
+public class OrderExecutionServiceTest {
+    // Ids no order has, executions of them fail on the missing order without retries
+    private static final Long EXPIRED_ORDER_ID = -1701L;
+    private static final Long LEASED_ORDER_ID = -1702L;
+    private static final Long MISSING_ORDER_ID = -1703L;
+
+    @Autowired
+    private OrderExecutionService executionService;
+    @Autowired
+    private OrderExecutionRepository executionRepository;
+
+    @After
+    public void removeExecutions() {
+        for (Long orderId : Arrays.asList(EXPIRED_ORDER_ID, LEASED_ORDER_ID, MISSING_ORDER_ID))
+            executionRepository.findByOrderId(orderId).ifPresent(executionRepository::delete);
+    }
+
+    @Test
+    public void testHeartbeatRequeuesOnlyExpiredLeases() {
+        LocalDateTime leaseExpiresAt = LocalDateTime.now().plusMinutes(10);
+        executionRepository.save(running(EXPIRED_ORDER_ID, LocalDateTime.now().minusMinutes(1)));
+        executionRepository.save(running(LEASED_ORDER_ID, leaseExpiresAt));
+
+        executionService.heartbeat();
+
+        // Another instance still holds this one, it must not be run twice
+        OrderExecution leased = executionService.getExecution(LEASED_ORDER_ID);
+        assertEquals(OrderExecutionStatus.RUNNING, leased.getStatus());
+        assertEquals(1, leased.getAttempts());
+
+        OrderExecution expired = waitForFinish(EXPIRED_ORDER_ID);
+        assertEquals(OrderExecutionStatus.FAILED, expired.getStatus());
+        assertEquals(2, expired.getAttempts());
+        assertNull(expired.getLeaseExpiresAt());
+    }
+
+    @Test
+    public void testFinishedExecutionReleasesLease() {
+        Order order = new Order();
+        order.setOrder_Id(MISSING_ORDER_ID);
+        executionService.enqueue(order);
+
+        OrderExecution execution = waitForFinish(MISSING_ORDER_ID);
+        assertEquals(OrderExecutionStatus.FAILED, execution.getStatus());
+        assertEquals(1, execution.getAttempts());
+        assertNull(execution.getLeaseExpiresAt());
+        assertNotNull(execution.getLastError());
+    }
+
+    private static OrderExecution running(Long orderId, LocalDateTime leaseExpiresAt) {
+        OrderExecution execution = new OrderExecution(orderId);
+        execution.setStatus(OrderExecutionStatus.RUNNING);
+        execution.setAttempts(1);
+        execution.setLeaseExpiresAt(leaseExpiresAt);
+        return execution;
+    }
+
+    private OrderExecution waitForFinish(Long orderId) {
+        OrderExecution execution = executionService.getExecution(orderId);
+        for (int i = 0; i < 100 && execution.getStatus() != OrderExecutionStatus.FAILED
+                && execution.getStatus() != OrderExecutionStatus.DONE; i++) {
+            assertDoesNotThrow(() -> Thread.sleep(100));
+            execution = executionService.getExecution(orderId);
+        }
+        return execution;
+    }
+}
@@ -0,0 +1,110 @@
+package test.service;
+
+import com.OBS.ObsApplication;
+import com.OBS.alternativeBodies.TransferListItem;
+import com.OBS.alternativeBodies.VisitListItem;
+import com.OBS.entity.Transfer;
+import com.OBS.entity.Visit;
+import com.OBS.enums.SearchOperation;
+import com.OBS.repository.TransferRepository;
+import com.OBS.repository.VisitRepository;
+import com.OBS.searchers.specificators.CriteriaCompiler;
+import com.OBS.searchers.specificators.ImmutableSpecification;
+import com.OBS.searchers.specificators.Projection;
+import com.OBS.searchers.specificators.SpecificationQueries;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = ObsApplication.class)
+@AutoConfigureMockMvc
+public class SpecificationQueriesTest {
+    @Autowired
+    private SpecificationQueries specificationQueries;
+
+    @Autowired
+    private CriteriaCompiler criteriaCompiler;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private VisitRepository visitRepository;
+
+    @Test
+    public void testTerminalOperationsMatchEntityQueries() {
+        ImmutableSpecification<Transfer> outgoing = ImmutableSpecification.of(criteriaCompiler, Transfer.class)
+                .and("type", "OUTGOING", SearchOperation.EQUAL);
+        List<Transfer> transfers = transferRepository.findAll(outgoing);
+
+        double expectedSum = 0;
+        for (Transfer transfer : transfers)
+            expectedSum += transfer.getAmount() == null ? 0 : transfer.getAmount();
+
+        assertEquals(transfers.size(), specificationQueries.count(Transfer.class, outgoing));
+        assertEquals(!transfers.isEmpty(), specificationQueries.exists(Transfer.class, outgoing));
+        assertEquals(expectedSum, specificationQueries.sum(Transfer.class, "amount", outgoing).doubleValue(), 0.01 * transfers.size() + 0.01);
+
+        ImmutableSpecification<Transfer> nothing = outgoing.and("type", "INCOMING", SearchOperation.EQUAL);
+        assertEquals(0, specificationQueries.count(Transfer.class, nothing));
+        assertFalse(specificationQueries.exists(Transfer.class, nothing));
+        assertEquals(BigDecimal.ZERO, specificationQueries.sum(Transfer.class, "amount", nothing));
+    }
+
+    @Test
+    public void testProjectionsReadDeclaredColumns() {
+        Projection<Transfer, TransferListItem> transferItem = Projection.of(Transfer.class, TransferListItem.class)
+                .column("transferId")
+                .column("amount")
+                .column("transferDate")
+                .column("category")
+                .column("type")
+                .column("receiver_sender")
+                .column("title")
+                .column("toAccountNumber")
+                .column("clientId", "client.clientId");
+        List<TransferListItem> items = specificationQueries.findAll(transferItem, null, Sort.by(Sort.Direction.ASC, "transferId"));
+        List<Transfer> transfers = transferRepository.findAll(Sort.by(Sort.Direction.ASC, "transferId"));
+
+        assertEquals(transfers.size(), items.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(transfers.get(i).getTransferId(), items.get(i).getTransferId());
+            Long clientId = transfers.get(i).getClient() == null ? null : transfers.get(i).getClient().getClientId();
+            assertEquals(clientId, items.get(i).getClientId());
+        }
+
+        Projection<Visit, VisitListItem> visitItem = Projection.of(Visit.class, VisitListItem.class)
+                .column("visit_id")
+                .column("visitDate")
+                .column("visitTime")
+                .column("establishment")
+                .column("isActive")
+                .column("employeeId", "employee.employeeId")
+                .column("employeeFullName", "employee.fullName");
+        List<VisitListItem> visits = specificationQueries.findAll(visitItem, null, Sort.by(Sort.Direction.ASC, "visit_id"));
+
+        // Visits without an employee are kept, the association is left joined
+        assertEquals(visitRepository.count(), visits.size());
+        for (VisitListItem visit : visits)
+            if (visit.getEmployeeId() == null)
+                assertNull(visit.getEmployeeFullName());
+    }
+
+    @Test
+    public void testRejectsInvalidColumns() {
+        assertThrows(IllegalStateException.class, () -> Projection.of(Visit.class, VisitListItem.class)
+                .column("visitDate")
+                .column("visitDate"));
+        assertThrows(IllegalStateException.class, () -> specificationQueries.sum(Visit.class, "establishment", null));
+    }
+}
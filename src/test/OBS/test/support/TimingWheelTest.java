@@ -0,0 +1,61 @@
+package test.support;
+
+import com.OBS.support.TimingWheel;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+    private static final long MINUTE = 60 * 1000;
+    private static final long START = 1_000_000 * MINUTE;
+
+    @Test
+    public void testFiresAtDueTime() {
+        TimingWheel<Long> wheel = new TimingWheel<>(MINUTE, START);
+        wheel.schedule(1L, START + 5 * MINUTE);
+        wheel.schedule(2L, START + 3 * 24 * 60 * MINUTE);
+
+        assertTrue(wheel.advance(START + 4 * MINUTE).isEmpty());
+        assertEquals(Collections.singletonList(1L), wheel.advance(START + 5 * MINUTE));
+        assertTrue(wheel.advance(START + 3 * 24 * 60 * MINUTE - MINUTE).isEmpty());
+        assertEquals(Collections.singletonList(2L), wheel.advance(START + 3 * 24 * 60 * MINUTE));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testPastDueFiresOnNextAdvance() {
+        TimingWheel<Long> wheel = new TimingWheel<>(MINUTE, START);
+        wheel.schedule(1L, START - 60 * MINUTE);
+
+        assertEquals(Collections.singletonList(1L), wheel.advance(START));
+    }
+
+    @Test
+    public void testRescheduleAndRemove() {
+        TimingWheel<Long> wheel = new TimingWheel<>(MINUTE, START);
+        wheel.schedule(1L, START + 10 * MINUTE);
+        wheel.schedule(2L, START + 10 * MINUTE);
+        wheel.schedule(1L, START + 200 * MINUTE);
+        wheel.remove(2L);
+
+        assertTrue(wheel.advance(START + 199 * MINUTE).isEmpty());
+        assertEquals(Collections.singletonList(1L), wheel.advance(START + 200 * MINUTE));
+    }
+
+    @Test
+    public void testCascadesAcrossLevels() {
+        TimingWheel<Long> wheel = new TimingWheel<>(MINUTE, START);
+        List<Long> offsets = Arrays.asList(1L, 63L, 64L, 65L, 4095L, 4096L, 4097L, 40_000L, 300_000L);
+        for (Long offset : offsets)
+            wheel.schedule(offset, START + offset * MINUTE);
+
+        for (Long offset : offsets) {
+            assertTrue(wheel.advance(START + (offset - 1) * MINUTE).isEmpty());
+            assertEquals(Collections.singletonList(offset), wheel.advance(START + offset * MINUTE));
+        }
+    }
+}